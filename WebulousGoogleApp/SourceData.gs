@@ -64,7 +64,7 @@ function setSource(url, id, rows){
   }
   **/
 
-  _initilaiseFromTemplate(sourceData, rows);
+  _initilaiseFromTemplate(sourceData, rows, url, id);
 
 }
 
@@ -77,7 +77,7 @@ function setSource(url, id, rows){
  *
  * @param {string} sourceData data form the webulous server
  */
-function _initilaiseFromTemplate (sourceData, numberOfRows) {
+function _initilaiseFromTemplate (sourceData, numberOfRows, url, id) {
 
   var activeSheet;
   if (SpreadsheetApp.getActiveSpreadsheet().getSheetByName(sourceData.description) == null) {
@@ -99,13 +99,40 @@ function _initilaiseFromTemplate (sourceData, numberOfRows) {
       activeSheet.getRange(1, sourceData.dataRestrictions[i].columnIndex).setValue(sourceData.dataRestrictions[i].restrictionName)
       // create a data validation
       var datarange = activeSheet.getRange(2, sourceData.dataRestrictions[i].columnIndex, numberOfRows)
-      if (sourceData.dataRestrictions[i].values.length>1) {
-          _createRestriction(datarange, sourceData.description, sourceData.dataRestrictions[i].restrictionName, sourceData.dataRestrictions[i].defaultValue, "SUPPLIED", sourceData.dataRestrictions[i].values);
+      var values = _getRestrictionValues(url, id, i, sourceData.dataRestrictions[i]);
+      if (values.length>1) {
+          _createRestriction(datarange, sourceData.description, sourceData.dataRestrictions[i].restrictionName, sourceData.dataRestrictions[i].defaultValue, "SUPPLIED", values);
       }
     }
   }
 }
 
+/**
+ *
+ * Get the values for a restriction. Computed values are stored apart from the template
+ * and fetched a page at a time, older templates still carry them in the restriction itself.
+ *
+ * @param {string} url The base URI of the webulous template server
+ * @param {string} id The id of the template on the webulous template server
+ * @param {number} index The index of the restriction in the template
+ * @param {object} restriction The restriction from the template
+ * @return {string[][]} 2D array of labels and URIs
+ */
+function _getRestrictionValues (url, id, index, restriction) {
+  if (restriction.valueCount == null || restriction.valueCount == 0) {
+    return restriction.values;
+  }
+  var values = [];
+  var page = 0;
+  var result;
+  do {
+    result = getObjectFromUrl(url + "/templates/" + id + "/restrictions/" + index + "/values?size=1000&page=" + page);
+    values = values.concat(result.content);
+    page++;
+  } while (!result.last);
+  return values;
+}
+
 function getTemplateServerURL () {
   var sourceSheet = SpreadsheetApp.getActiveSpreadsheet().getSheetByName("SourceData");
   if (sourceSheet != null) {
@@ -0,0 +1,26 @@
+package uk.ac.ebi.fgpt;
+
+/**
+ * @author Simon Jupp
+ * @date 18/10/2026
+ * Samples, Phenotypes and Ontologies Team, EMBL-EBI
+ *
+ * Told how a {@link OntologyDAO} is getting on classifying its ontologies. Calls come from whichever thread is
+ * classifying, possibly several at once.
+ */
+public interface ClassificationListener {
+
+    /**
+     * @param reasoner the name of the reasoner strategy
+     * @param phase what the reasoner says it's doing
+     * @param percent how far through the phase it is, or -1 if the reasoner can't tell
+     */
+    void progress(String reasoner, String phase, int percent);
+
+    /**
+     * Classification took longer than the DAO allows and was interrupted
+     *
+     * @param fallback the strategy used instead, or null if there isn't one and the query will fail
+     */
+    void timedOut(String reasoner, long timeout, String fallback);
+}
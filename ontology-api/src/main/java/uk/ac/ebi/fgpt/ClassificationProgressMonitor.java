@@ -0,0 +1,54 @@
+package uk.ac.ebi.fgpt;
+
+import org.semanticweb.owlapi.reasoner.ReasonerProgressMonitor;
+
+/**
+ * @author Simon Jupp
+ * @date 18/10/2026
+ * Samples, Phenotypes and Ontologies Team, EMBL-EBI
+ *
+ * Passes a reasoner's progress on to a {@link ClassificationListener} as a percentage, only when the percentage changes
+ */
+public class ClassificationProgressMonitor implements ReasonerProgressMonitor {
+
+    private final String reasoner;
+    private final ClassificationListener listener;
+
+    private String phase = "";
+    private int percent = -2;
+
+    public ClassificationProgressMonitor(String reasoner, ClassificationListener listener) {
+        this.reasoner = reasoner;
+        this.listener = listener;
+    }
+
+    @Override
+    public void reasonerTaskStarted(String taskName) {
+        phase = taskName;
+        update(0);
+    }
+
+    @Override
+    public void reasonerTaskStopped() {
+        update(100);
+    }
+
+    @Override
+    public void reasonerTaskProgressChanged(int value, int max) {
+        if (max > 0) {
+            update((int) Math.min(100, value * 100L / max));
+        }
+    }
+
+    @Override
+    public void reasonerTaskBusy() {
+        update(-1);
+    }
+
+    private void update(int percent) {
+        if (percent != this.percent) {
+            this.percent = percent;
+            listener.progress(reasoner, phase, percent);
+        }
+    }
+}
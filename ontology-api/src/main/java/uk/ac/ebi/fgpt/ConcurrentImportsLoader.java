@@ -0,0 +1,257 @@
+package uk.ac.ebi.fgpt;
+
+import org.semanticweb.owlapi.apibinding.OWLManager;
+import org.semanticweb.owlapi.io.IRIDocumentSource;
+import org.semanticweb.owlapi.model.*;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * @author Simon Jupp
+ * @date 18/10/2026
+ * Samples, Phenotypes and Ontologies Team, EMBL-EBI
+ *
+ * Loads a set of ontologies and their imports closure into a manager, parsing the documents concurrently.
+ * Each document is parsed on its own, without following its imports, in a manager of its own. The imports it declares
+ * are queued for parsing as soon as it is read. Each parsed ontology is copied into the target manager straight away
+ * and its own manager dropped, so only one copy of a document is held at a time, and once the whole closure has
+ * been parsed the import declarations are added so the closure resolves as if it had been loaded with
+ * {@link OWLOntologyManager#loadOntology(IRI)}. Documents are read through the {@link ImportCache} when one is set.
+ */
+public class ConcurrentImportsLoader {
+
+    public static final int DEFAULT_THREADS = Math.min(4, Runtime.getRuntime().availableProcessors());
+
+    private Logger logger = LoggerFactory.getLogger(getClass());
+
+    private final int threads;
+
+    private ImportCache importCache = ImportCache.getDefault();
+
+    private final List<DocumentTiming> timings = new ArrayList<DocumentTiming>();
+
+    public ConcurrentImportsLoader() {
+        this(DEFAULT_THREADS);
+    }
+
+    public ConcurrentImportsLoader(int threads) {
+        this.threads = Math.max(1, threads);
+    }
+
+    /**
+     * Fetch documents through this cache, by default the cache set with {@link ImportCache#setDefault}. Set to null to always fetch and parse.
+     */
+    public void setImportCache(ImportCache importCache) {
+        this.importCache = importCache;
+    }
+
+    /**
+     * Load the ontologies and everything they import into the manager
+     * @return the ontologies for the IRIs that were asked for
+     */
+    public Set<OWLOntology> load(OWLOntologyManager manager, Collection<IRI> ontologyIris) throws OWLOntologyCreationException {
+
+        timings.clear();
+        long start = System.currentTimeMillis();
+
+        Map<IRI, OWLOntology> copies = new LinkedHashMap<IRI, OWLOntology>();
+        Map<IRI, Set<OWLImportsDeclaration>> importDeclarations = new HashMap<IRI, Set<OWLImportsDeclaration>>();
+        Set<IRI> requested = new HashSet<IRI>();
+
+        ExecutorService executor = Executors.newFixedThreadPool(threads, new ThreadFactory() {
+            private int count = 0;
+
+            public synchronized Thread newThread(Runnable r) {
+                Thread thread = new Thread(r, "imports-loader-" + (++count));
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+        CompletionService<ParsedDocument> completionService = new ExecutorCompletionService<ParsedDocument>(executor);
+
+        try {
+            int pending = 0;
+            for (IRI iri : ontologyIris) {
+                if (requested.add(iri) && !isLoaded(manager, iri)) {
+                    completionService.submit(new ParseDocument(iri));
+                    pending++;
+                }
+            }
+
+            while (pending > 0) {
+                ParsedDocument document = completionService.take().get();
+                pending--;
+                timings.add(new DocumentTiming(document.documentIri, document.millis, document.ontology.getAxiomCount()));
+
+                // queue the imports as soon as we know about them
+                Set<OWLImportsDeclaration> declarations = new HashSet<OWLImportsDeclaration>(document.ontology.getImportsDeclarations());
+                for (OWLImportsDeclaration declaration : declarations) {
+                    IRI importIri = declaration.getIRI();
+                    if (requested.add(importIri) && !isLoaded(manager, importIri)) {
+                        completionService.submit(new ParseDocument(importIri));
+                        pending++;
+                    }
+                }
+
+                // copy it into the target while the rest are parsed, then let the parsed copy go
+                copies.put(document.documentIri, copy(manager, document.documentIri, document.ontology));
+                importDeclarations.put(document.documentIri, declarations);
+                document.ontology.getOWLOntologyManager().removeOntology(document.ontology);
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new OWLOntologyCreationException("Interrupted while loading " + ontologyIris, e);
+        } catch (ExecutionException e) {
+            if (e.getCause() instanceof OWLOntologyCreationException) {
+                throw (OWLOntologyCreationException) e.getCause();
+            }
+            throw new OWLOntologyCreationException("Failed to load " + ontologyIris, e.getCause());
+        } finally {
+            executor.shutdownNow();
+        }
+
+        // everything has been copied across, so each import declaration can now be resolved
+        List<OWLOntologyChange> imports = new ArrayList<OWLOntologyChange>();
+        for (Map.Entry<IRI, Set<OWLImportsDeclaration>> document : importDeclarations.entrySet()) {
+            for (OWLImportsDeclaration declaration : document.getValue()) {
+                imports.add(new AddImport(copies.get(document.getKey()), declaration));
+            }
+        }
+        manager.applyChanges(imports);
+
+        Set<OWLOntology> loaded = new HashSet<OWLOntology>();
+        for (IRI iri : ontologyIris) {
+            OWLOntology ontology = copies.containsKey(iri) ? copies.get(iri) : getLoaded(manager, iri);
+            if (ontology != null) {
+                loaded.add(ontology);
+            }
+        }
+
+        if (!timings.isEmpty()) {
+            logger.info("Loaded " + timings.size() + " ontology documents in " + (System.currentTimeMillis() - start) + "ms on " + threads + " threads\n" + getReport());
+        }
+        return loaded;
+    }
+
+    /**
+     * @return how long each document took to parse in the last load, slowest first
+     */
+    public List<DocumentTiming> getTimings() {
+        List<DocumentTiming> sorted = new ArrayList<DocumentTiming>(timings);
+        Collections.sort(sorted, new Comparator<DocumentTiming>() {
+            public int compare(DocumentTiming o1, DocumentTiming o2) {
+                return o1.getMillis() < o2.getMillis() ? 1 : o1.getMillis() == o2.getMillis() ? 0 : -1;
+            }
+        });
+        return sorted;
+    }
+
+    public String getReport() {
+        StringBuilder report = new StringBuilder();
+        for (DocumentTiming timing : getTimings()) {
+            report.append(String.format("%8dms %10d axioms  %s%n", timing.getMillis(), timing.getAxiomCount(), timing.getDocumentIri()));
+        }
+        return report.toString();
+    }
+
+    private OWLOntology copy(OWLOntologyManager manager, IRI documentIri, OWLOntology source) throws OWLOntologyCreationException {
+        if (!source.getOntologyID().isAnonymous() && manager.contains(source.getOntologyID())) {
+            return manager.getOntology(source.getOntologyID());
+        }
+        OWLOntology target = manager.createOntology(source.getOntologyID());
+        manager.setOntologyDocumentIRI(target, documentIri);
+        manager.setOntologyFormat(target, source.getOWLOntologyManager().getOntologyFormat(source));
+
+        List<OWLOntologyChange> changes = new ArrayList<OWLOntologyChange>();
+        for (OWLAnnotation annotation : source.getAnnotations()) {
+            changes.add(new AddOntologyAnnotation(target, annotation));
+        }
+        manager.applyChanges(changes);
+        manager.addAxioms(target, source.getAxioms());
+        return target;
+    }
+
+    private boolean isLoaded(OWLOntologyManager manager, IRI iri) {
+        return getLoaded(manager, iri) != null;
+    }
+
+    private OWLOntology getLoaded(OWLOntologyManager manager, IRI iri) {
+        OWLOntology ontology = manager.getOntology(iri);
+        if (ontology == null) {
+            for (OWLOntology loaded : manager.getOntologies()) {
+                if (iri.equals(manager.getOntologyDocumentIRI(loaded))) {
+                    return loaded;
+                }
+            }
+        }
+        return ontology;
+    }
+
+    private class ParseDocument implements Callable<ParsedDocument> {
+        private final IRI documentIri;
+
+        ParseDocument(IRI documentIri) {
+            this.documentIri = documentIri;
+        }
+
+        public ParsedDocument call() throws OWLOntologyCreationException {
+            long start = System.currentTimeMillis();
+            OWLOntologyManager documentManager = OWLManager.createOWLOntologyManager();
+            OWLOntology ontology;
+            if (importCache != null) {
+                ontology = importCache.load(documentIri, documentManager, new IgnoreImportsConfiguration());
+            }
+            else {
+                ontology = documentManager.loadOntologyFromOntologyDocument(new IRIDocumentSource(documentIri), new IgnoreImportsConfiguration());
+            }
+            return new ParsedDocument(documentIri, ontology, System.currentTimeMillis() - start);
+        }
+    }
+
+    // imports are followed by the loader itself, so the parser shouldn't fetch any of them
+    private static class IgnoreImportsConfiguration extends OWLOntologyLoaderConfiguration {
+        @Override
+        public boolean isIgnoredImport(IRI iri) {
+            return true;
+        }
+    }
+
+    private static class ParsedDocument {
+        private final IRI documentIri;
+        private final OWLOntology ontology;
+        private final long millis;
+
+        ParsedDocument(IRI documentIri, OWLOntology ontology, long millis) {
+            this.documentIri = documentIri;
+            this.ontology = ontology;
+            this.millis = millis;
+        }
+    }
+
+    public static class DocumentTiming {
+        private final IRI documentIri;
+        private final long millis;
+        private final int axiomCount;
+
+        public DocumentTiming(IRI documentIri, long millis, int axiomCount) {
+            this.documentIri = documentIri;
+            this.millis = millis;
+            this.axiomCount = axiomCount;
+        }
+
+        public IRI getDocumentIri() {
+            return documentIri;
+        }
+
+        public long getMillis() {
+            return millis;
+        }
+
+        public int getAxiomCount() {
+            return axiomCount;
+        }
+    }
+}
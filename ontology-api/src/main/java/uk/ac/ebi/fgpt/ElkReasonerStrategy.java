@@ -0,0 +1,36 @@
+package uk.ac.ebi.fgpt;
+
+import org.semanticweb.elk.owlapi.ElkReasonerFactory;
+import org.semanticweb.owlapi.model.OWLClassExpression;
+import org.semanticweb.owlapi.model.OWLOntology;
+import org.semanticweb.owlapi.reasoner.OWLReasoner;
+import org.semanticweb.owlapi.reasoner.ReasonerProgressMonitor;
+import org.semanticweb.owlapi.reasoner.SimpleConfiguration;
+
+/**
+ * @author Simon Jupp
+ * @date 18/10/2026
+ * Samples, Phenotypes and Ontologies Team, EMBL-EBI
+ *
+ * ELK, for ontologies in the OWL 2 EL profile. ELK 0.4 answers subclass queries for EL class expressions as well as
+ * named classes, e.g. 'part of' some X, and throws an UnsupportedOperationException for anything it can't handle.
+ */
+public class ElkReasonerStrategy implements ReasonerStrategy {
+
+    private final ElkReasonerFactory factory = new ElkReasonerFactory();
+
+    @Override
+    public String getName() {
+        return "elk";
+    }
+
+    @Override
+    public OWLReasoner createReasoner(OWLOntology ontology, ReasonerProgressMonitor progressMonitor) {
+        return factory.createReasoner(ontology, new SimpleConfiguration(progressMonitor));
+    }
+
+    @Override
+    public boolean supports(OWLClassExpression expression) {
+        return ReasonerStrategySelector.isELClassExpression(expression);
+    }
+}
@@ -0,0 +1,312 @@
+package uk.ac.ebi.fgpt;
+
+import org.semanticweb.owlapi.model.IRI;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * @author Simon Jupp
+ * @date 18/10/2026
+ * Samples, Phenotypes and Ontologies Team, EMBL-EBI
+ *
+ * Reads the entities and labels out of an OWL functional syntax document as a stream of tokens and hands them to a
+ * {@link LabelIndexFile.Builder}, without building the ontology. It understands enough of the syntax to read the
+ * documents the OWL API writes: prefixes, full and abbreviated IRIs, quoted literals with their datatypes or
+ * language tags, and comments.
+ *
+ * Every IRI in an axiom is taken to be an entity, apart from the subjects and values of annotation assertions,
+ * which can be anything, and the built in vocabulary, which the OWL API leaves out of an ontology's signature.
+ */
+class FunctionalSyntaxLabelReader {
+
+    private static final String[] BUILT_IN_NAMESPACES = {
+            "http://www.w3.org/2002/07/owl#",
+            "http://www.w3.org/1999/02/22-rdf-syntax-ns#",
+            "http://www.w3.org/2000/01/rdf-schema#",
+            "http://www.w3.org/2001/XMLSchema#"
+    };
+
+    private enum Type { OPEN, CLOSE, EQUALS, IRI, NAME, LITERAL, END }
+
+    private final Reader reader;
+    private final List<IRI> labelIris;
+    private final LabelIndexFile.Builder builder;
+    private final Map<String, String> prefixes = new HashMap<String, String>();
+
+    private final char[] buffer = new char[64 * 1024];
+    private int position = 0;
+    private int limit = 0;
+
+    // a token read ahead and put back
+    private Token pushedBack;
+
+    FunctionalSyntaxLabelReader(Reader reader, List<IRI> labelIris, LabelIndexFile.Builder builder) {
+        this.reader = reader;
+        this.labelIris = labelIris;
+        this.builder = builder;
+    }
+
+    void read() throws IOException {
+        for (Token token = next(); token.type != Type.END; token = next()) {
+            if (token.type == Type.NAME && isGroup(token, "Prefix")) {
+                readPrefix();
+            }
+            else if (token.type == Type.NAME && isGroup(token, "Ontology")) {
+                // the ontology and version IRIs aren't entities
+                Token iri = next();
+                while (iri.type == Type.IRI || resolve(iri) != null) {
+                    iri = next();
+                }
+                pushedBack = iri;
+            }
+            else if (token.type == Type.NAME && isGroup(token, "Import")) {
+                skipGroup();
+            }
+            else if (token.type == Type.NAME && isGroup(token, "AnnotationAssertion")) {
+                readAnnotationAssertion();
+            }
+            else {
+                addEntity(token);
+            }
+        }
+    }
+
+    // Prefix(p:=<iri>)
+    private void readPrefix() throws IOException {
+        Token name = next();
+        Token equals = next();
+        Token iri = next();
+        if (name.type != Type.NAME || equals.type != Type.EQUALS || iri.type != Type.IRI) {
+            throw new IOException("Couldn't read prefix " + name.text);
+        }
+        prefixes.put(name.text, iri.text);
+        skipGroup();
+    }
+
+    // AnnotationAssertion(Annotation(...)* property subject value)
+    private void readAnnotationAssertion() throws IOException {
+        Token[] terms = new Token[3];
+        int count = 0;
+        for (Token token = next(); token.type != Type.CLOSE; token = next()) {
+            if (token.type == Type.END) {
+                throw new IOException("Document ends inside an annotation assertion");
+            }
+            if (token.type == Type.OPEN) {
+                skipGroup();
+            }
+            else if (token.type == Type.NAME && isGroup(token, "Annotation")) {
+                skipGroup();
+            }
+            else if (count < terms.length) {
+                terms[count++] = token;
+            }
+        }
+        if (count < terms.length) {
+            return;
+        }
+        String property = getIri(terms[0]);
+        if (property == null) {
+            return;
+        }
+        addEntity(terms[0]);
+        int priority = labelIris.indexOf(IRI.create(property));
+        String subject = getIri(terms[1]);
+        if (priority >= 0 && subject != null && terms[2].type == Type.LITERAL) {
+            builder.addLabel(subject, terms[2].text, priority);
+        }
+    }
+
+    private void addEntity(Token token) throws IOException {
+        String iri = getIri(token);
+        if (iri != null && !isBuiltIn(iri)) {
+            builder.addEntity(iri);
+        }
+    }
+
+    private boolean isBuiltIn(String iri) {
+        for (String namespace : BUILT_IN_NAMESPACES) {
+            if (iri.startsWith(namespace)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @return the full IRI for a full or abbreviated IRI, or null if the token isn't one
+     */
+    private String getIri(Token token) {
+        return token.type == Type.IRI ? token.text : resolve(token);
+    }
+
+    private String resolve(Token token) {
+        if (token.type != Type.NAME) {
+            return null;
+        }
+        int colon = token.text.indexOf(':');
+        if (colon < 0) {
+            return null;
+        }
+        String namespace = prefixes.get(token.text.substring(0, colon + 1));
+        return namespace == null ? null : namespace + token.text.substring(colon + 1);
+    }
+
+    // true if the keyword opens a group, in which case the opening bracket is used up
+    private boolean isGroup(Token token, String keyword) throws IOException {
+        if (!keyword.equals(token.text)) {
+            return false;
+        }
+        Token open = next();
+        if (open.type == Type.OPEN) {
+            return true;
+        }
+        pushedBack = open;
+        return false;
+    }
+
+    // skip to the end of the group whose opening bracket has just been read
+    private void skipGroup() throws IOException {
+        int depth = 1;
+        while (depth > 0) {
+            Token token = next();
+            if (token.type == Type.OPEN) {
+                depth++;
+            }
+            else if (token.type == Type.CLOSE) {
+                depth--;
+            }
+            else if (token.type == Type.END) {
+                throw new IOException("Document ends inside a group");
+            }
+        }
+    }
+
+    private Token next() throws IOException {
+        if (pushedBack != null) {
+            Token token = pushedBack;
+            pushedBack = null;
+            return token;
+        }
+        int c = skipWhitespace();
+        switch (c) {
+            case -1:
+                return new Token(Type.END, null);
+            case '(':
+                return new Token(Type.OPEN, null);
+            case ')':
+                return new Token(Type.CLOSE, null);
+            case '=':
+                return new Token(Type.EQUALS, null);
+            case '<':
+                return new Token(Type.IRI, readUntil('>'));
+            case '"':
+                return readLiteral();
+            default:
+                StringBuilder name = new StringBuilder();
+                name.append((char) c);
+                while (!isDelimiter(peekChar())) {
+                    name.append((char) nextChar());
+                }
+                return new Token(Type.NAME, name.toString());
+        }
+    }
+
+    // "text"^^datatype or "text"@lang, of which only the text is kept
+    private Token readLiteral() throws IOException {
+        StringBuilder literal = new StringBuilder();
+        for (int c = nextChar(); c != '"'; c = nextChar()) {
+            if (c == -1) {
+                throw new IOException("Document ends inside a literal");
+            }
+            if (c == '\\') {
+                c = nextChar();
+                if (c == -1) {
+                    throw new IOException("Document ends inside a literal");
+                }
+            }
+            literal.append((char) c);
+        }
+        if (peekChar() == '^') {
+            nextChar();
+            if (nextChar() != '^') {
+                throw new IOException("Expected ^^ after literal \"" + literal + "\"");
+            }
+            Token datatype = next();
+            addEntity(datatype);
+        }
+        else if (peekChar() == '@') {
+            while (!isDelimiter(peekChar())) {
+                nextChar();
+            }
+        }
+        return new Token(Type.LITERAL, literal.toString());
+    }
+
+    private String readUntil(char end) throws IOException {
+        StringBuilder text = new StringBuilder();
+        for (int c = nextChar(); c != end; c = nextChar()) {
+            if (c == -1) {
+                throw new IOException("Document ends before " + end);
+            }
+            text.append((char) c);
+        }
+        return text.toString();
+    }
+
+    // skip whitespace and comments, returning the first character after them
+    private int skipWhitespace() throws IOException {
+        while (true) {
+            int c = nextChar();
+            if (c == '#') {
+                while (c != -1 && c != '\n' && c != '\r') {
+                    c = nextChar();
+                }
+            }
+            if (c == -1 || !Character.isWhitespace(c)) {
+                return c;
+            }
+        }
+    }
+
+    private boolean isDelimiter(int c) {
+        return c == -1 || Character.isWhitespace(c) || c == '(' || c == ')' || c == '=' || c == '<' || c == '"';
+    }
+
+    private int nextChar() throws IOException {
+        if (position == limit && !fill()) {
+            return -1;
+        }
+        return buffer[position++];
+    }
+
+    private int peekChar() throws IOException {
+        if (position == limit && !fill()) {
+            return -1;
+        }
+        return buffer[position];
+    }
+
+    private boolean fill() throws IOException {
+        limit = reader.read(buffer, 0, buffer.length);
+        position = 0;
+        if (limit < 0) {
+            limit = 0;
+            return false;
+        }
+        return true;
+    }
+
+    private static class Token {
+        private final Type type;
+        private final String text;
+
+        Token(Type type, String text) {
+            this.type = type;
+            this.text = text;
+        }
+    }
+}
@@ -0,0 +1,35 @@
+package uk.ac.ebi.fgpt;
+
+import org.semanticweb.HermiT.Configuration;
+import org.semanticweb.HermiT.Reasoner;
+import org.semanticweb.owlapi.model.OWLClassExpression;
+import org.semanticweb.owlapi.model.OWLOntology;
+import org.semanticweb.owlapi.reasoner.OWLReasoner;
+import org.semanticweb.owlapi.reasoner.ReasonerProgressMonitor;
+
+/**
+ * @author Simon Jupp
+ * @date 18/10/2026
+ * Samples, Phenotypes and Ontologies Team, EMBL-EBI
+ *
+ * HermiT, complete for all of OWL 2 DL
+ */
+public class HermitReasonerStrategy implements ReasonerStrategy {
+
+    @Override
+    public String getName() {
+        return "hermit";
+    }
+
+    @Override
+    public OWLReasoner createReasoner(OWLOntology ontology, ReasonerProgressMonitor progressMonitor) {
+        Configuration configuration = new Configuration();
+        configuration.reasonerProgressMonitor = progressMonitor;
+        return new Reasoner(configuration, ontology);
+    }
+
+    @Override
+    public boolean supports(OWLClassExpression expression) {
+        return true;
+    }
+}
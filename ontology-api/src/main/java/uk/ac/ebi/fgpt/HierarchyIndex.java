@@ -0,0 +1,381 @@
+package uk.ac.ebi.fgpt;
+
+import org.semanticweb.owlapi.model.*;
+import org.semanticweb.owlapi.util.SimpleIRIShortFormProvider;
+import org.semanticweb.owlapi.vocab.OWLRDFVocabulary;
+
+import java.io.*;
+import java.nio.charset.Charset;
+import java.util.*;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * @author Simon Jupp
+ * @date 18/10/2026
+ * Samples, Phenotypes and Ontologies Team, EMBL-EBI
+ *
+ * A compact, read-only index of the told (asserted) named class hierarchy of a set of ontologies.
+ * Classes are numbered 0..n-1, the IRIs and renderings are kept in string tables indexed by that number,
+ * and the parent and child edges are held as primitive adjacency arrays (offsets into a flat array of ids).
+ *
+ * This lets subclass and descendant restrictions on a single named class be answered without loading the
+ * ontologies or starting a reasoner. The index records whether the told hierarchy is complete
+ * (see {@link ReasonerStrategySelector#isToldHierarchyComplete}); only a complete index gives the same answers as a reasoner.
+ */
+public class HierarchyIndex {
+
+    private static final int MAGIC = 0x57484958; // WHIX
+    private static final int VERSION = 1;
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    private final String[] iris;
+    private final String[] renderings;
+    private final int[] childOffsets;
+    private final int[] children;
+    private final int[] parentOffsets;
+    private final int[] parents;
+    private final boolean complete;
+    private final long created;
+
+    // lookup from the names a class can be referred to by in a class expression, rebuilt on load
+    private final Map<String, Integer> idsByName;
+
+    private HierarchyIndex(String[] iris, String[] renderings, int[] childOffsets, int[] children,
+                           int[] parentOffsets, int[] parents, boolean complete, long created) {
+        this.iris = iris;
+        this.renderings = renderings;
+        this.childOffsets = childOffsets;
+        this.children = children;
+        this.parentOffsets = parentOffsets;
+        this.parents = parents;
+        this.complete = complete;
+        this.created = created;
+
+        this.idsByName = new HashMap<String, Integer>(iris.length * 2);
+        for (int x = 0; x < iris.length; x++) {
+            // renderings are the label, or the short form when there is no label, as the manchester parser sees them
+            addName(renderings[x], x);
+            addName(iris[x], x);
+        }
+    }
+
+    private void addName(String name, int id) {
+        if (name != null && !idsByName.containsKey(name)) {
+            idsByName.put(name, id);
+        }
+    }
+
+    /**
+     * Build an index of the told hierarchy using rdfs:label for the renderings
+     */
+    public static HierarchyIndex build(Collection<OWLOntology> ontologies) {
+        return build(ontologies, Collections.singleton(OWLRDFVocabulary.RDFS_LABEL.getIRI()));
+    }
+
+    public static HierarchyIndex build(Collection<OWLOntology> ontologies, Collection<IRI> labelIris) {
+
+        Map<OWLClass, Integer> ids = new HashMap<OWLClass, Integer>();
+        List<OWLClass> classes = new ArrayList<OWLClass>();
+        for (OWLOntology ontology : ontologies) {
+            for (OWLClass owlClass : ontology.getClassesInSignature()) {
+                if (!owlClass.isOWLThing() && !owlClass.isOWLNothing() && !ids.containsKey(owlClass)) {
+                    ids.put(owlClass, classes.size());
+                    classes.add(owlClass);
+                }
+            }
+        }
+
+        int n = classes.size();
+        IntList edgeChild = new IntList();
+        IntList edgeParent = new IntList();
+        for (OWLOntology ontology : ontologies) {
+            for (OWLSubClassOfAxiom axiom : ontology.getAxioms(AxiomType.SUBCLASS_OF)) {
+                OWLClassExpression sub = axiom.getSubClass();
+                OWLClassExpression sup = axiom.getSuperClass();
+                if (!sub.isAnonymous() && !sup.isAnonymous()) {
+                    Integer child = ids.get(sub.asOWLClass());
+                    Integer parent = ids.get(sup.asOWLClass());
+                    if (child != null && parent != null) {
+                        edgeChild.add(child);
+                        edgeParent.add(parent);
+                    }
+                }
+            }
+        }
+
+        String[] iris = new String[n];
+        String[] renderings = new String[n];
+        SimpleIRIShortFormProvider shortFormProvider = new SimpleIRIShortFormProvider();
+        for (int x = 0; x < n; x++) {
+            OWLClass owlClass = classes.get(x);
+            iris[x] = owlClass.getIRI().toString();
+            renderings[x] = getLabel(owlClass, ontologies, labelIris);
+            if (renderings[x] == null) {
+                renderings[x] = shortFormProvider.getShortForm(owlClass.getIRI());
+            }
+        }
+
+        int[][] childCsr = toAdjacency(n, edgeParent, edgeChild);
+        int[][] parentCsr = toAdjacency(n, edgeChild, edgeParent);
+
+        boolean complete = ReasonerStrategySelector.isToldHierarchyComplete(ontologies);
+        return new HierarchyIndex(iris, renderings, childCsr[0], childCsr[1], parentCsr[0], parentCsr[1], complete, System.currentTimeMillis());
+    }
+
+    private static String getLabel(OWLClass owlClass, Collection<OWLOntology> ontologies, Collection<IRI> labelIris) {
+        for (IRI labelIri : labelIris) {
+            for (OWLOntology ontology : ontologies) {
+                for (OWLAnnotationAssertionAxiom annotation : ontology.getAnnotationAssertionAxioms(owlClass.getIRI())) {
+                    if (annotation.getProperty().getIRI().equals(labelIri) && annotation.getValue() instanceof OWLLiteral) {
+                        return ((OWLLiteral) annotation.getValue()).getLiteral();
+                    }
+                }
+            }
+        }
+        return null;
+    }
+
+    // group the edges by source into an offsets array and a flat array of targets
+    private static int[][] toAdjacency(int n, IntList from, IntList to) {
+        int[] offsets = new int[n + 1];
+        for (int x = 0; x < from.size(); x++) {
+            offsets[from.get(x) + 1]++;
+        }
+        for (int x = 0; x < n; x++) {
+            offsets[x + 1] += offsets[x];
+        }
+        int[] targets = new int[from.size()];
+        int[] next = Arrays.copyOf(offsets, n);
+        for (int x = 0; x < from.size(); x++) {
+            targets[next[from.get(x)]++] = to.get(x);
+        }
+        return new int[][] {offsets, targets};
+    }
+
+    /**
+     * @return the name referred to if this manchester syntax expression is a single named class, otherwise null
+     */
+    public static String getAtomicName(String manchesterSyntaxExpression) {
+        if (manchesterSyntaxExpression == null) {
+            return null;
+        }
+        String expression = manchesterSyntaxExpression.trim();
+        if (expression.length() > 1 && expression.startsWith("'") && expression.endsWith("'")) {
+            String name = expression.substring(1, expression.length() - 1);
+            return name.contains("'") ? null : name;
+        }
+        if (expression.length() > 1 && expression.startsWith("<") && expression.endsWith(">")) {
+            return expression.substring(1, expression.length() - 1);
+        }
+        if (expression.isEmpty() || expression.equals("Thing") || expression.equals("owl:Thing")) {
+            return null;
+        }
+        for (int x = 0; x < expression.length(); x++) {
+            char c = expression.charAt(x);
+            if (Character.isWhitespace(c) || c == '(' || c == ')' || c == '{' || c == '}' || c == '\'' || c == ',') {
+                return null;
+            }
+        }
+        return expression;
+    }
+
+    /**
+     * @return the id of the class with this name, IRI or label, or -1 if it isn't in the index
+     */
+    public int getId(String name) {
+        Integer id = idsByName.get(name);
+        return id == null ? -1 : id;
+    }
+
+    public int size() {
+        return iris.length;
+    }
+
+    public boolean isComplete() {
+        return complete;
+    }
+
+    public long getCreated() {
+        return created;
+    }
+
+    public String getIri(int id) {
+        return iris[id];
+    }
+
+    public String getRendering(int id) {
+        return renderings[id];
+    }
+
+    public BitSet getChildren(int id) {
+        BitSet result = new BitSet(iris.length);
+        for (int x = childOffsets[id]; x < childOffsets[id + 1]; x++) {
+            result.set(children[x]);
+        }
+        return result;
+    }
+
+    public BitSet getParents(int id) {
+        BitSet result = new BitSet(iris.length);
+        for (int x = parentOffsets[id]; x < parentOffsets[id + 1]; x++) {
+            result.set(parents[x]);
+        }
+        return result;
+    }
+
+    public BitSet getDescendants(int id) {
+        BitSet visited = new BitSet(iris.length);
+        int[] stack = new int[Math.max(16, childOffsets[id + 1] - childOffsets[id])];
+        int top = 0;
+        stack[top++] = id;
+        while (top > 0) {
+            int current = stack[--top];
+            for (int x = childOffsets[current]; x < childOffsets[current + 1]; x++) {
+                int child = children[x];
+                if (!visited.get(child)) {
+                    visited.set(child);
+                    if (top == stack.length) {
+                        stack = Arrays.copyOf(stack, stack.length * 2);
+                    }
+                    stack[top++] = child;
+                }
+            }
+        }
+        // a cycle in the told hierarchy makes the class its own descendant, the reasoner wouldn't report it
+        visited.clear(id);
+        return visited;
+    }
+
+    /**
+     * @param closureFingerprint identifies the content of the imports closure the index was built from
+     * @return the index saved in the directory for this version of the imports, or null if there isn't one
+     */
+    public static HierarchyIndex find(File directory, String closureFingerprint) throws IOException {
+        File file = new File(directory, closureFingerprint + ".hix");
+        return file.exists() ? read(file) : null;
+    }
+
+    /**
+     * Save the index in the directory for this version of the imports, replacing the indexes of any other version there
+     */
+    public void save(File directory, String closureFingerprint) throws IOException {
+        if (!directory.exists() && !directory.mkdirs()) {
+            throw new IOException("Can't create hierarchy index directory " + directory);
+        }
+        File file = new File(directory, closureFingerprint + ".hix");
+        write(file);
+        File[] others = directory.listFiles(new FilenameFilter() {
+            public boolean accept(File dir, String name) {
+                return name.endsWith(".hix");
+            }
+        });
+        if (others != null) {
+            for (File other : others) {
+                if (!other.equals(file)) {
+                    other.delete();
+                }
+            }
+        }
+    }
+
+    public void write(File file) throws IOException {
+        File tmp = new File(file.getPath() + ".tmp");
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new GZIPOutputStream(new FileOutputStream(tmp))));
+        try {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            out.writeLong(created);
+            out.writeBoolean(complete);
+            out.writeInt(iris.length);
+            for (int x = 0; x < iris.length; x++) {
+                writeString(out, iris[x]);
+                writeString(out, renderings[x]);
+            }
+            writeInts(out, childOffsets);
+            writeInts(out, children);
+            writeInts(out, parentOffsets);
+            writeInts(out, parents);
+        } finally {
+            out.close();
+        }
+        if (file.exists() && !file.delete()) {
+            throw new IOException("Couldn't replace hierarchy index " + file);
+        }
+        if (!tmp.renameTo(file)) {
+            throw new IOException("Couldn't write hierarchy index " + file);
+        }
+    }
+
+    public static HierarchyIndex read(File file) throws IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(new GZIPInputStream(new FileInputStream(file))));
+        try {
+            if (in.readInt() != MAGIC || in.readInt() != VERSION) {
+                throw new IOException(file + " is not a hierarchy index or was written by a different version");
+            }
+            long created = in.readLong();
+            boolean complete = in.readBoolean();
+            int n = in.readInt();
+            String[] iris = new String[n];
+            String[] renderings = new String[n];
+            for (int x = 0; x < n; x++) {
+                iris[x] = readString(in);
+                renderings[x] = readString(in);
+            }
+            int[] childOffsets = readInts(in);
+            int[] children = readInts(in);
+            int[] parentOffsets = readInts(in);
+            int[] parents = readInts(in);
+            return new HierarchyIndex(iris, renderings, childOffsets, children, parentOffsets, parents, complete, created);
+        } finally {
+            in.close();
+        }
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        byte[] bytes = value.getBytes(UTF8);
+        out.writeInt(bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+        return new String(bytes, UTF8);
+    }
+
+    private static void writeInts(DataOutputStream out, int[] values) throws IOException {
+        out.writeInt(values.length);
+        for (int value : values) {
+            out.writeInt(value);
+        }
+    }
+
+    private static int[] readInts(DataInputStream in) throws IOException {
+        int[] values = new int[in.readInt()];
+        for (int x = 0; x < values.length; x++) {
+            values[x] = in.readInt();
+        }
+        return values;
+    }
+
+    private static class IntList {
+        private int[] values = new int[1024];
+        private int size = 0;
+
+        void add(int value) {
+            if (size == values.length) {
+                values = Arrays.copyOf(values, size * 2);
+            }
+            values[size++] = value;
+        }
+
+        int get(int index) {
+            return values[index];
+        }
+
+        int size() {
+            return size;
+        }
+    }
+}
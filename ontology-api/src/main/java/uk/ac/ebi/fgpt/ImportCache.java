@@ -0,0 +1,381 @@
+package uk.ac.ebi.fgpt;
+
+import org.semanticweb.owlapi.io.OWLFunctionalSyntaxOntologyFormat;
+import org.semanticweb.owlapi.io.StreamDocumentSource;
+import org.semanticweb.owlapi.io.StreamDocumentTarget;
+import org.semanticweb.owlapi.model.*;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.*;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLConnection;
+import java.security.DigestInputStream;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.*;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * @author Simon Jupp
+ * @date 18/10/2026
+ * Samples, Phenotypes and Ontologies Team, EMBL-EBI
+ *
+ * A local cache of ontology documents. Each fetched document is kept in the cache directory under a hash of its IRI
+ * and a hash of its content, along with a gzipped snapshot of the parsed ontology in OWL functional syntax, which
+ * reads back faster than RDF/XML and, unlike Java serialisation, doesn't depend on the OWL API's classes staying the
+ * same from one version to the next. A document is revalidated with a conditional request (ETag / Last-Modified)
+ * each time it's loaded, following redirects between http and https; if it hasn't changed, or its content hash
+ * matches the cached copy, the snapshot is read back instead of parsing the document again. If the server can't be
+ * reached, or answers with anything but the document or 304 Not Modified, the cached copy is used.
+ *
+ * Set a default cache with {@link #setDefault} to have {@link ConcurrentImportsLoader} use it.
+ */
+public class ImportCache {
+
+    private static volatile ImportCache defaultCache;
+
+    private Logger logger = LoggerFactory.getLogger(getClass());
+
+    private final File directory;
+
+    // imports with at least this many annotations get a memory mapped label index, 0 for never
+    private int labelIndexThreshold = 0;
+
+    public ImportCache(File directory) {
+        this.directory = directory;
+        if (!directory.exists() && !directory.mkdirs()) {
+            throw new IllegalArgumentException("Can't create import cache directory " + directory);
+        }
+    }
+
+    /**
+     * @return the cache used by default, or null if imports aren't cached
+     */
+    public static ImportCache getDefault() {
+        return defaultCache;
+    }
+
+    public static void setDefault(ImportCache importCache) {
+        defaultCache = importCache;
+    }
+
+    public File getDirectory() {
+        return directory;
+    }
+
+    public int getLabelIndexThreshold() {
+        return labelIndexThreshold;
+    }
+
+    /**
+     * Build a {@link LabelIndexFile} for imports with at least this many annotation assertions, rather than keeping their labels on the heap
+     */
+    public void setLabelIndexThreshold(int labelIndexThreshold) {
+        this.labelIndexThreshold = labelIndexThreshold;
+    }
+
+    public File getLabelIndexDirectory() {
+        return new File(directory, "labels");
+    }
+
+    /**
+     * Fingerprint the cached copies of these documents from their content hashes, without going back to the servers
+     *
+     * @param extra anything else the fingerprint should depend on
+     * @return the fingerprint, or null if one of the documents isn't in the cache
+     */
+    public String getFingerprint(Collection<IRI> documentIris, String extra) {
+        List<String> sorted = new ArrayList<String>();
+        for (IRI documentIri : documentIris) {
+            sorted.add(documentIri.toString());
+        }
+        Collections.sort(sorted);
+
+        StringBuilder fingerprint = new StringBuilder();
+        for (String documentIri : sorted) {
+            String contentHash = readMeta(new File(directory, sha1(documentIri) + ".properties")).getProperty("contentHash");
+            if (contentHash == null) {
+                return null;
+            }
+            fingerprint.append(documentIri).append('\t').append(contentHash).append('\n');
+        }
+        fingerprint.append(extra);
+        return sha1(fingerprint.toString());
+    }
+
+    /**
+     * Open the label index for these documents, building it from their snapshots if it hasn't been built yet. The
+     * snapshots are streamed, so the labels never have to be held on the heap to build the index.
+     *
+     * @return the index, or null if one of the documents hasn't been loaded through the cache
+     */
+    public LabelIndexFile getLabelIndex(Collection<IRI> documentIris, List<IRI> labelIris) throws IOException {
+        String fingerprint = getFingerprint(documentIris, "labels:" + labelIris);
+        if (fingerprint == null) {
+            return null;
+        }
+        List<File> snapshots = new ArrayList<File>();
+        for (IRI documentIri : documentIris) {
+            String key = sha1(documentIri.toString());
+            String contentHash = readMeta(new File(directory, key + ".properties")).getProperty("contentHash");
+            File snapshotFile = contentHash == null ? null : getSnapshotFile(key, contentHash);
+            if (snapshotFile == null || !snapshotFile.exists()) {
+                return null;
+            }
+            snapshots.add(snapshotFile);
+        }
+        return LabelIndexFile.getOrBuild(getLabelIndexDirectory(), fingerprint, snapshots, labelIris);
+    }
+
+    /**
+     * Load the document at this IRI into the manager, without following its imports
+     */
+    public OWLOntology load(IRI documentIri, OWLOntologyManager manager, OWLOntologyLoaderConfiguration configuration) throws OWLOntologyCreationException {
+
+        String key = sha1(documentIri.toString());
+        File metaFile = new File(directory, key + ".properties");
+        Properties meta = readMeta(metaFile);
+
+        String contentHash;
+        try {
+            contentHash = fetch(documentIri, key, meta);
+        } catch (IOException e) {
+            contentHash = meta.getProperty("contentHash");
+            if (contentHash == null || !getDocumentFile(key, contentHash).exists()) {
+                throw new OWLOntologyCreationException("Couldn't fetch " + documentIri + " and there is no cached copy", e);
+            }
+            logger.warn("Couldn't fetch " + documentIri + ", using the cached copy from " + new Date(Long.parseLong(meta.getProperty("fetched", "0"))) + ": " + e.getMessage());
+        }
+
+        File snapshotFile = getSnapshotFile(key, contentHash);
+        if (snapshotFile.exists()) {
+            try {
+                return readSnapshot(documentIri, snapshotFile, manager, configuration);
+            } catch (Exception e) {
+                logger.warn("Couldn't read snapshot " + snapshotFile + ", parsing " + documentIri + " again: " + e.getMessage());
+            }
+        }
+
+        OWLOntology ontology = parse(documentIri, getDocumentFile(key, contentHash), manager, configuration);
+        try {
+            writeSnapshot(snapshotFile, ontology);
+        } catch (IOException e) {
+            logger.warn("Couldn't write snapshot of " + documentIri + " to " + snapshotFile + ": " + e.getMessage());
+        }
+        return ontology;
+    }
+
+    /**
+     * Make sure the cache holds the current document for this IRI
+     * @return the content hash of the current document
+     */
+    private String fetch(IRI documentIri, String key, Properties meta) throws IOException {
+
+        final String cachedHash = meta.getProperty("contentHash");
+        final boolean haveCopy = cachedHash != null && getDocumentFile(key, cachedHash).exists();
+        final String etag = meta.getProperty("etag");
+        final String lastModified = meta.getProperty("lastModified");
+
+        URLConnection connection = Redirects.open(new URL(documentIri.toString()), new Redirects.Request() {
+            public void configure(URLConnection connection) {
+                connection.setRequestProperty("Accept", "application/rdf+xml, application/xml;q=0.7, text/turtle;q=0.6, */*;q=0.5");
+                if (haveCopy && etag != null) {
+                    connection.setRequestProperty("If-None-Match", etag);
+                }
+                if (haveCopy && lastModified != null) {
+                    connection.setIfModifiedSince(Long.parseLong(lastModified));
+                }
+            }
+        });
+
+        if (connection instanceof HttpURLConnection) {
+            HttpURLConnection http = (HttpURLConnection) connection;
+            if (http.getResponseCode() == HttpURLConnection.HTTP_NOT_MODIFIED && haveCopy) {
+                logger.debug(documentIri + " not modified, using cached copy");
+                http.disconnect();
+                return cachedHash;
+            }
+            // anything else, a redirect we couldn't follow included, isn't the document
+            if (http.getResponseCode() < 200 || http.getResponseCode() >= 300) {
+                http.disconnect();
+                throw new IOException("Server returned " + http.getResponseCode() + " for " + documentIri);
+            }
+        }
+        else if (haveCopy && connection.getLastModified() > 0
+                && String.valueOf(connection.getLastModified()).equals(meta.getProperty("lastModified"))
+                && String.valueOf(connection.getContentLengthLong()).equals(meta.getProperty("length"))) {
+            // local files don't change without their modification time changing
+            return cachedHash;
+        }
+
+        File download = File.createTempFile(key, ".download", directory);
+        MessageDigest digest = newDigest();
+        InputStream in = new DigestInputStream(new BufferedInputStream(connection.getInputStream()), digest);
+        long length;
+        try {
+            length = copy(in, download);
+        } finally {
+            in.close();
+        }
+        String contentHash = toHex(digest.digest());
+
+        File documentFile = getDocumentFile(key, contentHash);
+        if (documentFile.exists()) {
+            download.delete();
+        }
+        else {
+            if (!download.renameTo(documentFile) && !documentFile.exists()) {
+                throw new IOException("Couldn't move " + download + " to " + documentFile);
+            }
+            if (haveCopy && !cachedHash.equals(contentHash)) {
+                // the old version and its snapshot are no use any more
+                getDocumentFile(key, cachedHash).delete();
+                getSnapshotFile(key, cachedHash).delete();
+            }
+        }
+
+        meta.setProperty("iri", documentIri.toString());
+        meta.setProperty("contentHash", contentHash);
+        meta.setProperty("length", String.valueOf(length));
+        meta.setProperty("fetched", String.valueOf(System.currentTimeMillis()));
+        setOrRemove(meta, "etag", connection.getHeaderField("ETag"));
+        setOrRemove(meta, "lastModified", connection.getLastModified() > 0 ? String.valueOf(connection.getLastModified()) : null);
+        writeMeta(new File(directory, key + ".properties"), meta);
+
+        return contentHash;
+    }
+
+    private OWLOntology parse(IRI documentIri, File documentFile, OWLOntologyManager manager, OWLOntologyLoaderConfiguration configuration) throws OWLOntologyCreationException {
+        InputStream in = null;
+        try {
+            in = new BufferedInputStream(new FileInputStream(documentFile));
+            // keep the original IRI so relative IRIs in the document resolve as they would have done online
+            return manager.loadOntologyFromOntologyDocument(new StreamDocumentSource(in, documentIri), configuration);
+        } catch (FileNotFoundException e) {
+            throw new OWLOntologyCreationException("Cached copy of " + documentIri + " has gone missing", e);
+        } finally {
+            closeQuietly(in);
+        }
+    }
+
+    private void writeSnapshot(File snapshotFile, OWLOntology ontology) throws IOException {
+        File tmp = File.createTempFile(snapshotFile.getName(), ".tmp", directory);
+        OutputStream out = new BufferedOutputStream(new GZIPOutputStream(new FileOutputStream(tmp)));
+        try {
+            ontology.getOWLOntologyManager().saveOntology(ontology, new OWLFunctionalSyntaxOntologyFormat(), new StreamDocumentTarget(out));
+        } catch (OWLOntologyStorageException e) {
+            tmp.delete();
+            throw new IOException("Couldn't write " + ontology.getOntologyID() + " as functional syntax", e);
+        } finally {
+            closeQuietly(out);
+        }
+        if (!tmp.renameTo(snapshotFile) && !snapshotFile.exists()) {
+            tmp.delete();
+            throw new IOException("Couldn't move " + tmp + " to " + snapshotFile);
+        }
+    }
+
+    private OWLOntology readSnapshot(IRI documentIri, File snapshotFile, OWLOntologyManager manager, OWLOntologyLoaderConfiguration configuration) throws IOException, OWLOntologyCreationException {
+        InputStream in = new BufferedInputStream(new GZIPInputStream(new FileInputStream(snapshotFile)));
+        try {
+            return manager.loadOntologyFromOntologyDocument(new StreamDocumentSource(in, documentIri), configuration);
+        } finally {
+            in.close();
+        }
+    }
+
+    private File getDocumentFile(String key, String contentHash) {
+        return new File(directory, key + "-" + contentHash + ".owl");
+    }
+
+    private File getSnapshotFile(String key, String contentHash) {
+        return new File(directory, key + "-" + contentHash + ".ofn.gz");
+    }
+
+    private Properties readMeta(File metaFile) {
+        Properties meta = new Properties();
+        if (metaFile.exists()) {
+            InputStream in = null;
+            try {
+                in = new FileInputStream(metaFile);
+                meta.load(in);
+            } catch (IOException e) {
+                logger.warn("Couldn't read " + metaFile + ", fetching again");
+            } finally {
+                closeQuietly(in);
+            }
+        }
+        return meta;
+    }
+
+    private void writeMeta(File metaFile, Properties meta) throws IOException {
+        OutputStream out = new FileOutputStream(metaFile);
+        try {
+            meta.store(out, "webulous import cache");
+        } finally {
+            out.close();
+        }
+    }
+
+    private void setOrRemove(Properties properties, String key, String value) {
+        if (value == null) {
+            properties.remove(key);
+        }
+        else {
+            properties.setProperty(key, value);
+        }
+    }
+
+    private long copy(InputStream in, File file) throws IOException {
+        OutputStream out = new BufferedOutputStream(new FileOutputStream(file));
+        long length = 0;
+        try {
+            byte[] buffer = new byte[64 * 1024];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                out.write(buffer, 0, read);
+                length += read;
+            }
+        } finally {
+            out.close();
+        }
+        return length;
+    }
+
+    private void closeQuietly(Closeable closeable) {
+        if (closeable != null) {
+            try {
+                closeable.close();
+            } catch (IOException e) {
+                // nothing to do
+            }
+        }
+    }
+
+    private static String sha1(String value) {
+        try {
+            return toHex(newDigest().digest(value.getBytes("UTF-8")));
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String toHex(byte[] bytes) {
+        StringBuilder hex = new StringBuilder();
+        for (byte b : bytes) {
+            hex.append(String.format("%02x", b));
+        }
+        return hex.toString();
+    }
+}
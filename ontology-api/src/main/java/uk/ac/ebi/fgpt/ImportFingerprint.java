@@ -0,0 +1,150 @@
+package uk.ac.ebi.fgpt;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.UnsupportedEncodingException;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLConnection;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * @author Simon Jupp
+ * @date 18/10/2026
+ * Samples, Phenotypes and Ontologies Team, EMBL-EBI
+ *
+ * Fingerprints a set of ontology documents without parsing them, so a caller can tell whether anything has changed
+ * since they were last loaded. Each document contributes its ETag or Last-Modified date when the server provides one,
+ * otherwise a hash of its content. Redirects are followed by hand, between http and https too; if a document can't be
+ * reached, or doesn't come back with a 2xx, there is no fingerprint and callers must assume it has changed.
+ */
+public class ImportFingerprint {
+
+    private static final Logger logger = LoggerFactory.getLogger(ImportFingerprint.class);
+
+    /**
+     * @param documentIris the documents in the imports closure
+     * @param extra anything else the result depends on, e.g. the queries run against the ontologies
+     * @return a fingerprint of the documents and the extra string, or null if a document couldn't be checked
+     */
+    public static String compute(Collection<String> documentIris, String extra) {
+        List<String> sorted = new ArrayList<String>(documentIris);
+        Collections.sort(sorted);
+
+        MessageDigest digest = newDigest();
+        for (String documentIri : sorted) {
+            String validator = getValidator(documentIri);
+            if (validator == null) {
+                return null;
+            }
+            update(digest, documentIri);
+            update(digest, validator);
+        }
+        update(digest, extra);
+        return toHex(digest.digest());
+    }
+
+    /**
+     * @return a string that changes whenever the document changes, or null if the document can't be reached
+     */
+    public static String getValidator(String documentIri) {
+        try {
+            URLConnection connection = Redirects.open(new URL(documentIri), new Redirects.Request() {
+                public void configure(URLConnection connection) throws IOException {
+                    if (connection instanceof HttpURLConnection) {
+                        ((HttpURLConnection) connection).setRequestMethod("HEAD");
+                    }
+                }
+            });
+            if (connection instanceof HttpURLConnection) {
+                HttpURLConnection http = (HttpURLConnection) connection;
+                // a redirect that couldn't be followed says nothing about the document
+                if (!isSuccess(http)) {
+                    return null;
+                }
+                String etag = http.getHeaderField("ETag");
+                long lastModified = http.getLastModified();
+                http.disconnect();
+                if (etag != null) {
+                    return "etag:" + etag;
+                }
+                if (lastModified > 0) {
+                    return "modified:" + lastModified;
+                }
+                // nothing to go on but the content itself
+                HttpURLConnection get = (HttpURLConnection) Redirects.open(http.getURL(), new Redirects.Request() {
+                    public void configure(URLConnection connection) {
+                    }
+                });
+                if (!isSuccess(get)) {
+                    return null;
+                }
+                return "sha1:" + hashContent(get);
+            }
+            if (connection.getLastModified() > 0) {
+                return "modified:" + connection.getLastModified() + ":" + connection.getContentLengthLong();
+            }
+            return "sha1:" + hashContent(connection);
+        } catch (IOException e) {
+            logger.debug("Couldn't check " + documentIri + ": " + e.getMessage());
+            return null;
+        }
+    }
+
+    private static boolean isSuccess(HttpURLConnection http) throws IOException {
+        if (http.getResponseCode() < 200 || http.getResponseCode() >= 300) {
+            logger.debug(http.getURL() + " returned " + http.getResponseCode());
+            http.disconnect();
+            return false;
+        }
+        return true;
+    }
+
+    private static String hashContent(URLConnection connection) throws IOException {
+        MessageDigest digest = newDigest();
+        InputStream in = connection.getInputStream();
+        try {
+            byte[] buffer = new byte[64 * 1024];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                digest.update(buffer, 0, read);
+            }
+        } finally {
+            in.close();
+        }
+        return toHex(digest.digest());
+    }
+
+    private static void update(MessageDigest digest, String value) {
+        try {
+            digest.update(value.getBytes("UTF-8"));
+            digest.update((byte) 0);
+        } catch (UnsupportedEncodingException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static MessageDigest newDigest() {
+        try {
+            return MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException e) {
+            throw new IllegalStateException(e);
+        }
+    }
+
+    private static String toHex(byte[] bytes) {
+        StringBuilder hex = new StringBuilder();
+        for (byte b : bytes) {
+            hex.append(String.format("%02x", b));
+        }
+        return hex.toString();
+    }
+}
@@ -0,0 +1,727 @@
+package uk.ac.ebi.fgpt;
+
+import org.semanticweb.owlapi.model.*;
+import org.semanticweb.owlapi.util.SimpleIRIShortFormProvider;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.util.*;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * @author Simon Jupp
+ * @date 18/10/2026
+ * Samples, Phenotypes and Ontologies Team, EMBL-EBI
+ *
+ * A read-only index of the labels of every entity in a set of ontologies, kept in a file and memory mapped so the
+ * labels live in the page cache rather than on the heap. The file is built once for an imports closure and can be
+ * opened by any number of DAOs and processes at the same time.
+ *
+ * The file has two sorted tables and a string table. The entity table holds each entity's IRI and label sorted by IRI,
+ * for rendering. The name table holds each entity's normalised label, or the short form of its IRI if it has no label,
+ * along with its other labels, sorted by name and pointing back into the entity table, for looking entities up by
+ * name. Both are binary searched in place. Strings are UTF-8 and compared byte by byte. Offsets are longs and the file is mapped in chunks, as one
+ * mapping can't be bigger than 2GB.
+ *
+ * Files are written by a {@link Builder}, which sorts on disk rather than on the heap. {@link #getOrBuild} builds
+ * the index by streaming the functional syntax snapshots the {@link ImportCache} keeps, so the ontologies don't
+ * have to be loaded, or walked, to build it.
+ */
+public class LabelIndexFile {
+
+    private static final int MAGIC = 0x574c4958; // WLIX
+    private static final int VERSION = 3;
+    private static final int HEADER_SIZE = 16;
+    private static final int ENTITY_SIZE = 16;
+    private static final int NAME_SIZE = 16;
+    private static final Charset UTF8 = Charset.forName("UTF-8");
+
+    // 1GB mappings, well inside the 2GB limit on a single mapping
+    private static final int CHUNK_BITS = 30;
+
+    private static final Logger logger = LoggerFactory.getLogger(LabelIndexFile.class);
+
+    // indexes already mapped in this process, so runs on the same imports share them
+    private static final Map<String, LabelIndexFile> opened = new LinkedHashMap<String, LabelIndexFile>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, LabelIndexFile> eldest) {
+            return size() > 8;
+        }
+    };
+
+    private final File file;
+    private final ByteBuffer[] chunks;
+    private final int chunkBits;
+    private final long chunkMask;
+    private final int entityCount;
+    private final int nameCount;
+    private final long entityTable;
+    private final long nameTable;
+    private final long strings;
+
+    private LabelIndexFile(File file, ByteBuffer[] chunks, int chunkBits, long length) throws IOException {
+        this.file = file;
+        this.chunks = chunks;
+        this.chunkBits = chunkBits;
+        this.chunkMask = (1L << chunkBits) - 1;
+        if (length < HEADER_SIZE || getInt(0) != MAGIC) {
+            throw new IOException(file + " is not a label index");
+        }
+        if (getInt(4) != VERSION) {
+            throw new IOException(file + " was written by a different version");
+        }
+        this.entityCount = getInt(8);
+        this.nameCount = getInt(12);
+        this.entityTable = HEADER_SIZE;
+        this.nameTable = entityTable + (long) entityCount * ENTITY_SIZE;
+        this.strings = nameTable + (long) nameCount * NAME_SIZE;
+        if (entityCount < 0 || nameCount < 0 || strings > length) {
+            throw new IOException(file + " is truncated");
+        }
+    }
+
+    /**
+     * Open the index for this fingerprint in the directory, building it from the documents if it isn't there
+     *
+     * @param fingerprint identifies the documents and label properties the index is for
+     * @param documents gzipped OWL functional syntax, as the import cache keeps its snapshots
+     */
+    public static LabelIndexFile getOrBuild(File directory, String fingerprint, Collection<File> documents, List<IRI> labelIris) throws IOException {
+        File file = new File(directory, fingerprint + ".lix");
+        synchronized (opened) {
+            LabelIndexFile index = opened.get(file.getPath());
+            if (index != null) {
+                return index;
+            }
+            if (file.exists()) {
+                try {
+                    index = open(file);
+                } catch (IOException e) {
+                    logger.warn("Couldn't read label index " + file + ", rebuilding: " + e.getMessage());
+                }
+            }
+            if (index == null) {
+                if (!directory.exists() && !directory.mkdirs()) {
+                    throw new IOException("Can't create label index directory " + directory);
+                }
+                long start = System.currentTimeMillis();
+                writeDocuments(file, documents, labelIris);
+                index = open(file);
+                logger.info("Built label index of " + index.size() + " entities in " + file + " in " + (System.currentTimeMillis() - start) + "ms");
+            }
+            opened.put(file.getPath(), index);
+            return index;
+        }
+    }
+
+    public static LabelIndexFile open(File file) throws IOException {
+        return open(file, CHUNK_BITS);
+    }
+
+    static LabelIndexFile open(File file, int chunkBits) throws IOException {
+        RandomAccessFile raf = new RandomAccessFile(file, "r");
+        try {
+            // the mappings stay valid after the channel is closed
+            FileChannel channel = raf.getChannel();
+            long length = channel.size();
+            long chunkSize = 1L << chunkBits;
+            ByteBuffer[] chunks = new ByteBuffer[(int) ((length + chunkSize - 1) >>> chunkBits)];
+            for (int x = 0; x < chunks.length; x++) {
+                long position = (long) x << chunkBits;
+                chunks[x] = channel.map(FileChannel.MapMode.READ_ONLY, position, Math.min(chunkSize, length - position));
+            }
+            return new LabelIndexFile(file, chunks, chunkBits, length);
+        } finally {
+            raf.close();
+        }
+    }
+
+    /**
+     * Write an index of the entities in the gzipped functional syntax documents to the file, reading each document
+     * as a stream
+     */
+    public static void writeDocuments(File file, Collection<File> documents, List<IRI> labelIris) throws IOException {
+        Builder builder = new Builder(file.getParentFile());
+        try {
+            for (File document : documents) {
+                Reader reader = new InputStreamReader(new GZIPInputStream(new FileInputStream(document), 64 * 1024), UTF8);
+                try {
+                    new FunctionalSyntaxLabelReader(reader, labelIris, builder).read();
+                } finally {
+                    reader.close();
+                }
+            }
+            builder.write(file);
+        } finally {
+            builder.dispose();
+        }
+    }
+
+    /**
+     * Write an index of the entities in the ontologies to the file. The label of an entity is the value of the first
+     * of the label properties it has.
+     */
+    public static void write(File file, Collection<OWLOntology> ontologies, List<IRI> labelIris) throws IOException {
+        Builder builder = new Builder(file.getParentFile());
+        try {
+            for (OWLOntology ontology : ontologies) {
+                for (OWLEntity entity : ontology.getSignature()) {
+                    if (!entity.isBuiltIn()) {
+                        builder.addEntity(entity.getIRI().toString());
+                    }
+                }
+                for (OWLAnnotationAssertionAxiom annotation : ontology.getAxioms(AxiomType.ANNOTATION_ASSERTION)) {
+                    int priority = labelIris.indexOf(annotation.getProperty().getIRI());
+                    if (priority >= 0 && annotation.getSubject() instanceof IRI && annotation.getValue() instanceof OWLLiteral) {
+                        builder.addLabel(annotation.getSubject().toString(), ((OWLLiteral) annotation.getValue()).getLiteral(), priority);
+                    }
+                }
+            }
+            builder.write(file);
+        } finally {
+            builder.dispose();
+        }
+    }
+
+    /**
+     * @return true if the entity with this IRI was in the ontologies the index was built from
+     */
+    public boolean contains(String iri) {
+        return findEntity(iri.getBytes(UTF8)) >= 0;
+    }
+
+    /**
+     * @return the label of the entity with this IRI, or null if it has no label or isn't in the index
+     */
+    public String getLabel(String iri) {
+        int entity = findEntity(iri.getBytes(UTF8));
+        if (entity < 0) {
+            return null;
+        }
+        long labelOffset = getLong(entityTable + (long) entity * ENTITY_SIZE + 8);
+        return labelOffset < 0 ? null : readString(labelOffset);
+    }
+
+    /**
+     * @return the IRIs of the entities whose label, or IRI short form if they have no label, normalises to the same as name
+     */
+    public List<String> findIris(String name) {
+        List<String> iris = new ArrayList<String>(1);
+        for (Name found : findNames(name)) {
+            if (found.isPrimary()) {
+                iris.add(found.getIri());
+            }
+        }
+        return iris;
+    }
+
+    /**
+     * @return the entities with any label, or IRI short form if they have no label, that normalises to the same as name
+     */
+    public List<Name> findNames(String name) {
+        byte[] wanted = normalise(name).getBytes(UTF8);
+        int low = 0;
+        int high = nameCount;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (compareString(getLong(nameTable + (long) mid * NAME_SIZE), wanted) < 0) {
+                low = mid + 1;
+            }
+            else {
+                high = mid;
+            }
+        }
+        List<Name> names = new ArrayList<Name>(1);
+        for (int x = low; x < nameCount && compareString(getLong(nameTable + (long) x * NAME_SIZE), wanted) == 0; x++) {
+            int entity = getInt(nameTable + (long) x * NAME_SIZE + 8);
+            int kind = getInt(nameTable + (long) x * NAME_SIZE + 12);
+            names.add(new Name(readString(getLong(entityTable + (long) entity * ENTITY_SIZE)), kind >> 1, (kind & 1) == 1));
+        }
+        return names;
+    }
+
+    public int size() {
+        return entityCount;
+    }
+
+    public File getFile() {
+        return file;
+    }
+
+    private int findEntity(byte[] iri) {
+        int low = 0;
+        int high = entityCount - 1;
+        while (low <= high) {
+            int mid = (low + high) >>> 1;
+            int compare = compareString(getLong(entityTable + (long) mid * ENTITY_SIZE), iri);
+            if (compare < 0) {
+                low = mid + 1;
+            }
+            else if (compare > 0) {
+                high = mid - 1;
+            }
+            else {
+                return mid;
+            }
+        }
+        return -1;
+    }
+
+    private byte getByte(long position) {
+        return chunks[(int) (position >>> chunkBits)].get((int) (position & chunkMask));
+    }
+
+    // a value that runs over the end of a chunk is put together a byte at a time
+    private int getInt(long position) {
+        int offset = (int) (position & chunkMask);
+        if (offset + 4 <= chunkMask + 1) {
+            return chunks[(int) (position >>> chunkBits)].getInt(offset);
+        }
+        int value = 0;
+        for (int x = 0; x < 4; x++) {
+            value = (value << 8) | (getByte(position + x) & 0xff);
+        }
+        return value;
+    }
+
+    private long getLong(long position) {
+        int offset = (int) (position & chunkMask);
+        if (offset + 8 <= chunkMask + 1) {
+            return chunks[(int) (position >>> chunkBits)].getLong(offset);
+        }
+        return ((long) getInt(position) << 32) | (getInt(position + 4) & 0xffffffffL);
+    }
+
+    private String readString(long offset) {
+        long start = strings + offset;
+        byte[] bytes = new byte[getInt(start)];
+        for (int x = 0; x < bytes.length; x++) {
+            bytes[x] = getByte(start + 4 + x);
+        }
+        return new String(bytes, UTF8);
+    }
+
+    // compare the string at offset with these bytes, without copying it off the map
+    private int compareString(long offset, byte[] bytes) {
+        long start = strings + offset;
+        int length = getInt(start);
+        int n = Math.min(length, bytes.length);
+        for (int x = 0; x < n; x++) {
+            int compare = (getByte(start + 4 + x) & 0xff) - (bytes[x] & 0xff);
+            if (compare != 0) {
+                return compare;
+            }
+        }
+        return length - bytes.length;
+    }
+
+    private static int compareBytes(byte[] a, byte[] b) {
+        int n = Math.min(a.length, b.length);
+        for (int x = 0; x < n; x++) {
+            int compare = (a[x] & 0xff) - (b[x] & 0xff);
+            if (compare != 0) {
+                return compare;
+            }
+        }
+        return a.length - b.length;
+    }
+
+    /**
+     * Lower case with runs of whitespace collapsed to a single space
+     */
+    public static String normalise(String name) {
+        StringBuilder normalised = new StringBuilder(name.length());
+        boolean space = false;
+        for (char c : name.trim().toCharArray()) {
+            if (Character.isWhitespace(c)) {
+                space = true;
+            }
+            else {
+                if (space) {
+                    normalised.append(' ');
+                    space = false;
+                }
+                normalised.append(Character.toLowerCase(c));
+            }
+        }
+        return normalised.toString();
+    }
+
+    /**
+     * An entity found by one of its names
+     */
+    public static class Name {
+        private final String iri;
+        private final int priority;
+        private final boolean primary;
+
+        Name(String iri, int priority, boolean primary) {
+            this.iri = iri;
+            this.priority = priority;
+            this.primary = primary;
+        }
+
+        public String getIri() {
+            return iri;
+        }
+
+        /**
+         * @return the position of the name's property in the list of label properties, or -1 for the short form of the IRI
+         */
+        public int getPriority() {
+            return priority;
+        }
+
+        /**
+         * @return true if this is the name the entity is labelled with
+         */
+        public boolean isPrimary() {
+            return primary;
+        }
+    }
+
+    /**
+     * Collects entities and labels, in any order and with repeats, and writes them out as an index. They are sorted
+     * in runs that are spilled to temporary files next to the index and merged as it is written, so no more than a
+     * run is held on the heap at a time. The file is written alongside and moved into place, so other processes
+     * never see half an index.
+     */
+    public static class Builder {
+
+        private static final int DEFAULT_RUN_SIZE = 200000;
+
+        // an entity is recorded as a label with no text that sorts after all the real labels
+        private static final int ENTITY = Integer.MAX_VALUE;
+
+        private final File directory;
+        private final int runSize;
+        private final List<Record> buffer = new ArrayList<Record>();
+        private final List<File> runs = new ArrayList<File>();
+        private long sequence = 0;
+
+        public Builder(File directory) {
+            this(directory, DEFAULT_RUN_SIZE);
+        }
+
+        /**
+         * @param runSize how many records to sort on the heap before spilling them to disk
+         */
+        Builder(File directory, int runSize) {
+            this.directory = directory;
+            this.runSize = Math.max(1, runSize);
+        }
+
+        public void addEntity(String iri) throws IOException {
+            add(new Record(iri.getBytes(UTF8), null, ENTITY, sequence++));
+        }
+
+        /**
+         * @param priority the position of the label's property in the list of label properties; the lowest wins, then the first added
+         */
+        public void addLabel(String iri, String label, int priority) throws IOException {
+            add(new Record(iri.getBytes(UTF8), label.getBytes(UTF8), priority, sequence++));
+        }
+
+        private void add(Record record) throws IOException {
+            buffer.add(record);
+            if (buffer.size() >= runSize) {
+                runs.add(spill(buffer));
+            }
+        }
+
+        public void write(File file) throws IOException {
+            File entityFile = File.createTempFile(file.getName(), ".entities", directory);
+            File stringFile = File.createTempFile(file.getName(), ".strings", directory);
+            File nameFile = File.createTempFile(file.getName(), ".names", directory);
+            List<File> nameRuns = new ArrayList<File>();
+            try {
+                // one pass in IRI order lays out the strings and the entity table, and passes the names on to be sorted
+                List<Record> names = new ArrayList<Record>();
+                SimpleIRIShortFormProvider shortFormProvider = new SimpleIRIShortFormProvider();
+                int entityCount = 0;
+                int nameCount = 0;
+                Merge records = new Merge(runs, buffer);
+                DataOutputStream entityOut = create(entityFile);
+                DataOutputStream stringOut = create(stringFile);
+                try {
+                    long offset = 0;
+                    Record first = records.next();
+                    while (first != null) {
+                        // the records for an IRI come together, best label first and the entity last
+                        List<Record> labels = new ArrayList<Record>(1);
+                        boolean entity = false;
+                        Record record = first;
+                        while (record != null && Arrays.equals(record.key, first.key)) {
+                            if (record.priority == ENTITY) {
+                                entity = true;
+                            }
+                            else {
+                                labels.add(record);
+                            }
+                            record = records.next();
+                        }
+                        if (entity) {
+                            byte[] label = labels.isEmpty() ? null : labels.get(0).value;
+                            String name = label != null ? new String(label, UTF8) : shortFormProvider.getShortForm(IRI.create(new String(first.key, UTF8)));
+                            byte[] normalised = normalise(name).getBytes(UTF8);
+
+                            long iriOffset = offset;
+                            offset += writeString(stringOut, first.key);
+                            long labelOffset = -1;
+                            if (label != null) {
+                                labelOffset = offset;
+                                offset += writeString(stringOut, label);
+                            }
+                            long nameOffset = labelOffset;
+                            if (label == null || !Arrays.equals(label, normalised)) {
+                                nameOffset = offset;
+                                offset += writeString(stringOut, normalised);
+                            }
+                            entityOut.writeLong(iriOffset);
+                            entityOut.writeLong(labelOffset);
+
+                            // a name sorts by its text, then by entity, and carries the offset of its string and its
+                            // kind along: the label property's priority, -1 for a short form, and whether it's the label
+                            names.add(new Record(normalised, null, entityCount, nameOffset, getKind(label == null ? -1 : labels.get(0).priority, true)));
+                            Set<String> seen = new HashSet<String>();
+                            seen.add(new String(normalised, UTF8));
+                            for (Record other : labels) {
+                                String otherName = normalise(new String(other.value, UTF8));
+                                if (seen.add(otherName)) {
+                                    names.add(new Record(otherName.getBytes(UTF8), null, entityCount, offset, getKind(other.priority, false)));
+                                    offset += writeString(stringOut, otherName.getBytes(UTF8));
+                                }
+                            }
+                            nameCount += seen.size();
+                            if (names.size() >= runSize) {
+                                nameRuns.add(spill(names));
+                            }
+                            entityCount++;
+                        }
+                        first = record;
+                    }
+                } finally {
+                    entityOut.close();
+                    stringOut.close();
+                }
+
+                Merge sortedNames = new Merge(nameRuns, names);
+                DataOutputStream nameOut = create(nameFile);
+                try {
+                    for (Record name = sortedNames.next(); name != null; name = sortedNames.next()) {
+                        nameOut.writeLong(name.sequence);
+                        nameOut.writeInt(name.priority);
+                        nameOut.writeInt(name.kind);
+                    }
+                } finally {
+                    nameOut.close();
+                }
+
+                File tmp = File.createTempFile(file.getName(), ".tmp", directory);
+                DataOutputStream out = create(tmp);
+                try {
+                    out.writeInt(MAGIC);
+                    out.writeInt(VERSION);
+                    out.writeInt(entityCount);
+                    out.writeInt(nameCount);
+                    append(out, entityFile);
+                    append(out, nameFile);
+                    append(out, stringFile);
+                } finally {
+                    out.close();
+                }
+                if (!tmp.renameTo(file) && !file.exists()) {
+                    tmp.delete();
+                    throw new IOException("Couldn't move " + tmp + " to " + file);
+                }
+                tmp.delete();
+            } finally {
+                entityFile.delete();
+                stringFile.delete();
+                nameFile.delete();
+                for (File run : nameRuns) {
+                    run.delete();
+                }
+            }
+        }
+
+        private static int getKind(int priority, boolean primary) {
+            return priority * 2 + (primary ? 1 : 0);
+        }
+
+        /**
+         * Delete the runs spilled so far
+         */
+        public void dispose() {
+            for (File run : runs) {
+                run.delete();
+            }
+            runs.clear();
+            buffer.clear();
+        }
+
+        private File spill(List<Record> records) throws IOException {
+            Collections.sort(records);
+            File run = File.createTempFile("labels", ".run", directory);
+            DataOutputStream out = create(run);
+            try {
+                for (Record record : records) {
+                    record.write(out);
+                }
+            } finally {
+                out.close();
+            }
+            records.clear();
+            return run;
+        }
+
+        private static DataOutputStream create(File file) throws IOException {
+            return new DataOutputStream(new BufferedOutputStream(new FileOutputStream(file), 64 * 1024));
+        }
+
+        private static long writeString(DataOutputStream out, byte[] bytes) throws IOException {
+            out.writeInt(bytes.length);
+            out.write(bytes);
+            return 4 + bytes.length;
+        }
+
+        private static void append(OutputStream out, File file) throws IOException {
+            InputStream in = new FileInputStream(file);
+            try {
+                byte[] bytes = new byte[64 * 1024];
+                int read;
+                while ((read = in.read(bytes)) != -1) {
+                    out.write(bytes, 0, read);
+                }
+            } finally {
+                in.close();
+            }
+        }
+    }
+
+    // an IRI and one of its labels while building, or a name and its entity when sorting the names
+    private static class Record implements Comparable<Record> {
+        private final byte[] key;
+        private final byte[] value;
+        private final int priority;
+        private final long sequence;
+        private final int kind;
+
+        Record(byte[] key, byte[] value, int priority, long sequence) {
+            this(key, value, priority, sequence, 0);
+        }
+
+        Record(byte[] key, byte[] value, int priority, long sequence, int kind) {
+            this.key = key;
+            this.value = value;
+            this.priority = priority;
+            this.sequence = sequence;
+            this.kind = kind;
+        }
+
+        public int compareTo(Record other) {
+            int compare = compareBytes(key, other.key);
+            if (compare == 0) {
+                compare = priority < other.priority ? -1 : priority == other.priority ? 0 : 1;
+            }
+            if (compare == 0) {
+                compare = sequence < other.sequence ? -1 : sequence == other.sequence ? 0 : 1;
+            }
+            return compare;
+        }
+
+        void write(DataOutputStream out) throws IOException {
+            out.writeInt(key.length);
+            out.write(key);
+            out.writeInt(value == null ? -1 : value.length);
+            if (value != null) {
+                out.write(value);
+            }
+            out.writeInt(priority);
+            out.writeLong(sequence);
+            out.writeInt(kind);
+        }
+
+        /**
+         * @return the next record, or null at the end of the run
+         */
+        static Record read(DataInputStream in) throws IOException {
+            int length;
+            try {
+                length = in.readInt();
+            } catch (EOFException e) {
+                return null;
+            }
+            byte[] key = new byte[length];
+            in.readFully(key);
+            int valueLength = in.readInt();
+            byte[] value = null;
+            if (valueLength >= 0) {
+                value = new byte[valueLength];
+                in.readFully(value);
+            }
+            return new Record(key, value, in.readInt(), in.readLong(), in.readInt());
+        }
+    }
+
+    // merges sorted runs on disk with the records still on the heap into a single sorted stream
+    private static class Merge {
+        private final PriorityQueue<Run> heads;
+
+        Merge(List<File> runs, List<Record> remaining) throws IOException {
+            Collections.sort(remaining);
+            heads = new PriorityQueue<Run>(runs.size() + 1);
+            for (File run : runs) {
+                advance(new Run(new DataInputStream(new BufferedInputStream(new FileInputStream(run), 64 * 1024)), null));
+            }
+            advance(new Run(null, remaining.iterator()));
+        }
+
+        /**
+         * @return the next record, or null when every run is used up
+         */
+        Record next() throws IOException {
+            Run run = heads.poll();
+            if (run == null) {
+                return null;
+            }
+            Record record = run.head;
+            advance(run);
+            return record;
+        }
+
+        private void advance(Run run) throws IOException {
+            if (run.in != null) {
+                run.head = Record.read(run.in);
+                if (run.head == null) {
+                    run.in.close();
+                }
+            }
+            else {
+                run.head = run.records.hasNext() ? run.records.next() : null;
+            }
+            if (run.head != null) {
+                heads.add(run);
+            }
+        }
+
+        private static class Run implements Comparable<Run> {
+            private final DataInputStream in;
+            private final Iterator<Record> records;
+            private Record head;
+
+            Run(DataInputStream in, Iterator<Record> records) {
+                this.in = in;
+                this.records = records;
+            }
+
+            public int compareTo(Run other) {
+                return head.compareTo(other.head);
+            }
+        }
+    }
+}
@@ -0,0 +1,222 @@
+package uk.ac.ebi.fgpt;
+
+import org.semanticweb.owlapi.model.*;
+import org.semanticweb.owlapi.util.BidirectionalShortFormProvider;
+import org.semanticweb.owlapi.util.SimpleShortFormProvider;
+
+import java.util.*;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * @author Simon Jupp
+ * @date 18/10/2026
+ * Samples, Phenotypes and Ontologies Team, EMBL-EBI
+ *
+ * A short form provider that works things out as they are asked for, instead of rendering every entity in the
+ * ontologies up front. The short form of an entity is the first of its label annotations, or the fragment of its IRI
+ * if it has none, quoted if it has spaces so the manchester syntax parser can read it back. Short forms are cached
+ * once rendered.
+ *
+ * Going the other way, names are only looked up when they are asked for. Give the provider the expressions that
+ * are about to be parsed with {@link #prepare} and the names in them are found with a single pass over the
+ * ontologies; anything else the parser asks for is looked up on its own.
+ *
+ * With a {@link LabelIndexFile} for the ontologies, labels and names are read from the index instead of the ontologies.
+ *
+ * OWL API ontologies build some of their indexes the first time they are read, so they aren't safe to read from
+ * several threads at once. The provider only reads them one thread at a time, but callers running queries
+ * concurrently should still prepare names and render results on a single thread.
+ */
+public class LazyShortFormProvider implements BidirectionalShortFormProvider {
+
+    private final Set<OWLOntology> ontologies;
+    private final List<IRI> labelIris;
+    private final LabelIndexFile labelIndex;
+    private final SimpleShortFormProvider simpleShortFormProvider = new SimpleShortFormProvider();
+
+    private final Map<OWLEntity, String> shortForms = new ConcurrentHashMap<OWLEntity, String>();
+    private final Map<String, Set<OWLEntity>> entities = new ConcurrentHashMap<String, Set<OWLEntity>>();
+
+    public LazyShortFormProvider(Set<OWLOntology> ontologies, Collection<IRI> labelIris) {
+        this(ontologies, labelIris, null);
+    }
+
+    /**
+     * @param labelIndex an index built from these ontologies and label properties, or null to read the ontologies
+     */
+    public LazyShortFormProvider(Set<OWLOntology> ontologies, Collection<IRI> labelIris, LabelIndexFile labelIndex) {
+        this.ontologies = ontologies;
+        this.labelIris = new ArrayList<IRI>(labelIris);
+        this.labelIndex = labelIndex;
+    }
+
+    @Override
+    public String getShortForm(OWLEntity entity) {
+        String shortForm = shortForms.get(entity);
+        if (shortForm == null) {
+            synchronized (this) {
+                shortForm = generateShortForm(entity);
+                shortForms.put(entity, shortForm);
+            }
+        }
+        return shortForm;
+    }
+
+    private String generateShortForm(OWLEntity entity) {
+        String shortForm = getLabel(entity.getIRI());
+        if (shortForm == null) {
+            shortForm = simpleShortFormProvider.getShortForm(entity);
+        }
+        if (shortForm.contains(" ")) { // if this is a multiword name
+            shortForm = "'" + shortForm + "'";
+        }
+        return shortForm;
+    }
+
+    private String getLabel(IRI iri) {
+        if (labelIndex != null && labelIndex.contains(iri.toString())) {
+            return labelIndex.getLabel(iri.toString());
+        }
+        for (IRI labelIri : labelIris) {
+            for (OWLOntology ontology : ontologies) {
+                for (OWLAnnotationAssertionAxiom annotation : ontology.getAnnotationAssertionAxioms(iri)) {
+                    if (annotation.getProperty().getIRI().equals(labelIri) && annotation.getValue() instanceof OWLLiteral) {
+                        return ((OWLLiteral) annotation.getValue()).getLiteral();
+                    }
+                }
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Look up all the names used in these manchester syntax expressions in one go
+     */
+    public void prepare(Collection<String> manchesterSyntaxExpressions) {
+        Set<String> names = new HashSet<String>();
+        for (String expression : manchesterSyntaxExpressions) {
+            names.addAll(getNames(expression));
+        }
+        resolve(names);
+    }
+
+    // quoted names and bare words, keywords included, there's no harm in looking them up
+    static Set<String> getNames(String expression) {
+        Set<String> names = new HashSet<String>();
+        StringBuilder name = new StringBuilder();
+        boolean quoted = false;
+        for (char c : expression.toCharArray()) {
+            if (c == '\'') {
+                name.append(c);
+                if (quoted) {
+                    names.add(name.toString());
+                    name.setLength(0);
+                }
+                quoted = !quoted;
+            }
+            else if (!quoted && (Character.isWhitespace(c) || "(){}[],".indexOf(c) >= 0)) {
+                if (name.length() > 0) {
+                    names.add(name.toString());
+                    name.setLength(0);
+                }
+            }
+            else {
+                name.append(c);
+            }
+        }
+        if (name.length() > 0) {
+            names.add(name.toString());
+        }
+        return names;
+    }
+
+    private synchronized void resolve(Set<String> names) {
+        Map<String, Set<OWLEntity>> found = new HashMap<String, Set<OWLEntity>>();
+        Map<String, String> unquoted = new HashMap<String, String>();
+        for (String name : names) {
+            if (!entities.containsKey(name)) {
+                found.put(name, new HashSet<OWLEntity>());
+                unquoted.put(name.length() > 1 && name.startsWith("'") && name.endsWith("'") ? name.substring(1, name.length() - 1) : name, name);
+            }
+        }
+        if (found.isEmpty()) {
+            return;
+        }
+
+        if (labelIndex != null) {
+            for (Map.Entry<String, String> name : unquoted.entrySet()) {
+                for (String iri : labelIndex.findIris(name.getKey())) {
+                    for (OWLOntology ontology : ontologies) {
+                        addCandidates(found.get(name.getValue()), ontology, IRI.create(iri), name.getValue());
+                    }
+                }
+            }
+            entities.putAll(found);
+            return;
+        }
+
+        // candidates are anything labelled with the name, or with the name as the fragment of its IRI
+        Set<IRI> labelIriSet = new HashSet<IRI>(labelIris);
+        for (OWLOntology ontology : ontologies) {
+            for (OWLAnnotationAssertionAxiom annotation : ontology.getAxioms(AxiomType.ANNOTATION_ASSERTION)) {
+                if (annotation.getValue() instanceof OWLLiteral && annotation.getSubject() instanceof IRI
+                        && labelIriSet.contains(annotation.getProperty().getIRI())) {
+                    String name = unquoted.get(((OWLLiteral) annotation.getValue()).getLiteral());
+                    if (name != null) {
+                        addCandidates(found.get(name), ontology, (IRI) annotation.getSubject(), name);
+                    }
+                }
+            }
+            for (OWLEntity entity : ontology.getSignature()) {
+                String name = unquoted.get(simpleShortFormProvider.getShortForm(entity));
+                if (name != null) {
+                    addIfNamed(found.get(name), entity, name);
+                }
+            }
+        }
+        entities.putAll(found);
+    }
+
+    private void addCandidates(Set<OWLEntity> found, OWLOntology ontology, IRI iri, String name) {
+        for (OWLEntity entity : ontology.getEntitiesInSignature(iri)) {
+            addIfNamed(found, entity, name);
+        }
+    }
+
+    // an entity is only known by its short form, so a class with a label can't be referred to by its fragment
+    private void addIfNamed(Set<OWLEntity> found, OWLEntity entity, String name) {
+        if (getShortForm(entity).equals(name)) {
+            found.add(entity);
+        }
+    }
+
+    @Override
+    public Set<OWLEntity> getEntities(String shortForm) {
+        Set<OWLEntity> result = entities.get(shortForm);
+        if (result == null) {
+            resolve(Collections.singleton(shortForm));
+            result = entities.get(shortForm);
+        }
+        return Collections.unmodifiableSet(result);
+    }
+
+    @Override
+    public OWLEntity getEntity(String shortForm) {
+        Set<OWLEntity> result = getEntities(shortForm);
+        return result.isEmpty() ? null : result.iterator().next();
+    }
+
+    /**
+     * @return the names that have been looked up so far
+     */
+    @Override
+    public Set<String> getShortForms() {
+        return Collections.unmodifiableSet(entities.keySet());
+    }
+
+    @Override
+    public void dispose() {
+        shortForms.clear();
+        entities.clear();
+    }
+}
@@ -1,10 +1,14 @@
 package uk.ac.ebi.fgpt;
 
 import org.semanticweb.owlapi.expression.ParserException;
+import org.semanticweb.owlapi.model.IRI;
 import org.semanticweb.owlapi.model.OWLClass;
 import org.semanticweb.owlapi.model.OWLOntology;
 import org.semanticweb.owlapi.reasoner.OWLReasoner;
+import uk.ac.ebi.spot.webulous.model.ReasonerType;
 
+import java.util.Collection;
+import java.util.Map;
 import java.util.Set;
 
 /**
@@ -19,6 +23,53 @@ public interface OntologyDAO {
 
     Set<OWLClass> getDescendantClasses(String manchesterSyntaxExpression)  throws ParserException;
 
+    /**
+     * Get the direct subclasses using the reasoner picked for this type, null uses {@link #getOWLReasoner}
+     */
+    Set<OWLClass> getSubclasses(String manchesterSyntaxExpression, ReasonerType reasonerType) throws ParserException ;
+
+    Set<OWLClass> getDescendantClasses(String manchesterSyntaxExpression, ReasonerType reasonerType)  throws ParserException;
+
+    /**
+     * Answer many expressions in one call, the results are keyed by the expressions as given. Each reasoner is
+     * looked up once for the batch and only used by one thread at a time, so batches can be run concurrently.
+     */
+    Map<String, Set<OWLClass>> getSubclasses(Collection<String> manchesterSyntaxExpressions, ReasonerType reasonerType) throws ParserException ;
+
+    Map<String, Set<OWLClass>> getDescendantClasses(Collection<String> manchesterSyntaxExpressions, ReasonerType reasonerType)  throws ParserException;
+
+    /**
+     * Look up the names in these expressions, pick their reasoners and classify the ontologies with them now, on the
+     * calling thread. Reading the ontologies isn't thread safe, so do this before running the expressions as
+     * concurrent batches.
+     */
+    void prepare(Collection<String> manchesterSyntaxExpressions, ReasonerType reasonerType) throws ParserException;
+
+    /**
+     * @return the reasoner that AUTO would pick for this expression
+     */
+    ReasonerType selectReasonerType(String manchesterSyntaxExpression) throws ParserException;
+
     String getRendering(OWLClass owlClass);
 
+    /**
+     * @return the loaded ontologies, including everything in their imports closure
+     */
+    Set<OWLOntology> getOntologies();
+
+    /**
+     * @return the documents the ontologies were loaded from, i.e. the whole imports closure
+     */
+    Set<IRI> getDocumentIris();
+
+    /**
+     * Report the progress of classifications to this listener, null to stop reporting
+     */
+    void setClassificationListener(ClassificationListener classificationListener);
+
+    /**
+     * Release any reasoners held by this DAO
+     */
+    void dispose();
+
 }
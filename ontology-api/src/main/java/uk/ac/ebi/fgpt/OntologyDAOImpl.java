@@ -8,13 +8,19 @@ import org.semanticweb.owlapi.expression.ShortFormEntityChecker;
 import org.semanticweb.owlapi.model.*;
 import org.semanticweb.owlapi.reasoner.InferenceType;
 import org.semanticweb.owlapi.reasoner.OWLReasoner;
-import org.semanticweb.owlapi.util.AnnotationValueShortFormProvider;
-import org.semanticweb.owlapi.util.BidirectionalShortFormProviderAdapter;
-import org.semanticweb.owlapi.util.ShortFormProvider;
-import org.semanticweb.owlapi.util.SimpleShortFormProvider;
+import org.semanticweb.owlapi.reasoner.ReasonerInterruptedException;
+import org.semanticweb.owlapi.reasoner.ReasonerProgressMonitor;
+import org.semanticweb.owlapi.reasoner.TimeOutException;
 import org.semanticweb.owlapi.vocab.OWLRDFVocabulary;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import uk.ac.ebi.spot.webulous.model.ReasonerType;
 
+import java.io.IOException;
 import java.util.*;
+import java.util.concurrent.*;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicReference;
 
 /**
  * @author Simon Jupp
@@ -24,10 +30,66 @@ import java.util.*;
 public abstract class OntologyDAOImpl implements OntologyDAO {
 
 
+    private Logger logger = LoggerFactory.getLogger(getClass());
+
     private OWLOntologyManager manager;
-    private BidirectionalShortFormProviderAdapter sfp;
+    private LazyShortFormProvider sfp;
     private ManchesterOWLSyntaxClassExpressionParser mosiParser;
 
+    // one classified reasoner per ontology and strategy, reused for every query until the DAO is disposed
+    private final ConcurrentMap<OWLOntology, ConcurrentMap<String, OWLReasoner>> reasoners = new ConcurrentHashMap<OWLOntology, ConcurrentMap<String, OWLReasoner>>();
+
+    // reasoners are created and classified one at a time holding this lock, as creating one reads the ontologies. The
+    // ones a batch needs are created by prepare, on the calling thread, so concurrent queries find them classified
+    private final Object creationLock = new Object();
+
+    private final Map<OWLReasoner, Set<OWLClass>> unsatisfiableClasses = Collections.synchronizedMap(new IdentityHashMap<OWLReasoner, Set<OWLClass>>());
+
+    private ReasonerStrategySelector strategySelector;
+
+    private static final ClassificationListener NO_LISTENER = new ClassificationListener() {
+        public void progress(String reasoner, String phase, int percent) {
+        }
+
+        public void timedOut(String reasoner, long timeout, String fallback) {
+        }
+    };
+
+    // interrupts classifications that have run for too long
+    private static final ScheduledExecutorService watchdog = Executors.newSingleThreadScheduledExecutor(new ThreadFactory() {
+        public Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, "reasoner-watchdog");
+            thread.setDaemon(true);
+            return thread;
+        }
+    });
+
+    private volatile ClassificationListener classificationListener = NO_LISTENER;
+
+    // milliseconds a reasoner is given to classify an ontology, 0 for no limit
+    private long classificationTimeout = 0;
+
+    // the reasoner to use when classification times out, null to fail the query
+    private ReasonerType fallbackReasonerType;
+
+    // strategies that have already timed out on an ontology aren't tried again
+    private final ConcurrentMap<OWLOntology, Set<String>> timedOut = new ConcurrentHashMap<OWLOntology, Set<String>>();
+
+    // the reasoner this DAO was created with, used when no reasoner type is asked for
+    private final ReasonerStrategy defaultStrategy = new ReasonerStrategy() {
+        public String getName() {
+            return "default";
+        }
+
+        public OWLReasoner createReasoner(OWLOntology ontology, ReasonerProgressMonitor progressMonitor) {
+            return getOWLReasoner(ontology);
+        }
+
+        public boolean supports(OWLClassExpression expression) {
+            return true;
+        }
+    };
+
     public abstract OWLReasoner getOWLReasoner(OWLOntology owlOntology);
 
     public OntologyDAOImpl (Collection<IRI> ontologies) throws OWLOntologyCreationException {
@@ -38,73 +100,331 @@ public abstract class OntologyDAOImpl implements OntologyDAO {
 
         System.setProperty("entityExpansionLimit", "1000000000");
         this.manager = OWLManager.createOWLOntologyManager();
-        for (IRI iri: ontologies){
-            manager.loadOntology(iri);
-        }
+        new ConcurrentImportsLoader().load(manager, ontologies);
 
+        // labels are looked up as classes are rendered or named in an expression, not for the whole signature up front
+        sfp = new LazyShortFormProvider(manager.getOntologies(), labelIris, getLabelIndex(new ArrayList<IRI>(labelIris)));
 
-        List<OWLAnnotationProperty> properties = new ArrayList<OWLAnnotationProperty>();
-        for(IRI labelIri: labelIris) {
-            properties.add(manager.getOWLDataFactory().getOWLAnnotationProperty(labelIri));
-        }
+        mosiParser = new ManchesterOWLSyntaxClassExpressionParser(manager.getOWLDataFactory(), new ShortFormEntityChecker(sfp));
+    }
+
+    @Override
+    public void setClassificationListener(ClassificationListener classificationListener) {
+        this.classificationListener = classificationListener == null ? NO_LISTENER : classificationListener;
+    }
+
+    /**
+     * Give reasoners this long to classify an ontology before interrupting them, 0 for no limit
+     */
+    public void setClassificationTimeout(long classificationTimeout) {
+        this.classificationTimeout = classificationTimeout;
+    }
 
-        AnnotationValueShortFormProvider annotationProvider = new AnnotationValueShortFormProvider(
-                properties,
-                new HashMap<OWLAnnotationProperty, List<String>>(),
-                manager,
-                new SimpleShortFormProvider()
+    /**
+     * When classification times out, answer with this reasoner instead, or fail the query if it's null
+     */
+    public void setFallbackReasonerType(ReasonerType fallbackReasonerType) {
+        this.fallbackReasonerType = fallbackReasonerType;
+    }
 
+    /**
+     * @return a memory mapped index of the labels if the import cache is set up to build one and the imports are big enough to need it, otherwise null
+     */
+    private LabelIndexFile getLabelIndex(List<IRI> labelIris) {
+        ImportCache importCache = ImportCache.getDefault();
+        if (importCache == null || importCache.getLabelIndexThreshold() <= 0) {
+            return null;
+        }
+        int annotations = 0;
+        for (OWLOntology ontology : manager.getOntologies()) {
+            annotations += ontology.getAxiomCount(AxiomType.ANNOTATION_ASSERTION);
+        }
+        if (annotations < importCache.getLabelIndexThreshold()) {
+            return null;
+        }
+        try {
+            return importCache.getLabelIndex(getDocumentIris(), labelIris);
+        } catch (IOException e) {
+            logger.warn("Couldn't build a label index, keeping labels in memory: " + e.getMessage());
+            return null;
+        }
+    }
 
-        ) {
+    @Override
+    public Set<OWLClass> getSubclasses(String manchesterSyntaxExpression) throws ParserException {
+        return getSubclasses(manchesterSyntaxExpression, null);
+    }
 
-        };
+    @Override
+    public Set<OWLClass> getDescendantClasses(String manchesterSyntaxExpression) throws ParserException  {
+        return getDescendantClasses(manchesterSyntaxExpression, null);
+    }
 
-        sfp = new BidirectionalShortFormProviderAdapter(manager.getOntologies(), annotationProvider) {
-            @Override
-            protected String generateShortForm(OWLEntity entity) {
-                String shortform = super.generateShortForm(entity);
-                if (shortform.contains(" ")){ // if this is a multiword name
-                    shortform = "\'" + shortform + "\'";
-                }
-                return shortform;
-            }
-        };
+    @Override
+    public Set<OWLClass> getSubclasses(String manchesterSyntaxExpression, ReasonerType reasonerType) throws ParserException {
+        return getSubclasses(Collections.singleton(manchesterSyntaxExpression), reasonerType).get(manchesterSyntaxExpression);
+    }
 
+    @Override
+    public Set<OWLClass> getDescendantClasses(String manchesterSyntaxExpression, ReasonerType reasonerType) throws ParserException  {
+        return getDescendantClasses(Collections.singleton(manchesterSyntaxExpression), reasonerType).get(manchesterSyntaxExpression);
+    }
 
-        mosiParser = new ManchesterOWLSyntaxClassExpressionParser(manager.getOWLDataFactory(), new ShortFormEntityChecker(sfp));
+    @Override
+    public Map<String, Set<OWLClass>> getSubclasses(Collection<String> manchesterSyntaxExpressions, ReasonerType reasonerType) throws ParserException {
+        return query(manchesterSyntaxExpressions, reasonerType, true);
     }
 
     @Override
-    public Set<OWLClass> getSubclasses(String manchesterSyntaxExpression) throws ParserException {
+    public Map<String, Set<OWLClass>> getDescendantClasses(Collection<String> manchesterSyntaxExpressions, ReasonerType reasonerType) throws ParserException {
+        return query(manchesterSyntaxExpressions, reasonerType, false);
+    }
 
-        OWLClassExpression expression = mosiParser.parse(manchesterSyntaxExpression);
-        HashSet<OWLClass> classes = new HashSet<OWLClass>();
+    private Map<String, Set<OWLClass>> query(Collection<String> manchesterSyntaxExpressions, ReasonerType reasonerType, boolean direct) throws ParserException {
+
+        Map<String, OWLClassExpression> expressions = new LinkedHashMap<String, OWLClassExpression>();
+        Map<String, ReasonerStrategy> strategies = new HashMap<String, ReasonerStrategy>();
+        Map<String, Set<OWLClass>> results = new LinkedHashMap<String, Set<OWLClass>>();
+        sfp.prepare(manchesterSyntaxExpressions);
+        for (String manchesterSyntaxExpression : manchesterSyntaxExpressions) {
+            OWLClassExpression expression = mosiParser.parse(manchesterSyntaxExpression);
+            expressions.put(manchesterSyntaxExpression, expression);
+            strategies.put(manchesterSyntaxExpression, getReasonerStrategy(reasonerType, expression));
+            results.put(manchesterSyntaxExpression, new HashSet<OWLClass>());
+        }
 
         for (OWLOntology ontology : manager.getOntologies()) {
-            classes.addAll(getOWLReasoner(ontology).getSubClasses(expression, true).getFlattened());
+            for (Map.Entry<String, OWLClassExpression> expression : expressions.entrySet()) {
+                OWLReasoner reasoner;
+                try {
+                    reasoner = getClassifiedReasoner(ontology, strategies.get(expression.getKey()));
+                } catch (TimeOutException e) {
+                    ReasonerStrategy fallback = getFallbackStrategy(strategies.get(expression.getKey()), expression.getValue());
+                    classificationListener.timedOut(strategies.get(expression.getKey()).getName(), classificationTimeout, fallback == null ? null : fallback.getName());
+                    if (fallback == null) {
+                        throw e;
+                    }
+                    logger.warn(e.getMessage() + ", using the " + fallback.getName() + " reasoner for " + expression.getKey());
+                    reasoner = getClassifiedReasoner(ontology, fallback);
+                }
+                Set<OWLClass> classes = results.get(expression.getKey());
+                try {
+                    classes.addAll(getSubClasses(reasoner, expression.getValue(), direct));
+                } catch (UnsupportedOperationException e) {
+                    // ELK turns down class expressions it can't handle when it's asked, rather than up front
+                    ReasonerStrategy hermit = getStrategySelector().getStrategy(ReasonerType.HERMIT);
+                    if (strategies.get(expression.getKey()).getName().equals(hermit.getName())) {
+                        throw e;
+                    }
+                    logger.info("The " + strategies.get(expression.getKey()).getName() + " reasoner can't answer " + expression.getKey() + ", using " + hermit.getName() + " instead");
+                    classes.addAll(getSubClasses(getClassifiedReasoner(ontology, hermit), expression.getValue(), direct));
+                }
+            }
         }
 
+        return results;
+    }
+
+    private Set<OWLClass> getSubClasses(OWLReasoner reasoner, OWLClassExpression expression, boolean direct) {
+        Set<OWLClass> classes = new HashSet<OWLClass>();
+        // reasoners aren't thread safe (HermiT keeps state between queries), so only one query at a time per reasoner
+        synchronized (reasoner) {
+            if (direct) {
+                classes.addAll(reasoner.getSubClasses(expression, true).getFlattened());
+            }
+            else {
+                Set<OWLClass> unsatisfiable = getUnsatisfiableClasses(reasoner);
+                for (OWLClass cls : reasoner.getSubClasses(expression, false).getFlattened()) {
+
+                    if (!cls.isOWLNothing() && !unsatisfiable.contains(cls)) {
+                        classes.add(cls);
+                    }
+
+                }
+            }
+        }
         return classes;
     }
 
     @Override
-    public Set<OWLClass> getDescendantClasses(String manchesterSyntaxExpression) throws ParserException  {
-        OWLClassExpression expression = mosiParser.parse(manchesterSyntaxExpression);
-        HashSet<OWLClass> classes = new HashSet<OWLClass>();
+    public void prepare(Collection<String> manchesterSyntaxExpressions, ReasonerType reasonerType) throws ParserException {
+        sfp.prepare(manchesterSyntaxExpressions);
+        Map<OWLClassExpression, ReasonerStrategy> strategies = new LinkedHashMap<OWLClassExpression, ReasonerStrategy>();
+        for (String manchesterSyntaxExpression : manchesterSyntaxExpressions) {
+            OWLClassExpression expression = mosiParser.parse(manchesterSyntaxExpression);
+            strategies.put(expression, getReasonerStrategy(reasonerType, expression));
+        }
 
         for (OWLOntology ontology : manager.getOntologies()) {
-            OWLReasoner reasoner = getOWLReasoner(ontology);
+            for (Map.Entry<OWLClassExpression, ReasonerStrategy> strategy : strategies.entrySet()) {
+                try {
+                    getClassifiedReasoner(ontology, strategy.getValue());
+                } catch (TimeOutException e) {
+                    // the query reports the timeout when it falls back, or fails if there's nothing to fall back to
+                    ReasonerStrategy fallback = getFallbackStrategy(strategy.getValue(), strategy.getKey());
+                    if (fallback != null) {
+                        getClassifiedReasoner(ontology, fallback);
+                    }
+                }
+            }
+        }
+    }
+
+    public ReasonerType selectReasonerType(String manchesterSyntaxExpression) throws ParserException {
+        return getStrategySelector().selectType(mosiParser.parse(manchesterSyntaxExpression));
+    }
+
+    public synchronized ReasonerStrategySelector getStrategySelector() {
+        if (strategySelector == null) {
+            strategySelector = new ReasonerStrategySelector(manager.getOntologies());
+        }
+        return strategySelector;
+    }
+
+    private ReasonerStrategy getReasonerStrategy(ReasonerType reasonerType, OWLClassExpression expression) {
+        if (reasonerType == null) {
+            return defaultStrategy;
+        }
+        return getStrategySelector().select(reasonerType, expression);
+    }
+
+    private ReasonerStrategy getFallbackStrategy(ReasonerStrategy strategy, OWLClassExpression expression) {
+        if (fallbackReasonerType == null || fallbackReasonerType == ReasonerType.AUTO) {
+            return null;
+        }
+        ReasonerStrategy fallback = getStrategySelector().getStrategy(fallbackReasonerType);
+        if (fallback == null || fallback.getName().equals(strategy.getName())
+                || !fallback.supports(expression)) {
+            return null;
+        }
+        return fallback;
+    }
+
+    /**
+     * Get the reasoner for this ontology from {@link #getOWLReasoner}, creating it and computing the class hierarchy the first time it is asked for
+     */
+    protected OWLReasoner getClassifiedReasoner(OWLOntology ontology) {
+        return getClassifiedReasoner(ontology, defaultStrategy);
+    }
 
-            for (OWLClass cls : reasoner.getSubClasses(expression, false).getFlattened()) {
+    protected OWLReasoner getClassifiedReasoner(OWLOntology ontology, ReasonerStrategy strategy) {
+        ConcurrentMap<String, OWLReasoner> ontologyReasoners = reasoners.get(ontology);
+        if (ontologyReasoners == null) {
+            reasoners.putIfAbsent(ontology, new ConcurrentHashMap<String, OWLReasoner>());
+            ontologyReasoners = reasoners.get(ontology);
+        }
+        OWLReasoner reasoner = ontologyReasoners.get(strategy.getName());
+        if (reasoner != null) {
+            return reasoner;
+        }
 
-                if (!cls.isOWLNothing() && reasoner.isSatisfiable(cls)) {
-                    classes.add(cls);
+        synchronized (creationLock) {
+            Set<String> ontologyTimedOut = timedOut.get(ontology);
+            if (ontologyTimedOut != null && ontologyTimedOut.contains(strategy.getName())) {
+                throw new TimeOutException("The " + strategy.getName() + " reasoner has already timed out classifying " + ontology.getOntologyID());
+            }
+            reasoner = ontologyReasoners.get(strategy.getName());
+            if (reasoner == null) {
+                try {
+                    reasoner = createClassifiedReasoner(ontology, strategy);
+                } catch (TimeOutException e) {
+                    timedOut.putIfAbsent(ontology, Collections.synchronizedSet(new HashSet<String>()));
+                    timedOut.get(ontology).add(strategy.getName());
+                    throw e;
                 }
+                // read the unsatisfiable classes while no one else can see the reasoner
+                getUnsatisfiableClasses(reasoner);
+                ontologyReasoners.put(strategy.getName(), reasoner);
+            }
+            return reasoner;
+        }
+    }
 
+    /**
+     * Create a reasoner and compute the class hierarchy, interrupting the reasoner if it takes longer than the
+     * classification timeout. The clock starts before the reasoner is created, as HermiT does its preprocessing in
+     * the constructor; a reasoner that runs out of time there is dropped as soon as the constructor returns.
+     */
+    private OWLReasoner createClassifiedReasoner(OWLOntology ontology, ReasonerStrategy strategy) {
+        final AtomicBoolean interrupted = new AtomicBoolean(false);
+        final AtomicReference<OWLReasoner> created = new AtomicReference<OWLReasoner>();
+        ScheduledFuture<?> timeout = null;
+        if (classificationTimeout > 0) {
+            timeout = watchdog.schedule(new Runnable() {
+                public void run() {
+                    interrupted.set(true);
+                    OWLReasoner reasoner = created.get();
+                    if (reasoner != null) {
+                        reasoner.interrupt();
+                    }
+                }
+            }, classificationTimeout, TimeUnit.MILLISECONDS);
+        }
+        String timedOutMessage = "The " + strategy.getName() + " reasoner didn't finish classifying in " + (classificationTimeout / 1000) + "s";
+        OWLReasoner reasoner = strategy.createReasoner(ontology, new ClassificationProgressMonitor(strategy.getName(), classificationListener));
+        created.set(reasoner);
+        try {
+            if (interrupted.get()) {
+                reasoner.dispose();
+                throw new TimeOutException(timedOutMessage);
+            }
+            reasoner.precomputeInferences(InferenceType.CLASS_HIERARCHY);
+        } catch (ReasonerInterruptedException e) {
+            if (!interrupted.get()) {
+                throw e;
+            }
+            reasoner.dispose();
+            throw new TimeOutException(timedOutMessage, e);
+        } finally {
+            if (timeout != null) {
+                timeout.cancel(false);
             }
         }
+        return reasoner;
+    }
 
-        return classes;
+    /**
+     * The unsatisfiable classes are the ones equivalent to owl:Nothing in the classified hierarchy, so they can be
+     * read off once rather than testing each class for satisfiability. Only the reasoner is locked to do it.
+     */
+    protected Set<OWLClass> getUnsatisfiableClasses(OWLReasoner reasoner) {
+        Set<OWLClass> unsatisfiable = unsatisfiableClasses.get(reasoner);
+        if (unsatisfiable == null) {
+            synchronized (reasoner) {
+                unsatisfiable = unsatisfiableClasses.get(reasoner);
+                if (unsatisfiable == null) {
+                    unsatisfiable = new HashSet<OWLClass>(reasoner.getUnsatisfiableClasses().getEntitiesMinusBottom());
+                    unsatisfiableClasses.put(reasoner, unsatisfiable);
+                }
+            }
+        }
+        return unsatisfiable;
+    }
+
+    @Override
+    public synchronized void dispose() {
+        for (Map<String, OWLReasoner> ontologyReasoners : reasoners.values()) {
+            for (OWLReasoner reasoner : ontologyReasoners.values()) {
+                reasoner.dispose();
+            }
+        }
+        reasoners.clear();
+        unsatisfiableClasses.clear();
+        timedOut.clear();
+    }
+
+    @Override
+    public Set<OWLOntology> getOntologies() {
+        return manager.getOntologies();
+    }
+
+    @Override
+    public Set<IRI> getDocumentIris() {
+        Set<IRI> documentIris = new HashSet<IRI>();
+        for (OWLOntology ontology : manager.getOntologies()) {
+            documentIris.add(manager.getOntologyDocumentIRI(ontology));
+        }
+        return documentIris;
     }
 
     public String getRendering(OWLClass owlClass) {
@@ -0,0 +1,31 @@
+package uk.ac.ebi.fgpt;
+
+import org.semanticweb.owlapi.model.OWLClassExpression;
+import org.semanticweb.owlapi.model.OWLOntology;
+import org.semanticweb.owlapi.reasoner.OWLReasoner;
+import org.semanticweb.owlapi.reasoner.ReasonerProgressMonitor;
+
+/**
+ * @author Simon Jupp
+ * @date 18/10/2026
+ * Samples, Phenotypes and Ontologies Team, EMBL-EBI
+ *
+ * A way of creating reasoners for an {@link OntologyDAO}. Register new strategies with a {@link ReasonerStrategySelector}.
+ */
+public interface ReasonerStrategy {
+
+    /**
+     * @return a name for this strategy, reasoners are cached by name
+     */
+    String getName();
+
+    /**
+     * @param progressMonitor told how classification is going, if the reasoner reports it
+     */
+    OWLReasoner createReasoner(OWLOntology ontology, ReasonerProgressMonitor progressMonitor);
+
+    /**
+     * @return false if reasoners from this strategy can't answer queries about this class expression
+     */
+    boolean supports(OWLClassExpression expression);
+}
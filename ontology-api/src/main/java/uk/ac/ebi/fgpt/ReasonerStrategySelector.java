@@ -0,0 +1,144 @@
+package uk.ac.ebi.fgpt;
+
+import org.semanticweb.owlapi.model.*;
+import org.semanticweb.owlapi.profiles.OWL2ELProfile;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import uk.ac.ebi.spot.webulous.model.ReasonerType;
+
+import java.util.*;
+
+/**
+ * @author Simon Jupp
+ * @date 18/10/2026
+ * Samples, Phenotypes and Ontologies Team, EMBL-EBI
+ *
+ * Picks the reasoner strategy for a query over a fixed set of ontologies. When asked for {@link ReasonerType#AUTO}
+ * a named class in ontologies whose told hierarchy is complete is answered structurally, a named class or EL class
+ * expression in OWL 2 EL ontologies with ELK, and anything else with HermiT.
+ */
+public class ReasonerStrategySelector {
+
+    private static final Set<AxiomType<?>> INFERENCE_AXIOM_TYPES = new HashSet<AxiomType<?>>(Arrays.<AxiomType<?>>asList(
+            AxiomType.EQUIVALENT_CLASSES,
+            AxiomType.DISJOINT_CLASSES,
+            AxiomType.DISJOINT_UNION,
+            AxiomType.OBJECT_PROPERTY_DOMAIN,
+            AxiomType.DATA_PROPERTY_DOMAIN
+    ));
+
+    private static final Set<ClassExpressionType> EL_CLASS_EXPRESSION_TYPES = new HashSet<ClassExpressionType>(Arrays.asList(
+            ClassExpressionType.OWL_CLASS,
+            ClassExpressionType.OBJECT_SOME_VALUES_FROM,
+            ClassExpressionType.OBJECT_INTERSECTION_OF,
+            ClassExpressionType.OBJECT_HAS_VALUE,
+            ClassExpressionType.DATA_SOME_VALUES_FROM,
+            ClassExpressionType.DATA_HAS_VALUE
+    ));
+
+    private Logger logger = LoggerFactory.getLogger(getClass());
+
+    private final Collection<OWLOntology> ontologies;
+    private final Map<ReasonerType, ReasonerStrategy> strategies = new HashMap<ReasonerType, ReasonerStrategy>();
+
+    // profile checks can be slow on large ontologies so only do them once
+    private Boolean toldHierarchyComplete;
+    private Boolean inELProfile;
+
+    public ReasonerStrategySelector(Collection<OWLOntology> ontologies) {
+        this.ontologies = ontologies;
+        register(ReasonerType.STRUCTURAL, new StructuralReasonerStrategy());
+        register(ReasonerType.EL, new ElkReasonerStrategy());
+        register(ReasonerType.HERMIT, new HermitReasonerStrategy());
+    }
+
+    public void register(ReasonerType type, ReasonerStrategy strategy) {
+        if (type == ReasonerType.AUTO) {
+            throw new IllegalArgumentException("AUTO is chosen by the selector and can't have its own strategy");
+        }
+        strategies.put(type, strategy);
+    }
+
+    public ReasonerStrategy getStrategy(ReasonerType type) {
+        return strategies.get(type);
+    }
+
+    public ReasonerStrategy select(ReasonerType requested, OWLClassExpression expression) {
+        ReasonerType type = requested == null || requested == ReasonerType.AUTO ? selectType(expression) : requested;
+        ReasonerStrategy strategy = strategies.get(type);
+        if (!strategy.supports(expression)) {
+            logger.warn("The " + strategy.getName() + " reasoner can't answer queries for " + expression + ", using HermiT instead");
+            strategy = strategies.get(ReasonerType.HERMIT);
+        }
+        return strategy;
+    }
+
+    public ReasonerType selectType(OWLClassExpression expression) {
+        if (!expression.isAnonymous() && isToldHierarchyComplete()) {
+            return ReasonerType.STRUCTURAL;
+        }
+        if (isInELProfile() && isELClassExpression(expression)) {
+            return ReasonerType.EL;
+        }
+        return ReasonerType.HERMIT;
+    }
+
+    public synchronized boolean isToldHierarchyComplete() {
+        if (toldHierarchyComplete == null) {
+            toldHierarchyComplete = isToldHierarchyComplete(ontologies);
+        }
+        return toldHierarchyComplete;
+    }
+
+    public synchronized boolean isInELProfile() {
+        if (inELProfile == null) {
+            inELProfile = true;
+            OWL2ELProfile profile = new OWL2ELProfile();
+            for (OWLOntology ontology : getRootOntologies()) {
+                if (!profile.checkOntology(ontology).isInProfile()) {
+                    inELProfile = false;
+                    break;
+                }
+            }
+        }
+        return inELProfile;
+    }
+
+    // the profile check covers the imports closure, so only check the ontologies nothing else imports
+    private Collection<OWLOntology> getRootOntologies() {
+        Set<OWLOntology> roots = new HashSet<OWLOntology>(ontologies);
+        for (OWLOntology ontology : ontologies) {
+            roots.removeAll(ontology.getImports());
+        }
+        return roots;
+    }
+
+    /**
+     * The told named class hierarchy is complete if there are no axioms from which a reasoner could infer
+     * further subsumptions between named classes, or that could make a class unsatisfiable
+     */
+    public static boolean isToldHierarchyComplete(Collection<OWLOntology> ontologies) {
+        for (OWLOntology ontology : ontologies) {
+            for (AxiomType<?> axiomType : INFERENCE_AXIOM_TYPES) {
+                if (ontology.getAxiomCount(axiomType) > 0) {
+                    return false;
+                }
+            }
+            for (OWLSubClassOfAxiom axiom : ontology.getAxioms(AxiomType.SUBCLASS_OF)) {
+                if (axiom.getSubClass().isAnonymous() || !isELClassExpression(axiom.getSuperClass())) {
+                    return false;
+                }
+            }
+        }
+        return true;
+    }
+
+    public static boolean isELClassExpression(OWLClassExpression expression) {
+        for (OWLClassExpression nested : expression.getNestedClassExpressions()) {
+            if (!EL_CLASS_EXPRESSION_TYPES.contains(nested.getClassExpressionType())) {
+                return false;
+            }
+        }
+        return true;
+    }
+}
@@ -0,0 +1,66 @@
+package uk.ac.ebi.fgpt;
+
+import java.io.IOException;
+import java.net.HttpURLConnection;
+import java.net.URL;
+import java.net.URLConnection;
+
+/**
+ * @author Simon Jupp
+ * @date 18/10/2026
+ * Samples, Phenotypes and Ontologies Team, EMBL-EBI
+ *
+ * Opens connections to ontology documents, following HTTP redirects by hand. HttpURLConnection won't follow a
+ * redirect from http to https or back, which is how a lot of PURLs resolve, so each hop is followed here instead,
+ * up to {@link #MAX_REDIRECTS} of them.
+ */
+class Redirects {
+
+    static final int MAX_REDIRECTS = 10;
+
+    /**
+     * Sets up each connection before it's opened, so request headers are sent to every hop
+     */
+    interface Request {
+        void configure(URLConnection connection) throws IOException;
+    }
+
+    /**
+     * @return the connection at the end of the redirects, already connected if it's HTTP
+     * @throws IOException if there are too many redirects, or one leads somewhere that isn't http or https
+     */
+    static URLConnection open(URL url, Request request) throws IOException {
+        for (int hops = 0; ; hops++) {
+            URLConnection connection = url.openConnection();
+            request.configure(connection);
+            if (!(connection instanceof HttpURLConnection)) {
+                return connection;
+            }
+            HttpURLConnection http = (HttpURLConnection) connection;
+            http.setInstanceFollowRedirects(false);
+            int responseCode = http.getResponseCode();
+            String location = http.getHeaderField("Location");
+            if (!isRedirect(responseCode) || location == null) {
+                return http;
+            }
+            http.disconnect();
+
+            if (hops == MAX_REDIRECTS) {
+                throw new IOException("Gave up on " + url + " after " + MAX_REDIRECTS + " redirects");
+            }
+            URL next = new URL(url, location);
+            if (!"http".equals(next.getProtocol()) && !"https".equals(next.getProtocol())) {
+                throw new IOException(url + " redirects to " + next + ", which isn't http or https");
+            }
+            url = next;
+        }
+    }
+
+    static boolean isRedirect(int responseCode) {
+        return responseCode == HttpURLConnection.HTTP_MOVED_PERM
+                || responseCode == HttpURLConnection.HTTP_MOVED_TEMP
+                || responseCode == HttpURLConnection.HTTP_SEE_OTHER
+                || responseCode == 307
+                || responseCode == 308;
+    }
+}
@@ -0,0 +1,35 @@
+package uk.ac.ebi.fgpt;
+
+import org.semanticweb.owlapi.model.OWLClassExpression;
+import org.semanticweb.owlapi.model.OWLOntology;
+import org.semanticweb.owlapi.reasoner.OWLReasoner;
+import org.semanticweb.owlapi.reasoner.ReasonerProgressMonitor;
+import org.semanticweb.owlapi.reasoner.SimpleConfiguration;
+import org.semanticweb.owlapi.reasoner.structural.StructuralReasonerFactory;
+
+/**
+ * @author Simon Jupp
+ * @date 18/10/2026
+ * Samples, Phenotypes and Ontologies Team, EMBL-EBI
+ *
+ * Told subsumptions only, no inference
+ */
+public class StructuralReasonerStrategy implements ReasonerStrategy {
+
+    private final StructuralReasonerFactory factory = new StructuralReasonerFactory();
+
+    @Override
+    public String getName() {
+        return "structural";
+    }
+
+    @Override
+    public OWLReasoner createReasoner(OWLOntology ontology, ReasonerProgressMonitor progressMonitor) {
+        return factory.createReasoner(ontology, new SimpleConfiguration(progressMonitor));
+    }
+
+    @Override
+    public boolean supports(OWLClassExpression expression) {
+        return true;
+    }
+}
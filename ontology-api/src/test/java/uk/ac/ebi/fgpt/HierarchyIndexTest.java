@@ -0,0 +1,179 @@
+package uk.ac.ebi.fgpt;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.semanticweb.owlapi.apibinding.OWLManager;
+import org.semanticweb.owlapi.model.*;
+
+import java.io.File;
+import java.util.BitSet;
+import java.util.Collections;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author Simon Jupp
+ * @date 18/10/2026
+ * Samples, Phenotypes and Ontologies Team, EMBL-EBI
+ */
+public class HierarchyIndexTest {
+
+    private static final String NS = "http://www.ebi.ac.uk/webulous/test#";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private OWLOntologyManager manager;
+    private OWLDataFactory df;
+    private OWLOntology ontology;
+
+    @Before
+    public void setUp() throws OWLOntologyCreationException {
+        manager = OWLManager.createOWLOntologyManager();
+        df = manager.getOWLDataFactory();
+        ontology = manager.createOntology(IRI.create("http://www.ebi.ac.uk/webulous/test"));
+
+        // A has children B and C, B has child D, D has child E
+        addSubClass("B", "A");
+        addSubClass("C", "A");
+        addSubClass("D", "B");
+        addSubClass("E", "D");
+        manager.addAxiom(ontology, df.getOWLAnnotationAssertionAxiom(df.getRDFSLabel(), iri("B"), df.getOWLLiteral("bee")));
+    }
+
+    @Test
+    public void testChildrenAndDescendants() {
+        HierarchyIndex index = HierarchyIndex.build(Collections.singleton(ontology));
+
+        assertEquals(5, index.size());
+        assertEquals(ids(index, "B", "C"), index.getChildren(id(index, "A")));
+        assertEquals(ids(index, "B", "C", "D", "E"), index.getDescendants(id(index, "A")));
+        assertEquals(ids(index, "B"), index.getParents(id(index, "D")));
+        assertTrue(index.getDescendants(id(index, "E")).isEmpty());
+    }
+
+    @Test
+    public void testClassesAreFoundByLabelShortFormOrIri() {
+        HierarchyIndex index = HierarchyIndex.build(Collections.singleton(ontology));
+
+        int b = index.getId(NS + "B");
+        assertTrue(b >= 0);
+        assertEquals(b, index.getId("bee"));
+        assertEquals("bee", index.getRendering(b));
+
+        // without a label the rendering is the short form
+        int c = index.getId("C");
+        assertEquals(NS + "C", index.getIri(c));
+        assertEquals("C", index.getRendering(c));
+
+        assertEquals(-1, index.getId("missing"));
+    }
+
+    @Test
+    public void testCycleDoesNotMakeAClassItsOwnDescendant() {
+        addSubClass("A", "E");
+        HierarchyIndex index = HierarchyIndex.build(Collections.singleton(ontology));
+
+        BitSet descendants = index.getDescendants(id(index, "A"));
+        assertFalse(descendants.get(id(index, "A")));
+        assertEquals(ids(index, "B", "C", "D", "E"), descendants);
+    }
+
+    @Test
+    public void testCompleteness() {
+        assertTrue(HierarchyIndex.build(Collections.singleton(ontology)).isComplete());
+
+        manager.addAxiom(ontology, df.getOWLEquivalentClassesAxiom(cls("C"), cls("E")));
+        assertFalse(HierarchyIndex.build(Collections.singleton(ontology)).isComplete());
+    }
+
+    @Test
+    public void testWriteAndRead() throws Exception {
+        HierarchyIndex index = HierarchyIndex.build(Collections.singleton(ontology));
+        File file = new File(folder.getRoot(), "test.hix");
+        index.write(file);
+
+        HierarchyIndex read = HierarchyIndex.read(file);
+        assertEquals(index.size(), read.size());
+        assertEquals(index.isComplete(), read.isComplete());
+        assertEquals(index.getCreated(), read.getCreated());
+        for (int x = 0; x < index.size(); x++) {
+            assertEquals(index.getIri(x), read.getIri(x));
+            assertEquals(index.getRendering(x), read.getRendering(x));
+            assertEquals(index.getChildren(x), read.getChildren(x));
+            assertEquals(index.getParents(x), read.getParents(x));
+        }
+        assertEquals(index.getId("bee"), read.getId("bee"));
+        assertFalse(new File(folder.getRoot(), "test.hix.tmp").exists());
+    }
+
+    @Test
+    public void testChangedImportIsRebuilt() throws Exception {
+        File importFile = new File(folder.getRoot(), "import.owl");
+        manager.saveOntology(ontology, IRI.create(importFile.toURI()));
+        List<String> closure = Collections.singletonList(importFile.toURI().toString());
+        File indexDirectory = folder.newFolder("index");
+
+        String before = ImportFingerprint.compute(closure, "");
+        assertNotNull(before);
+        assertNull(HierarchyIndex.find(indexDirectory, before));
+        HierarchyIndex.build(Collections.singleton(ontology)).save(indexDirectory, before);
+        assertEquals(5, HierarchyIndex.find(indexDirectory, before).size());
+
+        // the same import is read back, not rebuilt
+        assertEquals(before, ImportFingerprint.compute(closure, ""));
+
+        addSubClass("F", "A");
+        manager.saveOntology(ontology, IRI.create(importFile.toURI()));
+        importFile.setLastModified(importFile.lastModified() + 2000);
+
+        String after = ImportFingerprint.compute(closure, "");
+        assertNotNull(after);
+        assertNotEquals(before, after);
+        assertNull("an index of the old import must not be used for the new one", HierarchyIndex.find(indexDirectory, after));
+
+        HierarchyIndex.build(Collections.singleton(ontology)).save(indexDirectory, after);
+        assertEquals(6, HierarchyIndex.find(indexDirectory, after).size());
+        assertNull("the old index is replaced", HierarchyIndex.find(indexDirectory, before));
+    }
+
+    @Test
+    public void testAtomicNames() {
+        assertEquals("A", HierarchyIndex.getAtomicName(" A "));
+        assertEquals("label with spaces", HierarchyIndex.getAtomicName("'label with spaces'"));
+        assertEquals(NS + "A", HierarchyIndex.getAtomicName("<" + NS + "A>"));
+        assertNull(HierarchyIndex.getAtomicName("'part of' some A"));
+        assertNull(HierarchyIndex.getAtomicName("'a' and 'b'"));
+        assertNull(HierarchyIndex.getAtomicName("A and B"));
+        assertNull(HierarchyIndex.getAtomicName("Thing"));
+        assertNull(HierarchyIndex.getAtomicName(""));
+        assertNull(HierarchyIndex.getAtomicName(null));
+    }
+
+    private void addSubClass(String sub, String sup) {
+        manager.addAxiom(ontology, df.getOWLSubClassOfAxiom(cls(sub), cls(sup)));
+    }
+
+    private IRI iri(String name) {
+        return IRI.create(NS + name);
+    }
+
+    private OWLClass cls(String name) {
+        return df.getOWLClass(iri(name));
+    }
+
+    private int id(HierarchyIndex index, String name) {
+        return index.getId(NS + name);
+    }
+
+    private BitSet ids(HierarchyIndex index, String... names) {
+        BitSet ids = new BitSet();
+        for (String name : names) {
+            ids.set(id(index, name));
+        }
+        return ids;
+    }
+}
@@ -0,0 +1,207 @@
+package uk.ac.ebi.fgpt;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.semanticweb.owlapi.apibinding.OWLManager;
+import org.semanticweb.owlapi.model.*;
+
+import java.io.*;
+import java.net.InetSocketAddress;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author Simon Jupp
+ * @date 18/10/2026
+ * Samples, Phenotypes and Ontologies Team, EMBL-EBI
+ */
+public class ImportCacheTest {
+
+    private static final String NS = "http://www.ebi.ac.uk/webulous/test#";
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    private ImportCache cache;
+    private File document;
+    private HttpServer server;
+
+    // what the test server answers for each path, a document or a status code with an optional Location
+    private final Map<String, String> documents = new HashMap<String, String>();
+    private final Map<String, Integer> statuses = new HashMap<String, Integer>();
+    private final Map<String, String> locations = new HashMap<String, String>();
+
+    @Before
+    public void setUp() throws IOException {
+        cache = new ImportCache(folder.newFolder("cache"));
+        document = folder.newFile("test.ofn");
+        write(document, ontology("SubClassOf(:B :A)"));
+
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/", new HttpHandler() {
+            public void handle(HttpExchange exchange) throws IOException {
+                String path = exchange.getRequestURI().getPath();
+                if (locations.containsKey(path)) {
+                    exchange.getResponseHeaders().add("Location", locations.get(path));
+                }
+                byte[] body = documents.containsKey(path) ? documents.get(path).getBytes("UTF-8") : new byte[0];
+                int status = statuses.containsKey(path) ? statuses.get(path) : documents.containsKey(path) ? 200 : 404;
+                exchange.sendResponseHeaders(status, body.length == 0 ? -1 : body.length);
+                if (body.length > 0) {
+                    exchange.getResponseBody().write(body);
+                }
+                exchange.close();
+            }
+        });
+        server.start();
+    }
+
+    @After
+    public void tearDown() {
+        server.stop(0);
+    }
+
+    @Test
+    public void testLoadsDocumentAndKeepsSnapshot() throws Exception {
+        OWLOntology ontology = load(IRI.create(document));
+        assertTrue(ontology.containsAxiom(subClassOf("B", "A")));
+        assertEquals(1, count(".owl"));
+        assertEquals(1, count(".ofn.gz"));
+    }
+
+    @Test
+    public void testSnapshotReadsBackTheSameOntology() throws Exception {
+        OWLOntology parsed = load(IRI.create(document));
+        OWLOntology snapshot = load(IRI.create(document));
+        assertEquals(parsed.getOntologyID(), snapshot.getOntologyID());
+        assertEquals(parsed.getAxioms(), snapshot.getAxioms());
+    }
+
+    @Test
+    public void testChangedDocumentIsFetchedAgain() throws Exception {
+        load(IRI.create(document));
+        write(document, ontology("SubClassOf(:C :A)"));
+        document.setLastModified(document.lastModified() + 60000);
+
+        OWLOntology ontology = load(IRI.create(document));
+        assertTrue(ontology.containsAxiom(subClassOf("C", "A")));
+        assertFalse(ontology.containsAxiom(subClassOf("B", "A")));
+        // the old copy and its snapshot are cleared out
+        assertEquals(1, count(".owl"));
+        assertEquals(1, count(".ofn.gz"));
+    }
+
+    @Test
+    public void testCachedCopyIsUsedWhenDocumentIsGone() throws Exception {
+        IRI iri = IRI.create(document);
+        load(iri);
+        assertTrue(document.delete());
+        assertTrue(load(iri).containsAxiom(subClassOf("B", "A")));
+    }
+
+    @Test
+    public void testFingerprintFollowsCachedContent() throws Exception {
+        IRI iri = IRI.create(document);
+        assertNull(cache.getFingerprint(Collections.singleton(iri), ""));
+
+        load(iri);
+        String fingerprint = cache.getFingerprint(Collections.singleton(iri), "");
+        assertNotNull(fingerprint);
+        assertEquals(fingerprint, cache.getFingerprint(Collections.singleton(iri), ""));
+        assertFalse(fingerprint.equals(cache.getFingerprint(Collections.singleton(iri), "extra")));
+
+        write(document, ontology("SubClassOf(:C :A)"));
+        document.setLastModified(document.lastModified() + 60000);
+        load(iri);
+        assertFalse(fingerprint.equals(cache.getFingerprint(Collections.singleton(iri), "")));
+    }
+
+    @Test
+    public void testFollowsRedirects() throws Exception {
+        documents.put("/current", ontology("SubClassOf(:B :A)"));
+        redirect("/purl", "/moved", 301);
+        redirect("/moved", "/current", 302);
+        assertTrue(load(http("/purl")).containsAxiom(subClassOf("B", "A")));
+    }
+
+    @Test(expected = OWLOntologyCreationException.class)
+    public void testRedirectLoopFails() throws Exception {
+        redirect("/loop", "/loop", 302);
+        load(http("/loop"));
+    }
+
+    @Test(expected = OWLOntologyCreationException.class)
+    public void testServerErrorWithoutCachedCopyFails() throws Exception {
+        statuses.put("/broken", 500);
+        load(http("/broken"));
+    }
+
+    @Test(expected = OWLOntologyCreationException.class)
+    public void testUnfollowedRedirectIsNotTheDocument() throws Exception {
+        // a redirect with nowhere to go mustn't be cached as if it were the ontology
+        statuses.put("/nowhere", 302);
+        load(http("/nowhere"));
+    }
+
+    @Test
+    public void testServerErrorUsesCachedCopy() throws Exception {
+        documents.put("/flaky", ontology("SubClassOf(:B :A)"));
+        load(http("/flaky"));
+
+        statuses.put("/flaky", 503);
+        assertTrue(load(http("/flaky")).containsAxiom(subClassOf("B", "A")));
+    }
+
+    private OWLOntology load(IRI iri) throws OWLOntologyCreationException {
+        return cache.load(iri, OWLManager.createOWLOntologyManager(), new OWLOntologyLoaderConfiguration());
+    }
+
+    private IRI http(String path) {
+        return IRI.create("http://localhost:" + server.getAddress().getPort() + path);
+    }
+
+    private void redirect(String from, String to, int status) {
+        statuses.put(from, status);
+        locations.put(from, to);
+    }
+
+    private String ontology(String axiom) {
+        return "Prefix(:=<" + NS + ">)\n"
+                + "Ontology(<http://www.ebi.ac.uk/webulous/test>\n"
+                + "Declaration(Class(:A))\nDeclaration(Class(:B))\nDeclaration(Class(:C))\n"
+                + axiom + "\n)\n";
+    }
+
+    private OWLAxiom subClassOf(String sub, String sup) {
+        OWLDataFactory df = OWLManager.getOWLDataFactory();
+        return df.getOWLSubClassOfAxiom(df.getOWLClass(IRI.create(NS + sub)), df.getOWLClass(IRI.create(NS + sup)));
+    }
+
+    private int count(String suffix) {
+        int count = 0;
+        for (String name : cache.getDirectory().list()) {
+            if (name.endsWith(suffix)) {
+                count++;
+            }
+        }
+        return count;
+    }
+
+    private void write(File file, String content) throws IOException {
+        Writer writer = new OutputStreamWriter(new FileOutputStream(file), "UTF-8");
+        try {
+            writer.write(content);
+        } finally {
+            writer.close();
+        }
+    }
+}
@@ -0,0 +1,190 @@
+package uk.ac.ebi.fgpt;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.semanticweb.owlapi.model.IRI;
+
+import java.io.*;
+import java.util.*;
+import java.util.zip.GZIPOutputStream;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author Simon Jupp
+ * @date 18/10/2026
+ * Samples, Phenotypes and Ontologies Team, EMBL-EBI
+ */
+public class LabelIndexFileTest {
+
+    private static final String NS = "http://www.ebi.ac.uk/webulous/test#";
+    private static final IRI LABEL = IRI.create("http://www.w3.org/2000/01/rdf-schema#label");
+    private static final IRI SYNONYM = IRI.create("http://www.geneontology.org/formats/oboInOwl#hasExactSynonym");
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Test
+    public void testRoundTrip() throws IOException {
+        // runs of two records and 16 byte chunks, so records are spilled and values straddle chunks
+        LabelIndexFile.Builder builder = new LabelIndexFile.Builder(folder.getRoot(), 2);
+        builder.addLabel(NS + "A", "Acute Leukemia", 1);
+        builder.addEntity(NS + "A");
+        builder.addLabel(NS + "A", "leukemia, acute", 0);
+        builder.addEntity(NS + "B");
+        builder.addLabel(NS + "C", "liver", 0);
+        builder.addEntity(NS + "C");
+        builder.addEntity(NS + "A");
+        builder.addLabel(NS + "D", "no entity", 0);
+        builder.addEntity(NS + "E");
+        builder.addLabel(NS + "E", "Liver", 0);
+
+        File file = new File(folder.getRoot(), "test.lix");
+        try {
+            builder.write(file);
+        } finally {
+            builder.dispose();
+        }
+        LabelIndexFile index = LabelIndexFile.open(file, 4);
+
+        assertEquals(4, index.size());
+        assertTrue(index.contains(NS + "A"));
+        assertTrue(index.contains(NS + "B"));
+        assertFalse(index.contains(NS + "D"));
+        assertFalse(index.contains(NS + "Z"));
+
+        // the label with the lowest priority wins
+        assertEquals("leukemia, acute", index.getLabel(NS + "A"));
+        assertNull(index.getLabel(NS + "B"));
+        assertNull(index.getLabel(NS + "D"));
+
+        assertEquals(Collections.singletonList(NS + "A"), index.findIris("  Leukemia,   ACUTE "));
+        assertTrue(index.findIris("acute leukemia").isEmpty());
+        // every label is a name, but only the one the entity is labelled with is its primary name
+        List<LabelIndexFile.Name> names = index.findNames("acute leukemia");
+        assertEquals(1, names.size());
+        assertEquals(NS + "A", names.get(0).getIri());
+        assertEquals(1, names.get(0).getPriority());
+        assertFalse(names.get(0).isPrimary());
+        assertEquals(0, index.findNames("leukemia, acute").get(0).getPriority());
+        assertTrue(index.findNames("leukemia, acute").get(0).isPrimary());
+        assertEquals(-1, index.findNames("b").get(0).getPriority());
+        // without a label an entity is found by its IRI's short form
+        assertEquals(Collections.singletonList(NS + "B"), index.findIris("b"));
+        assertEquals(Arrays.asList(NS + "C", NS + "E"), index.findIris("LIVER"));
+        assertTrue(index.findIris("kidney").isEmpty());
+
+        // only the temporary files are cleaned up
+        assertEquals(Collections.singletonList("test.lix"), Arrays.asList(folder.getRoot().list()));
+    }
+
+    @Test
+    public void testFirstLabelWinsATie() throws IOException {
+        LabelIndexFile.Builder builder = new LabelIndexFile.Builder(folder.getRoot(), 1);
+        builder.addEntity(NS + "A");
+        builder.addLabel(NS + "A", "first", 0);
+        builder.addLabel(NS + "A", "second", 0);
+        File file = new File(folder.getRoot(), "tie.lix");
+        builder.write(file);
+        builder.dispose();
+
+        assertEquals("first", LabelIndexFile.open(file).getLabel(NS + "A"));
+    }
+
+    @Test
+    public void testEmptyIndex() throws IOException {
+        File file = new File(folder.getRoot(), "empty.lix");
+        new LabelIndexFile.Builder(folder.getRoot()).write(file);
+        LabelIndexFile index = LabelIndexFile.open(file);
+        assertEquals(0, index.size());
+        assertFalse(index.contains(NS + "A"));
+        assertTrue(index.findIris("a").isEmpty());
+    }
+
+    @Test
+    public void testReadsFunctionalSyntax() throws IOException {
+        File document = snapshot("test.ofn.gz",
+                "Prefix(:=<" + NS + ">)\n"
+                + "Prefix(rdfs:=<http://www.w3.org/2000/01/rdf-schema#>)\n"
+                + "Prefix(oboInOwl:=<http://www.geneontology.org/formats/oboInOwl#>)\n"
+                + "Prefix(xsd:=<http://www.w3.org/2001/XMLSchema#>)\n"
+                + "# a comment (with brackets\n"
+                + "Ontology(<http://www.ebi.ac.uk/webulous/test> <http://www.ebi.ac.uk/webulous/test/1.0>\n"
+                + "Import(<http://www.ebi.ac.uk/webulous/imported>)\n"
+                + "Declaration(Class(:A))\n"
+                + "Declaration(Class(<" + NS + "B>))\n"
+                + "Declaration(AnnotationProperty(oboInOwl:hasExactSynonym))\n"
+                + "AnnotationAssertion(rdfs:label :A \"acute \\\"myeloid\\\"\nleukemia\"^^xsd:string)\n"
+                + "AnnotationAssertion(oboInOwl:hasExactSynonym :A \"AML\")\n"
+                + "AnnotationAssertion(Annotation(rdfs:comment \"from (somewhere)\") rdfs:label <" + NS + "B> \"Liver\"@en)\n"
+                + "AnnotationAssertion(rdfs:label :NotAnEntity \"orphan\")\n"
+                + "SubClassOf(:B owl:Thing)\n"
+                + ")\n");
+
+        File file = new File(folder.getRoot(), "labels.lix");
+        LabelIndexFile.writeDocuments(file, Collections.singleton(document), Arrays.asList(LABEL, SYNONYM));
+        LabelIndexFile index = LabelIndexFile.open(file);
+
+        assertEquals("acute \"myeloid\"\nleukemia", index.getLabel(NS + "A"));
+        assertEquals("Liver", index.getLabel(NS + "B"));
+        assertEquals(Collections.singletonList(NS + "B"), index.findIris("liver"));
+        assertEquals(Collections.singletonList(NS + "A"), index.findIris("acute \"myeloid\" leukemia"));
+        assertEquals(NS + "A", index.findNames("aml").get(0).getIri());
+        assertEquals(1, index.findNames("aml").get(0).getPriority());
+
+        // the annotation property is an entity, but not the ontology, its imports or the built in vocabulary
+        assertTrue(index.contains(SYNONYM.toString()));
+        assertFalse(index.contains("http://www.ebi.ac.uk/webulous/test"));
+        assertFalse(index.contains("http://www.ebi.ac.uk/webulous/test/1.0"));
+        assertFalse(index.contains("http://www.ebi.ac.uk/webulous/imported"));
+        assertFalse(index.contains(LABEL.toString()));
+        assertFalse(index.contains(NS + "NotAnEntity"));
+        assertEquals(3, index.size());
+    }
+
+    @Test
+    public void testSynonymOnlyWhenThereIsNoLabel() throws IOException {
+        File document = snapshot("synonym.ofn.gz",
+                "Prefix(:=<" + NS + ">)\n"
+                + "Ontology(\n"
+                + "Declaration(Class(:A))\n"
+                + "AnnotationAssertion(<" + SYNONYM + "> :A \"AML\")\n"
+                + ")\n");
+
+        File file = new File(folder.getRoot(), "synonym.lix");
+        LabelIndexFile.writeDocuments(file, Collections.singleton(document), Arrays.asList(LABEL, SYNONYM));
+        assertEquals("AML", LabelIndexFile.open(file).getLabel(NS + "A"));
+    }
+
+    @Test
+    public void testGetOrBuildReusesAndRepairsTheFile() throws IOException {
+        File document = snapshot("reuse.ofn.gz",
+                "Prefix(:=<" + NS + ">)\nOntology(\nDeclaration(Class(:A))\n)\n");
+        File directory = new File(folder.getRoot(), "labels");
+        List<IRI> labelIris = Collections.singletonList(LABEL);
+
+        LabelIndexFile index = LabelIndexFile.getOrBuild(directory, "reuse", Collections.singleton(document), labelIris);
+        assertTrue(index.contains(NS + "A"));
+        assertSame(index, LabelIndexFile.getOrBuild(directory, "reuse", Collections.<File>emptySet(), labelIris));
+
+        // a damaged file is built again
+        write(new FileOutputStream(new File(directory, "broken.lix")), "not an index");
+        assertTrue(LabelIndexFile.getOrBuild(directory, "broken", Collections.singleton(document), labelIris).contains(NS + "A"));
+    }
+
+    private File snapshot(String name, String content) throws IOException {
+        File file = folder.newFile(name);
+        write(new GZIPOutputStream(new FileOutputStream(file)), content);
+        return file;
+    }
+
+    private void write(OutputStream out, String content) throws IOException {
+        Writer writer = new OutputStreamWriter(out, "UTF-8");
+        try {
+            writer.write(content);
+        } finally {
+            writer.close();
+        }
+    }
+}
@@ -3,6 +3,8 @@ package uk.ac.ebi.spot.webulous.model;
 import org.semanticweb.owlapi.model.OWLEntity;
 import uk.ac.ebi.spot.webulous.exception.AutoIDException;
 
+import java.util.List;
+
 /**
  * Author: Simon Jupp<br>
  * Date: Dec 20, 2010<br>
@@ -12,6 +14,12 @@ import uk.ac.ebi.spot.webulous.exception.AutoIDException;
 public interface AutoIDGenerator {
 
     String getNextID(Class<? extends OWLEntity> type) throws AutoIDException;
+
+    /**
+     * Reserve a block of IDs in one go
+     */
+    List<String> getNextIDs(Class<? extends OWLEntity> type, int count) throws AutoIDException;
+
     void setEntityPrefs(EntityCreation entitiesPrefs);  
     EntityCreation getEntitiesPrefs ();
 
@@ -0,0 +1,25 @@
+package uk.ac.ebi.spot.webulous.model;
+
+import org.semanticweb.owlapi.model.OWLEntity;
+import org.semanticweb.owlapi.model.OWLOntologyChange;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * @author Simon Jupp
+ * @date 18/10/2026
+ * Samples, Phenotypes and Ontologies Team, EMBL-EBI
+ *
+ * The result of creating several entities in one go, the changes for all the entities are applied together
+ */
+public interface OWLEntitiesCreationSet<E extends OWLEntity> {
+
+    /**
+     * @return the new entities keyed by the short name they were created for
+     */
+    Map<String, E> getOWLEntities();
+
+
+    List<? extends OWLOntologyChange> getOntologyChanges();
+}
@@ -4,6 +4,7 @@ import org.semanticweb.owlapi.model.*;
 import uk.ac.ebi.spot.webulous.exception.OWLEntityCreationException;
 
 import java.net.URI;
+import java.util.Collection;
 
 /**
  * Author: Simon Jupp<br>
@@ -64,6 +65,38 @@ public interface OWLEntityFactory {
     <T extends OWLEntity> OWLEntityCreationSet<T> createOWLEntity(Class<T> type, String shortName, URI baseURI) throws OWLEntityCreationException;
 
 
+    /**
+     * Create several classes at once, any IDs are reserved together and all the changes are returned in a single set
+     * @param shortNames user supplied names, duplicates are only created once
+     * @param baseURI specify a base or leave as null to let the factory decide
+     * @return an object wrapping the new classes and the changes that need to be applied, which may leave out names that
+     * could not be created once some of them had been
+     * @throws OWLEntityCreationException if the entities could not be created because of bad input/name clashes/auto ID etc
+     */
+    OWLEntitiesCreationSet<OWLClass> createOWLClasses(Collection<String> shortNames, URI baseURI) throws OWLEntityCreationException;
+
+    /**
+     * Create several individuals at once, any IDs are reserved together and all the changes are returned in a single set
+     * @param shortNames user supplied names, duplicates are only created once
+     * @param baseURI specify a base or leave as null to let the factory decide
+     * @return an object wrapping the new individuals and the changes that need to be applied, which may leave out names that
+     * could not be created once some of them had been
+     * @throws OWLEntityCreationException if the entities could not be created because of bad input/name clashes/auto ID etc
+     */
+    OWLEntitiesCreationSet<OWLNamedIndividual> createOWLIndividuals(Collection<String> shortNames, URI baseURI) throws OWLEntityCreationException;
+
+    /**
+     *
+     * @param type OWLClass, OWLObjectProperty, OWLDataProperty or OWLIndividual
+     * @param shortNames user supplied names, duplicates are only created once
+     * @param baseURI specify a base or leave as null to let the factory decide
+     * @return an object wrapping the new entities and the changes that need to be applied, which may leave out names that
+     * could not be created once some of them had been
+     * @throws OWLEntityCreationException if the entities could not be created because of bad input/name clashes/auto ID etc
+     */
+    <T extends OWLEntity> OWLEntitiesCreationSet<T> createOWLEntities(Class<T> type, Collection<String> shortNames, URI baseURI) throws OWLEntityCreationException;
+
+
     /**
      * Use this to check if the entity can be created without affecting any generated IDs
      * @param type OWLClass, OWLObjectProperty, OWLDataProperty or OWLIndividual
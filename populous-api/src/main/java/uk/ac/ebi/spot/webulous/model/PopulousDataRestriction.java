@@ -10,10 +10,15 @@ public class PopulousDataRestriction {
     private int columnIndex;
     private String classExpression;
     private RestrictionType restrictionType;
+    private ReasonerType reasonerType = ReasonerType.AUTO;
     private String defaultValue;
     private boolean multivalueField = false;
     private boolean isRequired = false;
     private String [][] values = new String[0][0];
+    // computed values are stored outside the template, this is how many there are
+    private int valueCount = 0;
+    // goes up each time a refresh changes the values
+    private long valuesVersion = 0;
     private String restrictionParentURI;
     private String restrictionOntology;
 
@@ -61,6 +66,14 @@ public class PopulousDataRestriction {
         this.restrictionType = restrictionType;
     }
 
+    public ReasonerType getReasonerType() {
+        return reasonerType;
+    }
+
+    public void setReasonerType(ReasonerType reasonerType) {
+        this.reasonerType = reasonerType;
+    }
+
     public String getDefaultValue() {
         return defaultValue;
     }
@@ -93,6 +106,22 @@ public class PopulousDataRestriction {
         this.values = values;
     }
 
+    public int getValueCount() {
+        return valueCount;
+    }
+
+    public void setValueCount(int valueCount) {
+        this.valueCount = valueCount;
+    }
+
+    public long getValuesVersion() {
+        return valuesVersion;
+    }
+
+    public void setValuesVersion(long valuesVersion) {
+        this.valuesVersion = valuesVersion;
+    }
+
     public String getRestrictionParentURI() {
         return restrictionParentURI;
     }
@@ -0,0 +1,18 @@
+package uk.ac.ebi.spot.webulous.model;
+
+/**
+ * @author Simon Jupp
+ * @date 18/10/2026
+ * Samples, Phenotypes and Ontologies Team, EMBL-EBI
+ *
+ * The reasoner used to compute the values of a data restriction. AUTO picks one based on the
+ * OWL profile of the imported ontologies and the restriction's class expression.
+ */
+public enum ReasonerType {
+
+    AUTO,
+    STRUCTURAL,
+    EL,
+    HERMIT,
+
+}
@@ -7,6 +7,8 @@ import uk.ac.ebi.spot.webulous.model.EntityCreation;
 
 import java.text.FieldPosition;
 import java.text.NumberFormat;
+import java.util.ArrayList;
+import java.util.List;
 
 /**
  * Author: Simon Jupp<br>
@@ -34,9 +36,31 @@ public abstract class AbstractIDGenerator implements AutoIDGenerator {
     }
 
 
+    public List<String> getNextIDs(Class<? extends OWLEntity> type, int count) throws AutoIDException {
+        List<String> ids = new ArrayList<String>(count);
+        if (count <= 0) {
+            return ids;
+        }
+        String prefix = getPrefix(type);
+        String suffix = getSuffix(type);
+        long first = reserveRawIDs(type, count);
+        for (int x = 0; x < count; x++) {
+            ids.add(prefix + pad(first + x, getDigitLength()) + suffix);
+        }
+        return ids;
+    }
+
+
     protected abstract long getRawID(Class<? extends OWLEntity> type) throws AutoIDException;
 
 
+    /**
+     * Reserve a contiguous range of raw IDs
+     * @return the first ID in the range
+     */
+    protected abstract long reserveRawIDs(Class<? extends OWLEntity> type, int count) throws AutoIDException;
+
+
     protected String getPrefix(Class<? extends OWLEntity> type){
         String prefix = entitiesPrefs.getPrefix();
         return preprocess(prefix, type);
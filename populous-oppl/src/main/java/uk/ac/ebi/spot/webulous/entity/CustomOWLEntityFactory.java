@@ -9,9 +9,7 @@ import uk.ac.ebi.spot.webulous.model.*;
 
 import java.net.URI;
 import java.net.URISyntaxException;
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.List;
+import java.util.*;
 
 /**
  * Author: Simon Jupp<br>
@@ -184,6 +182,103 @@ public class CustomOWLEntityFactory implements OWLEntityFactory {
     }
 
 
+    public OWLEntitiesCreationSet<OWLClass> createOWLClasses(Collection<String> shortNames, URI baseURI) throws OWLEntityCreationException {
+        return createOWLEntities(OWLClass.class, shortNames, baseURI);
+    }
+
+
+    public OWLEntitiesCreationSet<OWLNamedIndividual> createOWLIndividuals(Collection<String> shortNames, URI baseURI) throws OWLEntityCreationException {
+        return createOWLEntities(OWLNamedIndividual.class, shortNames, baseURI);
+    }
+
+
+    public <T extends OWLEntity> OWLEntitiesCreationSet<T> createOWLEntities(Class<T> type, Collection<String> shortNames, URI baseURI) throws OWLEntityCreationException {
+        try {
+
+            if (baseURI == null){
+                if (useDefaultBaseURI()){
+                    baseURI = getDefaultBaseURI();
+                }
+                if (baseURI == null){
+                    baseURI = onto.getOntologyID().getOntologyIRI().toURI();
+                }
+            }
+
+            List<String> names = new ArrayList<String>(new LinkedHashSet<String>(shortNames));
+            Map<String, URI> uris = new LinkedHashMap<String, URI>();
+            Map<String, String> ids = new HashMap<String, String>();
+
+            if (isFragmentAutoGenerated()){
+                // reserve the IDs as a single block, then check them all in one pass and only top up the ones that clash
+                List<String> pending = names;
+                while (!pending.isEmpty()) {
+                    List<String> clashes = new ArrayList<String>();
+                    Iterator<String> reserved = getAutoIDGenerator().getNextIDs(type, pending.size()).iterator();
+                    for (String name : pending) {
+                        String id = reserved.next();
+                        URI uri = createURI(id, baseURI);
+                        if (isURIAlreadyUsed(uri)) { // don't pun unnecessarily
+                            clashes.add(name);
+                        }
+                        else {
+                            uris.put(name, uri);
+                            ids.put(name, id);
+                        }
+                    }
+                    pending = clashes;
+                }
+            }
+            else {
+                List<URI> used = new ArrayList<URI>();
+                for (String name : names) {
+                    URI uri = createURI(name, baseURI);
+                    if (isURIAlreadyUsed(type, uri)){
+                        used.add(uri);
+                    }
+                    uris.put(name, uri);
+                }
+                if (!used.isEmpty()) {
+                    throw new OWLEntityCreationException("Entities already exist: " + used);
+                }
+
+                if (isGenerateIDLabel()){
+                    Iterator<String> reserved = getAutoIDGenerator().getNextIDs(type, names.size()).iterator();
+                    for (String name : names) {
+                        ids.put(name, reserved.next());
+                    }
+                }
+            }
+
+            Map<String, T> entities = new LinkedHashMap<String, T>();
+            List<OWLOntologyChange> changes = new ArrayList<OWLOntologyChange>();
+            OWLDataFactory df = mngr.getOWLDataFactory();
+
+            for (String name : names) {
+                T entity = getOWLEntity(type, uris.get(name));
+                entities.put(name, entity);
+
+                if (isGenerateIDLabel()){
+                    changes.addAll(createLabel(entity, ids.get(name)));
+                }
+
+                if (isGenerateNameLabel()){
+                    changes.addAll(createLabel(entity, name));
+                }
+
+                changes.add(new AddAxiom(onto, df.getOWLDeclarationAxiom(entity)));
+            }
+
+            return new SimpleOWLEntitiesCreationSet<T>(entities, changes);
+        }
+        catch (URISyntaxException e) {
+            throw new OWLEntityCreationException(e);
+        }
+        catch (AutoIDException e) {
+            throw new OWLEntityCreationException(e);
+        }
+    }
+
+
     public <T extends OWLEntity> OWLEntityCreationSet<T> preview(Class<T> type, String shortName, URI baseURI) throws OWLEntityCreationException {
         // There is probably a better way round this.
         if (getAutoIDGenerator() instanceof Revertable){
@@ -32,6 +32,17 @@ public class IterativeAutoIDGenerator extends AbstractIDGenerator implements Rev
     }
 
 
+    protected long reserveRawIDs(Class<? extends OWLEntity> type, int count) throws AutoIDException {
+
+        if (end != -1 && id + count - 1 > end){
+            throw new AutoIDException("You have run out of IDs for creating " + count + " new entities - max = " + end);
+        }
+        long first = id;
+        id += count;
+        return first;
+    }
+
+
     public void checkpoint() {
         checkpoints.push(id);
     }
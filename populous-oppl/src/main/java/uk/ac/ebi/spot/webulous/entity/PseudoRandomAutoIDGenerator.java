@@ -25,6 +25,14 @@ public class PseudoRandomAutoIDGenerator extends AbstractIDGenerator implements
     }
 
 
+    protected long reserveRawIDs(Class<? extends OWLEntity> type, int count) throws AutoIDException {
+        long first = nextId;
+        // make sure the next ID handed out doesn't fall inside the reserved range
+        nextId = Math.max(first + count, System.nanoTime());
+        return first;
+    }
+
+
     public void checkpoint() {
         checkpoints.push(nextId);
     }
@@ -0,0 +1,38 @@
+package uk.ac.ebi.spot.webulous.entity;
+
+import org.semanticweb.owlapi.model.OWLEntity;
+import org.semanticweb.owlapi.model.OWLOntologyChange;
+import uk.ac.ebi.spot.webulous.model.OWLEntitiesCreationSet;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * @author Simon Jupp
+ * @date 18/10/2026
+ * Samples, Phenotypes and Ontologies Team, EMBL-EBI
+ */
+public class SimpleOWLEntitiesCreationSet<E extends OWLEntity> implements OWLEntitiesCreationSet<E> {
+
+    private Map<String, E> owlEntities;
+
+    private List<OWLOntologyChange> changes;
+
+
+    public SimpleOWLEntitiesCreationSet(Map<String, E> owlEntities, List<? extends OWLOntologyChange> changes) {
+        this.owlEntities = new LinkedHashMap<String, E>(owlEntities);
+        this.changes = new ArrayList<OWLOntologyChange>(changes);
+    }
+
+
+    public Map<String, E> getOWLEntities() {
+        return owlEntities;
+    }
+
+
+    public List<? extends OWLOntologyChange> getOntologyChanges() {
+        return changes;
+    }
+}
@@ -3,24 +3,24 @@ package uk.ac.ebi.spot.webulous.entity;
 import org.semanticweb.owlapi.model.*;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
-import org.springframework.http.ResponseEntity;
+import org.springframework.web.client.RestClientException;
 import org.springframework.web.client.RestTemplate;
 import uk.ac.ebi.spot.webulous.entity.urigen.PreferenceBean;
+import uk.ac.ebi.spot.webulous.entity.urigen.UrigenLookupCache;
 import uk.ac.ebi.spot.webulous.entity.urigen.UrigenEntityBean;
 import uk.ac.ebi.spot.webulous.entity.urigen.UrigenRequestBean;
+import uk.ac.ebi.spot.webulous.entity.urigen.UrigenUriReservoir;
 import uk.ac.ebi.spot.webulous.entity.urigen.UserBean;
 import uk.ac.ebi.spot.webulous.exception.AutoIDException;
 import uk.ac.ebi.spot.webulous.exception.OWLEntityCreationException;
 import uk.ac.ebi.spot.webulous.model.LabelDescriptor;
+import uk.ac.ebi.spot.webulous.model.OWLEntitiesCreationSet;
 import uk.ac.ebi.spot.webulous.model.OWLEntityCreationSet;
 
 import java.io.IOException;
 import java.net.URI;
 import java.net.URISyntaxException;
-import java.util.ArrayList;
-import java.util.Collections;
-import java.util.List;
-import java.util.UUID;
+import java.util.*;
 
 /**
  * @author Simon Jupp
@@ -41,6 +41,8 @@ public class UrigenEntityFactory extends CustomOWLEntityFactory
 
     private OWLOntology onto;
 
+    private UrigenUriReservoir reservoir;
+
     public UrigenEntityFactory(OWLOntologyManager mngr, OWLOntology onto, String urigenServer, String apikey, String ontologyUri) {
 
         super(mngr, onto, null);
@@ -54,19 +56,10 @@ public class UrigenEntityFactory extends CustomOWLEntityFactory
         this.apikey = apikey;
         this.ontologyUri = ontologyUri;
         RestTemplate restTemplate = new RestTemplate();
-        ResponseEntity<PreferenceBean[]> responseEntity = restTemplate.getForEntity(urigenServer + "/api/preferences", PreferenceBean[].class);
-
-        PreferenceBean[] preferences =responseEntity.getBody();
-        // check both the user and the ontology exits
-
-        for (PreferenceBean bean : preferences) {
-
-            if (bean.getOntologyUri().equals(ontologyUri)) {
-                preferenceBean = bean;
-            }
-        }
-
-        this.user = restTemplate.getForObject(urigenServer + "/api/users/query?restApiKey=" + apikey, UserBean.class);
+        // check both the user and the ontology exits, these are cached as they rarely change between submissions
+        UrigenLookupCache lookupCache = UrigenLookupCache.getInstance();
+        this.preferenceBean = lookupCache.getPreference(restTemplate, urigenServer, ontologyUri);
+        this.user = lookupCache.getUser(restTemplate, urigenServer, apikey);
 
         if (preferenceBean == null) {
             throw new RuntimeException("No Urigen prefernce on "  +urigenServer + " for ontology " + ontologyUri);
@@ -92,23 +85,30 @@ public class UrigenEntityFactory extends CustomOWLEntityFactory
         return super.getDefaultBaseURI();
     }
 
+    /**
+     * Mint the URIs for entities created in bulk in the background, a few at a time, rather than waiting on the
+     * urigen server for each new entity in turn
+     * @param capacity the most URIs to mint ahead of them being used
+     * @param lowWaterMark mint more when fewer than this are left
+     */
+    public void enablePrefetch(int capacity, int lowWaterMark) {
+        if (capacity > 0) {
+            this.reservoir = UrigenUriReservoir.forPreference(urigenServer, apikey, user, preferenceBean, capacity, lowWaterMark);
+        }
+    }
+
     @Override
     public <T extends OWLEntity> OWLEntityCreationSet<T> createOWLEntity(Class<T> type, String shortName, URI baseURI) throws OWLEntityCreationException {
 
-        String query = urigenServer + "/api/uris?restApiKey=" + apikey;
-
-        UrigenRequestBean requestBean = new UrigenRequestBean(
-                user.getId(),
-                "http://urigen_random/" + Math.random(),
-                preferenceBean.getPreferenceId(),
-                shortName,
-                ""
-        );
-
-        RestTemplate restTemplate = new RestTemplate();
-        UrigenEntityBean entity = restTemplate.postForObject(query, requestBean, UrigenEntityBean.class);
+        String generatedUri = null;
+        if (reservoir != null) {
+            generatedUri = reservoir.poll(shortName);
+        }
+        if (generatedUri == null) {
+            generatedUri = mintUri(shortName);
+        }
 
-        T owlEntity = getOWLEntity(type, URI.create(entity.getGeneratedUri()));
+        T owlEntity = getOWLEntity(type, URI.create(generatedUri));
 
         List<OWLOntologyChange> changes = new ArrayList<OWLOntologyChange>();
         changes.addAll(createLabel(owlEntity, shortName));
@@ -121,5 +121,75 @@ public class UrigenEntityFactory extends CustomOWLEntityFactory
         return new SimpleOWLEntityCreationSet<T>(owlEntity, changes);
     }
 
-}
+    @Override
+    public <T extends OWLEntity> OWLEntitiesCreationSet<T> createOWLEntities(Class<T> type, Collection<String> shortNames, URI baseURI) throws OWLEntityCreationException {
+
+        List<String> names = new ArrayList<String>(new LinkedHashSet<String>(shortNames));
+
+        // start minting them all in the background, each one is then taken as it's needed
+        if (reservoir != null) {
+            reservoir.reserve(names);
+        }
 
+        Map<String, T> entities = new LinkedHashMap<String, T>();
+        List<OWLOntologyChange> changes = new ArrayList<OWLOntologyChange>();
+        OWLDataFactory df = mngr.getOWLDataFactory();
+
+        // once the server refuses one, the rest aren't minted, but any already minted in the background are still taken
+        OWLEntityCreationException failure = null;
+        List<String> missing = new ArrayList<String>();
+        for (int x = 0; x < names.size(); x++) {
+            String name = names.get(x);
+            String generatedUri = reservoir != null ? reservoir.poll(name) : null;
+            if (generatedUri == null && failure == null) {
+                try {
+                    generatedUri = mintUri(name);
+                } catch (OWLEntityCreationException e) {
+                    failure = e;
+                }
+            }
+            if (generatedUri == null) {
+                missing.add(name);
+                continue;
+            }
+
+            T owlEntity = getOWLEntity(type, URI.create(generatedUri));
+            entities.put(name, owlEntity);
+            changes.addAll(createLabel(owlEntity, name));
+            changes.add(new AddAxiom(onto, df.getOWLDeclarationAxiom(owlEntity)));
+        }
+
+        if (failure != null) {
+            if (entities.isEmpty()) {
+                throw failure;
+            }
+            logger.error("Created " + entities.size() + " entities, but couldn't create " + missing + ": " + failure.getMessage());
+        }
+        return new SimpleOWLEntitiesCreationSet<T>(entities, changes);
+    }
+
+    private String mintUri(String shortName) throws OWLEntityCreationException {
+
+        String query = urigenServer + "/api/uris?restApiKey=" + apikey;
+
+        UrigenRequestBean requestBean = new UrigenRequestBean(
+                user.getId(),
+                "http://urigen_random/" + Math.random(),
+                preferenceBean.getPreferenceId(),
+                shortName,
+                ""
+        );
+
+        RestTemplate restTemplate = new RestTemplate();
+        UrigenEntityBean entity;
+        try {
+            entity = restTemplate.postForObject(query, requestBean, UrigenEntityBean.class);
+        } catch (RestClientException e) {
+            // the cached user or preference may be stale, so look them up again next time
+            UrigenLookupCache.getInstance().invalidate(urigenServer, ontologyUri, apikey);
+            throw new OWLEntityCreationException("Failed to get a new URI from " + urigenServer + ": " + e.getMessage(), e);
+        }
+        return entity.getGeneratedUri();
+    }
+
+}
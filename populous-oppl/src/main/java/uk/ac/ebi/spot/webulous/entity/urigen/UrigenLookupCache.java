@@ -0,0 +1,138 @@
+package uk.ac.ebi.spot.webulous.entity.urigen;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.web.client.RestTemplate;
+
+import java.util.Iterator;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * @author Simon Jupp
+ * @date 18/10/2026
+ * Samples, Phenotypes and Ontologies Team, EMBL-EBI
+ *
+ * Caches the Urigen preference and user lookups that are needed before any new URIs can be minted.
+ * Preferences are cached per server and ontology, users per server and api key. Entries expire after
+ * a configurable time to live and can be invalidated explicitly, e.g. when a preference has been changed on the server.
+ */
+public class UrigenLookupCache {
+
+    public static final long DEFAULT_TTL = 10 * 60 * 1000L;
+
+    private static final UrigenLookupCache INSTANCE = new UrigenLookupCache(DEFAULT_TTL);
+
+    private Logger logger = LoggerFactory.getLogger(getClass());
+
+    private final Map<String, CachedLookup<PreferenceBean>> preferences = new ConcurrentHashMap<String, CachedLookup<PreferenceBean>>();
+    private final Map<String, CachedLookup<UserBean>> users = new ConcurrentHashMap<String, CachedLookup<UserBean>>();
+
+    private volatile long ttl;
+
+    public UrigenLookupCache(long ttl) {
+        this.ttl = ttl;
+    }
+
+    /**
+     * @return the cache shared between all UrigenEntityFactory instances
+     */
+    public static UrigenLookupCache getInstance() {
+        return INSTANCE;
+    }
+
+    public long getTtl() {
+        return ttl;
+    }
+
+    public void setTtl(long ttl) {
+        this.ttl = ttl;
+    }
+
+    /**
+     * @return the preference for this ontology on the urigen server, or null if the server has no such preference
+     */
+    public PreferenceBean getPreference(RestTemplate restTemplate, String urigenServer, String ontologyUri) {
+        String key = urigenServer + "|" + ontologyUri;
+        CachedLookup<PreferenceBean> cached = preferences.get(key);
+        if (cached != null && !cached.isExpired(ttl)) {
+            return cached.getValue();
+        }
+
+        logger.debug("Fetching urigen preferences from " + urigenServer);
+        PreferenceBean[] beans = restTemplate.getForObject(urigenServer + "/api/preferences", PreferenceBean[].class);
+        PreferenceBean preferenceBean = null;
+        if (beans != null) {
+            for (PreferenceBean bean : beans) {
+                // we get every preference back, so keep the others too while we have them
+                if (bean.getOntologyUri() != null) {
+                    preferences.put(urigenServer + "|" + bean.getOntologyUri(), new CachedLookup<PreferenceBean>(bean));
+                }
+                if (ontologyUri.equals(bean.getOntologyUri())) {
+                    preferenceBean = bean;
+                }
+            }
+        }
+        return preferenceBean;
+    }
+
+    /**
+     * @return the user that owns this api key on the urigen server, or null if there is no such user
+     */
+    public UserBean getUser(RestTemplate restTemplate, String urigenServer, String apiKey) {
+        String key = urigenServer + "|" + apiKey;
+        CachedLookup<UserBean> cached = users.get(key);
+        if (cached != null && !cached.isExpired(ttl)) {
+            return cached.getValue();
+        }
+
+        logger.debug("Fetching urigen user from " + urigenServer);
+        UserBean user = restTemplate.getForObject(urigenServer + "/api/users/query?restApiKey=" + apiKey, UserBean.class);
+        if (user != null) {
+            users.put(key, new CachedLookup<UserBean>(user));
+        }
+        return user;
+    }
+
+    public void invalidate(String urigenServer, String ontologyUri, String apiKey) {
+        preferences.remove(urigenServer + "|" + ontologyUri);
+        users.remove(urigenServer + "|" + apiKey);
+    }
+
+    public void invalidateServer(String urigenServer) {
+        removeByPrefix(preferences, urigenServer + "|");
+        removeByPrefix(users, urigenServer + "|");
+    }
+
+    public void invalidateAll() {
+        preferences.clear();
+        users.clear();
+    }
+
+    private void removeByPrefix(Map<String, ?> map, String prefix) {
+        Iterator<String> keys = map.keySet().iterator();
+        while (keys.hasNext()) {
+            if (keys.next().startsWith(prefix)) {
+                keys.remove();
+            }
+        }
+    }
+
+    private static class CachedLookup<T> {
+        private final T value;
+        private final long created;
+
+        CachedLookup(T value) {
+            this.value = value;
+            this.created = System.currentTimeMillis();
+        }
+
+        T getValue() {
+            return value;
+        }
+
+        boolean isExpired(long ttl) {
+            return System.currentTimeMillis() - created > ttl;
+        }
+    }
+}
@@ -0,0 +1,227 @@
+package uk.ac.ebi.spot.webulous.entity.urigen;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.web.client.RestClientException;
+import org.springframework.web.client.RestTemplate;
+
+import java.util.*;
+import java.util.concurrent.*;
+
+/**
+ * @author Simon Jupp
+ * @date 18/10/2026
+ * Samples, Phenotypes and Ontologies Team, EMBL-EBI
+ *
+ * Mints URIs from a Urigen server in the background, ahead of when they are needed, for a single preference and user.
+ * Urigen registers a term with its label when the URI is minted, and has no call to change the label or give the URI
+ * back, so nothing is minted until its real label is known. Entity factories {@link #reserve} the labels they are
+ * about to create, which are minted on a few background threads, at most the reservoir's capacity ahead of being
+ * taken and topped up whenever fewer than the low water mark are left, and {@link #poll} each one as its entity is
+ * created.
+ *
+ * A label is never minted twice: if it hasn't been sent to the server yet it is withdrawn and left to the caller, and
+ * if it is being minted the caller waits for it. URIs that were minted but never taken are logged on shutdown so
+ * they can be reconciled by hand.
+ */
+public class UrigenUriReservoir {
+
+    private static final int MINT_THREADS = 4;
+
+    private static final Map<String, UrigenUriReservoir> reservoirs = new HashMap<String, UrigenUriReservoir>();
+
+    private Logger logger = LoggerFactory.getLogger(getClass());
+
+    private final String urigenServer;
+    private final String apikey;
+    private final int userId;
+    private final int preferenceId;
+    private final int capacity;
+    private final int lowWaterMark;
+
+    // labels waiting to be sent to the server, and those that have been, guarded by this
+    private final Set<String> queued = new LinkedHashSet<String>();
+    private final Map<String, Future<UrigenEntityBean>> minting = new LinkedHashMap<String, Future<UrigenEntityBean>>();
+
+    private final ExecutorService mintExecutor;
+    private volatile boolean shutdown = false;
+
+    private UrigenUriReservoir(String urigenServer, String apikey, int userId, int preferenceId, int capacity, int lowWaterMark) {
+        this.urigenServer = urigenServer;
+        this.apikey = apikey;
+        this.userId = userId;
+        this.preferenceId = preferenceId;
+        this.capacity = capacity;
+        this.lowWaterMark = lowWaterMark;
+        this.mintExecutor = Executors.newFixedThreadPool(Math.min(MINT_THREADS, capacity), new NamedThreadFactory("urigen-prefetch-" + preferenceId));
+    }
+
+    /**
+     * Get the reservoir for a urigen preference, creating it if needed
+     * @param capacity the maximum number of URIs to mint ahead of them being taken
+     * @param lowWaterMark send more labels to the server when fewer than this are left
+     */
+    public static synchronized UrigenUriReservoir forPreference(String urigenServer, String apikey, UserBean user, PreferenceBean preference, int capacity, int lowWaterMark) {
+        // URIs are minted with the api key, so a reservoir can only be shared by callers with the same key
+        String key = urigenServer + "|" + preference.getPreferenceId() + "|" + user.getId() + "|" + apikey;
+        UrigenUriReservoir reservoir = reservoirs.get(key);
+        if (reservoir == null || reservoir.shutdown) {
+            reservoir = new UrigenUriReservoir(urigenServer, apikey, user.getId(), preference.getPreferenceId(), capacity, Math.max(1, Math.min(lowWaterMark, capacity)));
+            reservoirs.put(key, reservoir);
+        }
+        return reservoir;
+    }
+
+    /**
+     * Stop all the reservoirs
+     * @return the URIs that were minted but never used
+     */
+    public static synchronized List<String> shutdownAll() {
+        List<String> unused = new ArrayList<String>();
+        for (UrigenUriReservoir reservoir : reservoirs.values()) {
+            unused.addAll(reservoir.shutdown());
+        }
+        reservoirs.clear();
+        return unused;
+    }
+
+    /**
+     * Start minting URIs for these labels in the background
+     */
+    public synchronized void reserve(Collection<String> labels) {
+        if (shutdown) {
+            return;
+        }
+        for (String label : labels) {
+            if (!minting.containsKey(label)) {
+                queued.add(label);
+            }
+        }
+        topUp();
+    }
+
+    /**
+     * Take the URI minted for this label, waiting for it if it is being minted
+     * @return the URI, or null if the label wasn't reserved, hadn't been sent to the server yet or couldn't be minted,
+     * in which case the caller should mint it itself
+     */
+    public String poll(String label) {
+        Future<UrigenEntityBean> future;
+        synchronized (this) {
+            if (queued.remove(label)) {
+                return null;
+            }
+            future = minting.remove(label);
+            topUp();
+        }
+        if (future == null) {
+            return null;
+        }
+        try {
+            return future.get().getGeneratedUri();
+        } catch (ExecutionException e) {
+            logger.warn("Couldn't mint a URI for '" + label + "' on " + urigenServer + ": " + e.getCause().getMessage());
+            return null;
+        } catch (CancellationException e) {
+            return null;
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+            throw new IllegalStateException("Interrupted waiting for a URI for '" + label + "' from " + urigenServer, e);
+        }
+    }
+
+    /**
+     * @return the number of labels sent to the server that haven't been taken yet
+     */
+    public synchronized int size() {
+        return minting.size();
+    }
+
+    /**
+     * Stop minting, withdraw the labels that haven't been sent to the server and wait for the rest
+     * @return the URIs that were minted but never taken
+     */
+    public List<String> shutdown() {
+        List<Future<UrigenEntityBean>> outstanding;
+        synchronized (this) {
+            shutdown = true;
+            queued.clear();
+            outstanding = new ArrayList<Future<UrigenEntityBean>>(minting.values());
+            minting.clear();
+        }
+        mintExecutor.shutdown();
+        try {
+            if (!mintExecutor.awaitTermination(30, TimeUnit.SECONDS)) {
+                logger.warn("Gave up waiting for URIs to be minted on " + urigenServer + " (preference " + preferenceId + ")");
+            }
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+
+        List<String> unused = new ArrayList<String>();
+        for (Future<UrigenEntityBean> future : outstanding) {
+            if (future.isDone()) {
+                try {
+                    unused.add(future.get().getGeneratedUri());
+                } catch (Exception e) {
+                    // never minted, so nothing to reconcile
+                }
+            }
+        }
+        if (!unused.isEmpty()) {
+            logger.warn(unused.size() + " URIs minted on " + urigenServer + " (preference " + preferenceId + ") were never used: " + unused);
+        }
+        return unused;
+    }
+
+    // send queued labels to the server once fewer than the low water mark are outstanding
+    private void topUp() {
+        if (shutdown || minting.size() >= lowWaterMark) {
+            return;
+        }
+        Iterator<String> labels = queued.iterator();
+        while (labels.hasNext() && minting.size() < capacity) {
+            final String label = labels.next();
+            labels.remove();
+            try {
+                minting.put(label, mintExecutor.submit(new Callable<UrigenEntityBean>() {
+                    public UrigenEntityBean call() {
+                        return mint(label);
+                    }
+                }));
+            } catch (RejectedExecutionException e) {
+                return;
+            }
+        }
+    }
+
+    private UrigenEntityBean mint(String label) {
+        UrigenRequestBean requestBean = new UrigenRequestBean(
+                userId,
+                "http://urigen_random/" + Math.random(),
+                preferenceId,
+                label,
+                ""
+        );
+        UrigenEntityBean entity = new RestTemplate().postForObject(urigenServer + "/api/uris?restApiKey=" + apikey, requestBean, UrigenEntityBean.class);
+        if (entity == null || entity.getGeneratedUri() == null) {
+            throw new RestClientException("Urigen server " + urigenServer + " did not return a URI");
+        }
+        return entity;
+    }
+
+    private static class NamedThreadFactory implements ThreadFactory {
+        private final String name;
+        private int count = 0;
+
+        NamedThreadFactory(String name) {
+            this.name = name;
+        }
+
+        public synchronized Thread newThread(Runnable r) {
+            Thread thread = new Thread(r, name + "-" + (++count));
+            thread.setDaemon(true);
+            return thread;
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package uk.ac.ebi.spot.webulous.service;
+
+import org.semanticweb.owlapi.model.IRI;
+
+import java.util.*;
+
+/**
+ * @author Simon Jupp
+ * @date 18/10/2026
+ * Samples, Phenotypes and Ontologies Team, EMBL-EBI
+ *
+ * Remembers which IRI a free text value resolved to for a template, so that values which were minted as new
+ * entities in an earlier submission resolve to the same IRI again instead of being minted a second time.
+ * The table is preloaded before a conversion starts and anything added during the run can be collected at the end.
+ */
+public class EntityResolutionTable {
+
+    public static final String CLASS = "class";
+    public static final String INDIVIDUAL = "individual";
+
+    private final Map<String, IRI> resolved = new HashMap<String, IRI>();
+    private final List<Entry> added = new ArrayList<Entry>();
+
+    public static String normalise(String label) {
+        return label.trim().replaceAll("\\s+", " ").toLowerCase();
+    }
+
+    /**
+     * Add a resolution that is already known, e.g. one read back from a previous run
+     */
+    public void preload(String label, String type, IRI iri) {
+        resolved.put(key(label, type), iri);
+    }
+
+    /**
+     * @return the IRI this value resolved to previously, or null if it hasn't been seen before
+     */
+    public IRI lookup(String label, String type) {
+        return resolved.get(key(label, type));
+    }
+
+    /**
+     * Record a new resolution made during this run
+     */
+    public void add(String label, String type, IRI iri) {
+        if (resolved.put(key(label, type), iri) == null) {
+            added.add(new Entry(normalise(label), type, iri));
+        }
+    }
+
+    /**
+     * @return the resolutions added since the table was loaded
+     */
+    public List<Entry> getAdded() {
+        return Collections.unmodifiableList(added);
+    }
+
+    public int size() {
+        return resolved.size();
+    }
+
+    private String key(String label, String type) {
+        return type + "|" + normalise(label);
+    }
+
+    public static class Entry {
+        private final String label;
+        private final String type;
+        private final IRI iri;
+
+        public Entry(String label, String type, IRI iri) {
+            this.label = label;
+            this.type = type;
+            this.iri = iri;
+        }
+
+        public String getLabel() {
+            return label;
+        }
+
+        public String getType() {
+            return type;
+        }
+
+        public IRI getIri() {
+            return iri;
+        }
+    }
+}
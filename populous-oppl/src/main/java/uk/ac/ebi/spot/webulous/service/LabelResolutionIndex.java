@@ -0,0 +1,417 @@
+package uk.ac.ebi.spot.webulous.service;
+
+import org.semanticweb.owlapi.model.*;
+import org.semanticweb.owlapi.util.SimpleIRIShortFormProvider;
+import uk.ac.ebi.fgpt.LabelIndexFile;
+
+import java.util.*;
+
+/**
+ * @author Simon Jupp
+ * @date 18/10/2026
+ * Samples, Phenotypes and Ontologies Team, EMBL-EBI
+ *
+ * Resolves free text values to entities by their labels and synonyms. Names are normalised (case, underscores and
+ * runs of whitespace are ignored) and looked up exactly, labels taking precedence over synonyms. Failing that, a value
+ * in a column with a restricted set of values is matched to those values within a small edit distance, using a
+ * symmetric delete index: every allowed name is stored under each of the strings made by deleting up to maxDistance
+ * of its characters, so a value's own deletes find its close matches without comparing it to every name. Values in
+ * unrestricted columns are never matched approximately, as a new term would too easily be taken for a typo of an
+ * existing one. When more than one entity matches equally well the resolution is ambiguous.
+ *
+ * Imports too big to index on the heap can be looked up in a {@link LabelIndexFile} of their labels and synonyms
+ * instead, in which case only the names of the entities values can be matched to approximately are read into memory.
+ */
+public class LabelResolutionIndex {
+
+    public enum MatchType {
+        LABEL, SYNONYM, FUZZY, NONE
+    }
+
+    // shorter names are too easily a typo of something else
+    private static final int MIN_FUZZY_LENGTH = 5;
+
+    private final int maxDistance;
+
+    // only names of these entities can be matched approximately
+    private final Set<IRI> fuzzyIris;
+
+    private final Map<String, List<Name>> names = new HashMap<String, List<Name>>();
+    private final Map<String, Set<String>> deletes = new HashMap<String, Set<String>>();
+
+    // the names of the imports when they aren't on the heap, and the imports to find out what the entities are
+    private LabelIndexFile importNames;
+    private Collection<OWLOntology> imports = Collections.emptySet();
+
+    /**
+     * @param fuzzyIris the entities that values can be matched to approximately, i.e. every value allowed in a restricted column
+     */
+    public LabelResolutionIndex(int maxDistance, Set<IRI> fuzzyIris) {
+        this.maxDistance = Math.max(0, maxDistance);
+        this.fuzzyIris = fuzzyIris == null ? Collections.<IRI>emptySet() : fuzzyIris;
+    }
+
+    /**
+     * Index the classes and individuals of the ontologies by their label and synonym annotations. Entities without
+     * a label are indexed by the short form of their IRI.
+     */
+    public static LabelResolutionIndex build(Collection<OWLOntology> ontologies, IRI labelIri, Collection<IRI> synonymIris, int maxDistance, Set<IRI> fuzzyIris) {
+        LabelResolutionIndex index = new LabelResolutionIndex(maxDistance, fuzzyIris);
+        index.addOntologies(ontologies, labelIri, synonymIris);
+        return index;
+    }
+
+    /**
+     * Index the ontologies on the heap as {@link #build(Collection, IRI, Collection, int, Set)} does, apart from the
+     * imports, whose names are looked up in the file
+     *
+     * @param importNames an index of the imports' names, built with the label property followed by the synonym properties
+     */
+    public static LabelResolutionIndex build(Collection<OWLOntology> ontologies, Collection<OWLOntology> imports, LabelIndexFile importNames, IRI labelIri, Collection<IRI> synonymIris, int maxDistance, Set<IRI> fuzzyIris) {
+        LabelResolutionIndex index = new LabelResolutionIndex(maxDistance, fuzzyIris);
+        index.importNames = importNames;
+        index.imports = imports;
+
+        Set<OWLOntology> local = new HashSet<OWLOntology>(ontologies);
+        local.removeAll(imports);
+        index.addOntologies(local, labelIri, synonymIris);
+
+        // close matches are looked for in memory, so the allowed values need their names there
+        SimpleIRIShortFormProvider shortFormProvider = new SimpleIRIShortFormProvider();
+        for (IRI iri : index.fuzzyIris) {
+            EntityType<?> type = index.getImportType(iri);
+            if (type == null) {
+                continue;
+            }
+            boolean labelled = false;
+            for (OWLOntology ontology : imports) {
+                for (OWLAnnotationAssertionAxiom annotation : ontology.getAnnotationAssertionAxioms(iri)) {
+                    if (!(annotation.getValue() instanceof OWLLiteral)) {
+                        continue;
+                    }
+                    String value = ((OWLLiteral) annotation.getValue()).getLiteral();
+                    IRI property = annotation.getProperty().getIRI();
+                    if (property.equals(labelIri)) {
+                        index.add(iri, type, value, false);
+                        labelled = true;
+                    }
+                    else if (synonymIris.contains(property)) {
+                        index.add(iri, type, value, true);
+                    }
+                }
+            }
+            if (!labelled) {
+                index.add(iri, type, shortFormProvider.getShortForm(iri), false);
+            }
+        }
+        return index;
+    }
+
+    private void addOntologies(Collection<OWLOntology> ontologies, IRI labelIri, Collection<IRI> synonymIris) {
+        Map<IRI, EntityType<?>> types = new HashMap<IRI, EntityType<?>>();
+        for (OWLOntology ontology : ontologies) {
+            for (OWLClass owlClass : ontology.getClassesInSignature()) {
+                if (!owlClass.isBuiltIn()) {
+                    types.put(owlClass.getIRI(), EntityType.CLASS);
+                }
+            }
+            for (OWLNamedIndividual individual : ontology.getIndividualsInSignature()) {
+                if (!types.containsKey(individual.getIRI())) {
+                    types.put(individual.getIRI(), EntityType.NAMED_INDIVIDUAL);
+                }
+            }
+        }
+
+        Set<IRI> labelled = new HashSet<IRI>();
+        for (OWLOntology ontology : ontologies) {
+            for (OWLAnnotationAssertionAxiom annotation : ontology.getAxioms(AxiomType.ANNOTATION_ASSERTION)) {
+                if (!(annotation.getSubject() instanceof IRI) || !(annotation.getValue() instanceof OWLLiteral)) {
+                    continue;
+                }
+                IRI subject = (IRI) annotation.getSubject();
+                EntityType<?> type = types.get(subject);
+                if (type == null) {
+                    continue;
+                }
+                String value = ((OWLLiteral) annotation.getValue()).getLiteral();
+                IRI property = annotation.getProperty().getIRI();
+                if (property.equals(labelIri)) {
+                    add(subject, type, value, false);
+                    labelled.add(subject);
+                }
+                else if (synonymIris.contains(property)) {
+                    add(subject, type, value, true);
+                }
+            }
+        }
+
+        SimpleIRIShortFormProvider shortFormProvider = new SimpleIRIShortFormProvider();
+        for (Map.Entry<IRI, EntityType<?>> entity : types.entrySet()) {
+            if (!labelled.contains(entity.getKey())) {
+                add(entity.getKey(), entity.getValue(), shortFormProvider.getShortForm(entity.getKey()), false);
+            }
+        }
+    }
+
+    // the index file has every entity, but only classes and individuals are values
+    private EntityType<?> getImportType(IRI iri) {
+        for (OWLOntology ontology : imports) {
+            if (ontology.containsClassInSignature(iri)) {
+                return EntityType.CLASS;
+            }
+        }
+        for (OWLOntology ontology : imports) {
+            if (ontology.containsIndividualInSignature(iri)) {
+                return EntityType.NAMED_INDIVIDUAL;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * @param type the type of entity, or null if the name can refer to any type
+     */
+    public void add(IRI iri, EntityType<?> type, String name, boolean synonym) {
+        String normalised = normalise(name);
+        if (normalised.isEmpty()) {
+            return;
+        }
+        List<Name> entries = names.get(normalised);
+        if (entries == null) {
+            entries = new ArrayList<Name>(1);
+            names.put(normalised, entries);
+        }
+        // a name shared with an allowed entity may already have its deletes
+        boolean fuzzy = fuzzyIris.contains(iri) && !hasFuzzyName(entries);
+        entries.add(new Name(iri, type, synonym));
+        if (fuzzy && maxDistance > 0 && normalised.length() >= MIN_FUZZY_LENGTH) {
+            for (String delete : getDeletes(normalised)) {
+                Set<String> similar = deletes.get(delete);
+                if (similar == null) {
+                    similar = new HashSet<String>(2);
+                    deletes.put(delete, similar);
+                }
+                similar.add(normalised);
+            }
+        }
+    }
+
+    private boolean hasFuzzyName(List<Name> entries) {
+        for (Name name : entries) {
+            if (fuzzyIris.contains(name.iri)) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    /**
+     * @param type the type of entity wanted
+     * @param allowed the values allowed in the column, preferred when a name is shared and the only ones close matches
+     *                are looked for among; null for an unrestricted column, where only exact matches are made
+     */
+    public Resolution resolve(String value, EntityType<?> type, Set<IRI> allowed) {
+        String normalised = normalise(value);
+
+        List<Name> exact = getExactNames(value, normalised);
+        if (exact != null) {
+            Set<IRI> labels = new LinkedHashSet<IRI>();
+            Set<IRI> synonyms = new LinkedHashSet<IRI>();
+            for (Name name : exact) {
+                if (name.isType(type)) {
+                    (name.synonym ? synonyms : labels).add(name.iri);
+                }
+            }
+            if (!labels.isEmpty()) {
+                return new Resolution(MatchType.LABEL, narrow(labels, allowed), normalised);
+            }
+            if (!synonyms.isEmpty()) {
+                return new Resolution(MatchType.SYNONYM, narrow(synonyms, allowed), normalised);
+            }
+        }
+
+        if (allowed == null || maxDistance == 0 || normalised.length() < MIN_FUZZY_LENGTH) {
+            return new Resolution(MatchType.NONE, Collections.<IRI>emptySet(), null);
+        }
+
+        Set<String> candidates = new HashSet<String>();
+        for (String delete : getDeletes(normalised)) {
+            Set<String> similar = deletes.get(delete);
+            if (similar != null) {
+                candidates.addAll(similar);
+            }
+        }
+
+        int best = maxDistance + 1;
+        Set<IRI> matches = new LinkedHashSet<IRI>();
+        Set<String> matchedNames = new TreeSet<String>();
+        for (String candidate : candidates) {
+            int distance = distance(normalised, candidate, best);
+            if (distance > best || distance > maxDistance) {
+                continue;
+            }
+            Set<IRI> iris = new LinkedHashSet<IRI>();
+            for (Name name : names.get(candidate)) {
+                if (name.isType(type) && allowed.contains(name.iri)) {
+                    iris.add(name.iri);
+                }
+            }
+            if (iris.isEmpty()) {
+                continue;
+            }
+            if (distance < best) {
+                best = distance;
+                matches.clear();
+                matchedNames.clear();
+            }
+            matches.addAll(iris);
+            matchedNames.add(candidate);
+        }
+        if (matches.isEmpty()) {
+            return new Resolution(MatchType.NONE, matches, null);
+        }
+        return new Resolution(MatchType.FUZZY, matches, matchedNames.iterator().next());
+    }
+
+    private List<Name> getExactNames(String value, String normalised) {
+        List<Name> exact = names.get(normalised);
+        if (importNames == null || normalised.isEmpty()) {
+            return exact;
+        }
+        List<Name> all = exact == null ? new ArrayList<Name>() : new ArrayList<Name>(exact);
+        // the file's names keep their underscores, so the value is looked up as it was written as well
+        Set<String> lookups = new LinkedHashSet<String>();
+        lookups.add(normalised);
+        lookups.add(LabelIndexFile.normalise(value));
+        for (String lookup : lookups) {
+            for (LabelIndexFile.Name found : importNames.findNames(lookup)) {
+                IRI iri = IRI.create(found.getIri());
+                EntityType<?> type = getImportType(iri);
+                if (type != null) {
+                    // the first label property is the label, the rest are synonyms
+                    all.add(new Name(iri, type, found.getPriority() > 0));
+                }
+            }
+        }
+        return all;
+    }
+
+    // when a name is shared, prefer the entities the value was expected to be one of
+    private Set<IRI> narrow(Set<IRI> iris, Set<IRI> allowed) {
+        if (iris.size() > 1 && allowed != null) {
+            Set<IRI> narrowed = new LinkedHashSet<IRI>(iris);
+            narrowed.retainAll(allowed);
+            if (!narrowed.isEmpty()) {
+                return narrowed;
+            }
+        }
+        return iris;
+    }
+
+    public static String normalise(String name) {
+        return name == null ? "" : EntityResolutionTable.normalise(name.replace('_', ' '));
+    }
+
+    private Set<String> getDeletes(String name) {
+        Set<String> results = new HashSet<String>();
+        results.add(name);
+        Set<String> current = Collections.singleton(name);
+        for (int d = 0; d < maxDistance; d++) {
+            Set<String> next = new HashSet<String>();
+            for (String s : current) {
+                for (int x = 0; x < s.length(); x++) {
+                    String delete = s.substring(0, x) + s.substring(x + 1);
+                    if (results.add(delete)) {
+                        next.add(delete);
+                    }
+                }
+            }
+            current = next;
+        }
+        return results;
+    }
+
+    // optimal string alignment distance, giving up once it's more than limit
+    private static int distance(String a, String b, int limit) {
+        if (Math.abs(a.length() - b.length()) > limit) {
+            return limit + 1;
+        }
+        int[][] d = new int[a.length() + 1][b.length() + 1];
+        for (int i = 0; i <= a.length(); i++) {
+            d[i][0] = i;
+        }
+        for (int j = 0; j <= b.length(); j++) {
+            d[0][j] = j;
+        }
+        for (int i = 1; i <= a.length(); i++) {
+            int rowMin = Integer.MAX_VALUE;
+            for (int j = 1; j <= b.length(); j++) {
+                int cost = a.charAt(i - 1) == b.charAt(j - 1) ? 0 : 1;
+                d[i][j] = Math.min(Math.min(d[i - 1][j] + 1, d[i][j - 1] + 1), d[i - 1][j - 1] + cost);
+                if (i > 1 && j > 1 && a.charAt(i - 1) == b.charAt(j - 2) && a.charAt(i - 2) == b.charAt(j - 1)) {
+                    d[i][j] = Math.min(d[i][j], d[i - 2][j - 2] + 1);
+                }
+                rowMin = Math.min(rowMin, d[i][j]);
+            }
+            if (rowMin > limit) {
+                return limit + 1;
+            }
+        }
+        return d[a.length()][b.length()];
+    }
+
+    private static class Name {
+        private final IRI iri;
+        private final EntityType<?> type;
+        private final boolean synonym;
+
+        Name(IRI iri, EntityType<?> type, boolean synonym) {
+            this.iri = iri;
+            this.type = type;
+            this.synonym = synonym;
+        }
+
+        boolean isType(EntityType<?> wanted) {
+            return type == null || wanted == null || type.equals(wanted);
+        }
+    }
+
+    public static class Resolution {
+        private final MatchType matchType;
+        private final Set<IRI> iris;
+        private final String matchedName;
+
+        Resolution(MatchType matchType, Set<IRI> iris, String matchedName) {
+            this.matchType = matchType;
+            this.iris = iris;
+            this.matchedName = matchedName;
+        }
+
+        public MatchType getMatchType() {
+            return matchType;
+        }
+
+        public Set<IRI> getIris() {
+            return iris;
+        }
+
+        /**
+         * @return the normalised name that matched
+         */
+        public String getMatchedName() {
+            return matchedName;
+        }
+
+        public boolean isResolved() {
+            return iris.size() == 1;
+        }
+
+        public boolean isAmbiguous() {
+            return iris.size() > 1;
+        }
+
+        public IRI getIri() {
+            return isResolved() ? iris.iterator().next() : null;
+        }
+    }
+}
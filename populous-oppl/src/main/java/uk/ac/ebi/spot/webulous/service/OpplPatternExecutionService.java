@@ -4,22 +4,23 @@ import org.apache.commons.lang3.StringUtils;
 import org.coode.oppl.Variable;
 import org.coode.oppl.exceptions.QuickFailRuntimeExceptionHandler;
 import org.coode.oppl.variabletypes.*;
-import org.coode.parsers.BidirectionalShortFormProviderAdapter;
 import org.coode.parsers.common.QuickFailErrorListener;
 import org.coode.patterns.*;
 import org.semanticweb.owlapi.apibinding.OWLManager;
 import org.semanticweb.owlapi.model.*;
-import org.semanticweb.owlapi.util.AnnotationValueShortFormProvider;
-import org.semanticweb.owlapi.util.ShortFormProvider;
 import org.semanticweb.owlapi.vocab.OWLRDFVocabulary;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
+import uk.ac.ebi.fgpt.ConcurrentImportsLoader;
+import uk.ac.ebi.fgpt.ImportCache;
+import uk.ac.ebi.fgpt.LabelIndexFile;
 import uk.ac.ebi.spot.webulous.entity.CustomOWLEntityFactory;
 import uk.ac.ebi.spot.webulous.entity.PseudoRandomAutoIDGenerator;
 import uk.ac.ebi.spot.webulous.entity.SimpleEntityCreation;
 import uk.ac.ebi.spot.webulous.exception.OWLEntityCreationException;
 import uk.ac.ebi.spot.webulous.model.*;
 
+import java.io.IOException;
 import java.net.URI;
 import java.text.SimpleDateFormat;
 import java.util.*;
@@ -54,14 +55,24 @@ public class OpplPatternExecutionService {
     private OPPLPatternParser parser;
 
     private HashMap<Integer, Map<String, IRI>> shortFromMapper;
-    private BidirectionalShortFormProviderAdapter shortFormProvider;
+    private HashMap<Integer, Set<IRI>> columnIris;
+    private LabelResolutionIndex labelIndex;
 
-    private List<OWLAnnotationProperty> props;
+    // values are also matched against these annotations, and failing that against names this many edits away
+    private Collection<IRI> synonymProperties = Arrays.asList(
+            IRI.create("http://www.geneontology.org/formats/oboInOwl#hasExactSynonym"),
+            IRI.create("http://www.w3.org/2004/02/skos/core#altLabel"));
+    private int maxEditDistance = 1;
+
+    private List<String> errorCollector;
+    private Set<String> ambiguousValues = new HashSet<String>();
 
     private OWLEntityFactory owlEntityFactory;
 
     private URI defaultBaseUri;
 
+    private EntityResolutionTable entityResolutionTable = new EntityResolutionTable();
+
     public OWLOntology executeOPPLPatterns(String ontologyUri, String[][] data, PopulousTemplate populousTemplate, List<String> errorCollector) throws OWLOntologyCreationException {
         SimpleEntityCreation entityCreation = new SimpleEntityCreation();
         entityCreation.setFragmentAutoGenerated(true);
@@ -81,10 +92,13 @@ public class OpplPatternExecutionService {
         logger.debug("Starting Pattern Executor");
         this.dataCollection = data;
         this.populousTemplate = populousTemplate;
+        this.errorCollector = errorCollector;
 
+        List<IRI> importIris = new ArrayList<IRI>();
         for (String iri: populousTemplate.getOntologyImports())  {
-            getOntologyManager().loadOntology(IRI.create(iri));
+            importIris.add(IRI.create(iri));
         }
+        new ConcurrentImportsLoader().load(getOntologyManager(), importIris);
 
         //set up an OWLEntityFactory
         this.owlEntityFactory = owlEntityFactory;
@@ -95,14 +109,19 @@ public class OpplPatternExecutionService {
         this.pf = new ParserFactory(getActiveOntology(ontologyUri), getOntologyManager());
         this.parser = pf.build(new QuickFailErrorListener());
 
-        // set up short form provider
-        IRI iri = OWLRDFVocabulary.RDFS_LABEL.getIRI();
-        OWLAnnotationProperty prop = getOntologyManager().getOWLDataFactory().getOWLAnnotationProperty(iri);
-        props = new ArrayList<OWLAnnotationProperty>();
-        props.add(prop);
-        ShortFormProvider provider = new AnnotationValueShortFormProvider(props, new HashMap<OWLAnnotationProperty, List<String>>(), getOntologyManager());
-        shortFormProvider = new BidirectionalShortFormProviderAdapter(getOntologyManager(), getOntologyManager().getOntologies(), provider);
         shortFromMapper = createShortFormMapper(populousTemplate.getDataRestrictions());
+        columnIris = new HashMap<Integer, Set<IRI>>();
+        Set<IRI> allowedIris = new HashSet<IRI>();
+        for (Map.Entry<Integer, Map<String, IRI>> column : shortFromMapper.entrySet()) {
+            columnIris.put(column.getKey(), new HashSet<IRI>(column.getValue().values()));
+            allowedIris.addAll(column.getValue().values());
+        }
+
+        // index the labels and synonyms of everything in the imports for resolving values, close matches are only
+        // made to the values allowed in restricted columns
+        long start = System.currentTimeMillis();
+        labelIndex = buildLabelIndex(getActiveOntology(ontologyUri), allowedIris);
+        logger.debug("Built label resolution index in " + (System.currentTimeMillis() - start) + "ms");
 
         QuickFailRuntimeExceptionHandler handler = new QuickFailRuntimeExceptionHandler();
 
@@ -123,6 +142,7 @@ public class OpplPatternExecutionService {
 
                     //create a map of the input variable names, eg "?disease" and the actual variable
                     Map<String, Variable> opplVariableMap = createOPPLVariableMap(patternModel);
+                    createNewEntities(opplVariableMap);
 
                     int done = 0;
                     logger.debug("About to read " + dataCollection.length + " rows");
@@ -169,6 +189,71 @@ public class OpplPatternExecutionService {
     }
 
 
+    /**
+     * Values that resolve to an IRI in this table are reused rather than looked up in the imports or minted again.
+     * New entities minted during the run are added to the table.
+     */
+    public void setEntityResolutionTable(EntityResolutionTable entityResolutionTable) {
+        this.entityResolutionTable = entityResolutionTable;
+    }
+
+    public EntityResolutionTable getEntityResolutionTable() {
+        return entityResolutionTable;
+    }
+
+    /**
+     * Annotation properties, besides rdfs:label, whose values a cell can be matched against
+     */
+    public void setSynonymProperties(Collection<IRI> synonymProperties) {
+        this.synonymProperties = synonymProperties;
+    }
+
+    /**
+     * How many edits away from a label or synonym a cell in a restricted column can be and still be matched to one of
+     * the column's values, 0 to only match exactly. Cells in unrestricted columns are only ever matched exactly.
+     */
+    public void setMaxEditDistance(int maxEditDistance) {
+        this.maxEditDistance = maxEditDistance;
+    }
+
+    // imports big enough for the import cache to keep an index of their labels are looked up in it rather than on the heap
+    private LabelResolutionIndex buildLabelIndex(OWLOntology ontology, Set<IRI> allowedIris) {
+        Set<OWLOntology> imports = new HashSet<OWLOntology>(getOntologyManager().getOntologies());
+        imports.remove(ontology);
+        List<IRI> labelIris = new ArrayList<IRI>();
+        labelIris.add(OWLRDFVocabulary.RDFS_LABEL.getIRI());
+        labelIris.addAll(synonymProperties);
+
+        LabelIndexFile importNames = getImportLabelIndex(imports, labelIris);
+        if (importNames == null) {
+            return LabelResolutionIndex.build(getOntologyManager().getOntologies(), OWLRDFVocabulary.RDFS_LABEL.getIRI(), synonymProperties, maxEditDistance, allowedIris);
+        }
+        logger.debug("Looking up the labels of the imports in " + importNames.getFile());
+        return LabelResolutionIndex.build(getOntologyManager().getOntologies(), imports, importNames, OWLRDFVocabulary.RDFS_LABEL.getIRI(), synonymProperties, maxEditDistance, allowedIris);
+    }
+
+    private LabelIndexFile getImportLabelIndex(Set<OWLOntology> imports, List<IRI> labelIris) {
+        ImportCache importCache = ImportCache.getDefault();
+        if (importCache == null || importCache.getLabelIndexThreshold() <= 0 || imports.isEmpty()) {
+            return null;
+        }
+        int annotations = 0;
+        Set<IRI> documentIris = new HashSet<IRI>();
+        for (OWLOntology ontology : imports) {
+            annotations += ontology.getAxiomCount(AxiomType.ANNOTATION_ASSERTION);
+            documentIris.add(getOntologyManager().getOntologyDocumentIRI(ontology));
+        }
+        if (annotations < importCache.getLabelIndexThreshold()) {
+            return null;
+        }
+        try {
+            return importCache.getLabelIndex(documentIris, labelIris);
+        } catch (IOException e) {
+            logger.warn("Couldn't build a label index, keeping labels in memory: " + e.getMessage());
+            return null;
+        }
+    }
+
     public OWLOntologyManager getOntologyManager() {
         if (ontologyManager == null) {
             this.ontologyManager = OWLManager.createOWLOntologyManager();
@@ -227,8 +312,27 @@ public class OpplPatternExecutionService {
     }
 
 
+    // check the row has every column and a value in each required one, returns why it doesn't or null if it's ok
+    private String validateDataRow(String[] row) {
+        for (PopulousDataRestriction populousDataRestriction : populousTemplate.getDataRestrictions()) {
+            int columnIndex = populousDataRestriction.getColumnIndex() - 1;
+            if (columnIndex >= row.length) {
+                return "Failed to process row as the number of restricted column index " + columnIndex+ " is greater than the number of columns in the data " + row.length;
+            }
+            if (StringUtils.isBlank(row[columnIndex]) && populousDataRestriction.isRequired()) {
+                return "Missing value for " + populousDataRestriction.getRestrictionName()+ ", which is a required field";
+            }
+        }
+        return null;
+    }
+
     private InstantiatedPatternModel processDataRow(String[] row, Map<String, Variable> opplVariableMap, QuickFailRuntimeExceptionHandler handler, PatternModel patternModel) {
 
+        String invalid = validateDataRow(row);
+        if (invalid != null) {
+            throw new RuntimeException(invalid);
+        }
+
         InstantiatedPatternModel ipm = pf.getPatternFactory().createInstantiatedPatternModel(patternModel, handler);
 
         for (PopulousDataRestriction populousDataRestriction : populousTemplate.getDataRestrictions()) {
@@ -236,48 +340,40 @@ public class OpplPatternExecutionService {
             int columnIndex = populousDataRestriction.getColumnIndex() - 1;
 
             logger.debug("reading col " + columnIndex);
+            String cellValue = row[columnIndex];
+            logger.debug("Cell value: "  + cellValue);
             // see if the row has a value
-            if (columnIndex < row.length) {
-                String cellValue = row[columnIndex];
-                logger.debug("Cell value: "  + cellValue);
-                if (!StringUtils.isBlank(cellValue)) {
-                    String variable = populousDataRestriction.getVariableName();
-
-                    //check that the variable matches an OPPL pattern input variable
-                    // if not we just ignore this column
-                    if (opplVariableMap.keySet().contains(variable)) {
-                        Variable v = opplVariableMap.get(variable);
-                        VariableType type = v.getType();
-
-                        //determine the type of the input variable: OWLClass, OWLIndividual or constant, then instantiate as appropriate
-                        if (type.accept(variableVisitor).equals(5)) {
-                            logger.debug("instantiating variable as constant:" + opplVariableMap.get(variable).getName() + " to " + cellValue);
-                            String [] values = cellValue.split("\\s*\\|\\|\\s*");
-                            for (String s : values) {
-                                s = s.trim();
-                                ipm.instantiate(v, ontologyManager.getOWLDataFactory().getOWLLiteral(s));
-                            }
+            if (!StringUtils.isBlank(cellValue)) {
+                String variable = populousDataRestriction.getVariableName();
+
+                //check that the variable matches an OPPL pattern input variable
+                // if not we just ignore this column
+                if (opplVariableMap.keySet().contains(variable)) {
+                    Variable v = opplVariableMap.get(variable);
+                    VariableType type = v.getType();
+
+                    //determine the type of the input variable: OWLClass, OWLIndividual or constant, then instantiate as appropriate
+                    if (type.accept(variableVisitor).equals(5)) {
+                        logger.debug("instantiating variable as constant:" + opplVariableMap.get(variable).getName() + " to " + cellValue);
+                        String [] values = cellValue.split("\\s*\\|\\|\\s*");
+                        for (String s : values) {
+                            s = s.trim();
+                            ipm.instantiate(v, ontologyManager.getOWLDataFactory().getOWLLiteral(s));
                         }
-                        else if (type.accept(variableVisitor).equals(1)) {
-                            for (OWLEntity entity : createOWLEntitiesFromValue(cellValue, 1, populousDataRestriction)) {
-                                logger.debug("instantiating variable as class:" + opplVariableMap.get(variable).getName() + " to " + entity.getIRI());
-                                ipm.instantiate(opplVariableMap.get(variable), entity);
-                            }
+                    }
+                    else if (type.accept(variableVisitor).equals(1)) {
+                        for (OWLEntity entity : createOWLEntitiesFromValue(cellValue, 1, populousDataRestriction)) {
+                            logger.debug("instantiating variable as class:" + opplVariableMap.get(variable).getName() + " to " + entity.getIRI());
+                            ipm.instantiate(opplVariableMap.get(variable), entity);
                         }
-                        else if (type.accept(variableVisitor).equals(4)) {
-                            for (OWLEntity entity : createOWLEntitiesFromValue(cellValue, 4, populousDataRestriction)) {
-                                logger.debug("instantiating variable as class:" + opplVariableMap.get(variable).getName() + " to " + entity.getIRI());
-                                ipm.instantiate(opplVariableMap.get(variable), entity);
-                            }
+                    }
+                    else if (type.accept(variableVisitor).equals(4)) {
+                        for (OWLEntity entity : createOWLEntitiesFromValue(cellValue, 4, populousDataRestriction)) {
+                            logger.debug("instantiating variable as class:" + opplVariableMap.get(variable).getName() + " to " + entity.getIRI());
+                            ipm.instantiate(opplVariableMap.get(variable), entity);
                         }
                     }
                 }
-                else if (populousDataRestriction.isRequired()) {
-                    throw new RuntimeException("Missing value for " + populousDataRestriction.getRestrictionName()+ ", which is a required field");
-                }
-            }
-            else {
-                throw new RuntimeException("Failed to process row as the number of restricted column index " + columnIndex+ " is greater than the number of columns in the data " + row.length);
             }
         }
         return ipm;
@@ -310,6 +406,23 @@ public class OpplPatternExecutionService {
     //get the OWLEntities for data value shortForm, looking first in the list of valid ontology terms for this column, then in all ontologies, then if not found, create a new OWLEntity
     private OWLEntity getEntityForValue(String shortForm, Integer type, PopulousDataRestriction populousDataRestriction) {
 
+        OWLEntity entity = findEntityForValue(shortForm, type, populousDataRestriction);
+        if (entity != null) {
+            return entity;
+        }
+
+        // a value that could be one of several entities has been reported, don't guess or mint a new one
+        if (ambiguousValues.contains(getAmbiguityKey(shortForm, type, populousDataRestriction))) {
+            return null;
+        }
+
+        // finally create a new entity
+        return createNewEntity(shortForm, type, populousDataRestriction);
+    }
+
+    // look up an existing OWLEntity for the value, returns null if there isn't one
+    private OWLEntity findEntityForValue(String shortForm, Integer type, PopulousDataRestriction populousDataRestriction) {
+
         String cleaned = shortForm.trim();
         cleaned = cleaned.toLowerCase();
         int columnIndex = (populousDataRestriction.getColumnIndex() - 1);
@@ -323,20 +436,149 @@ public class OpplPatternExecutionService {
             }
         }
 
-//        // then look in the all the ontologies
-        for (String s : shortFormProvider.getShortForms()) {
-            if (s.toLowerCase().equals(shortForm.toLowerCase())) {
-                logger.debug("Entity found:" + s.toLowerCase());
-                return shortFormProvider.getEntity(s);
+        // then check if we've resolved this value in a previous run
+        IRI resolvedIri = entityResolutionTable.lookup(shortForm, getResolutionType(type));
+        if (resolvedIri != null) {
+            return getResolvedEntity(resolvedIri, shortForm, type);
+        }
+
+        // then look for a label or synonym in all the ontologies, or failing that, in a restricted column, a close match among its allowed values
+        Set<IRI> allowed = columnIris.get(columnIndex);
+        LabelResolutionIndex.Resolution resolution = labelIndex.resolve(shortForm, getEntityType(type),
+                allowed == null || allowed.isEmpty() ? null : allowed);
+        if (resolution.isResolved()) {
+            if (resolution.getMatchType() != LabelResolutionIndex.MatchType.LABEL) {
+                logger.info("Resolved '" + shortForm + "' to " + resolution.getIri() + " by its " + resolution.getMatchType().name().toLowerCase() + " '" + resolution.getMatchedName() + "'");
+            }
+            logger.debug("Entity found:" + resolution.getIri());
+            return getOWLEntity(resolution.getIri(), type);
+        }
+        if (resolution.isAmbiguous()) {
+            reportAmbiguous(shortForm, type, populousDataRestriction, resolution);
+        }
+        return null;
+    }
+
+    private void reportAmbiguous(String shortForm, Integer type, PopulousDataRestriction populousDataRestriction, LabelResolutionIndex.Resolution resolution) {
+        if (ambiguousValues.add(getAmbiguityKey(shortForm, type, populousDataRestriction))) {
+            String message = "Value '" + shortForm + "' in column " + populousDataRestriction.getRestrictionName()
+                    + " matches " + resolution.getIris().size() + " terms by " + resolution.getMatchType().name().toLowerCase()
+                    + " '" + resolution.getMatchedName() + "': " + resolution.getIris() + ", please use one of their labels";
+            logger.warn(message);
+            if (errorCollector != null) {
+                errorCollector.add(message);
             }
-            else if (s.toLowerCase().equals(shortForm.toLowerCase().replaceAll(" ", "_")) ) {
-                logger.debug("Entity found:" + s.toLowerCase());
-                return shortFormProvider.getEntity(s);
+        }
+    }
+
+    private String getAmbiguityKey(String shortForm, Integer type, PopulousDataRestriction populousDataRestriction) {
+        return populousDataRestriction.getColumnIndex() + "|" + type + "|" + LabelResolutionIndex.normalise(shortForm);
+    }
+
+    private EntityType<?> getEntityType(Integer type) {
+        return type == 4 ? EntityType.NAMED_INDIVIDUAL : EntityType.CLASS;
+    }
+
+    private OWLEntity getOWLEntity(IRI iri, Integer type) {
+        OWLDataFactory df = ontologyManager.getOWLDataFactory();
+        return type == 4 ? df.getOWLNamedIndividual(iri) : df.getOWLClass(iri);
+    }
+
+    private String getResolutionType(Integer type) {
+        return type == 4 ? EntityResolutionTable.INDIVIDUAL : EntityResolutionTable.CLASS;
+    }
+
+    // get an entity that was resolved in a previous run, declaring it in the active ontology if none of the ontologies know about it
+    private OWLEntity getResolvedEntity(IRI iri, String shortForm, Integer type) {
+        OWLDataFactory df = ontologyManager.getOWLDataFactory();
+        OWLEntity entity = type == 4 ? df.getOWLNamedIndividual(iri) : df.getOWLClass(iri);
+
+        for (OWLOntology ontology : ontologyManager.getOntologies()) {
+            if (ontology.containsEntityInSignature(entity)) {
+                return entity;
             }
         }
 
-        // finally create a new entity
-        return createNewEntity(shortForm, type, populousDataRestriction);
+        List<OWLOntologyChange> changes = new ArrayList<OWLOntologyChange>();
+        changes.add(new AddAxiom(activeOntology, df.getOWLDeclarationAxiom(entity)));
+        changes.add(new AddAxiom(activeOntology, df.getOWLAnnotationAssertionAxiom(iri, df.getOWLAnnotation(df.getRDFSLabel(), df.getOWLLiteral(shortForm)))));
+        ontologyManager.applyChanges(changes);
+        labelIndex.add(iri, getEntityType(type), shortForm, false);
+        return entity;
+    }
+
+    // find all the values in the data that will need a new class or individual, and create them together
+    // so that any IDs are reserved in one go and the changes are applied to the ontology at once.
+    // Rows that will fail validation are left out, so they don't use up IDs for terms that are never written
+    private void createNewEntities(Map<String, Variable> opplVariableMap) {
+
+        Set<String> newClasses = new LinkedHashSet<String>();
+        Set<String> newIndividuals = new LinkedHashSet<String>();
+        Set<String> seen = new HashSet<String>();
+
+        List<String[]> validRows = new ArrayList<String[]>();
+        for (String[] row : dataCollection) {
+            if (validateDataRow(row) == null) {
+                validRows.add(row);
+            }
+        }
+
+        for (PopulousDataRestriction populousDataRestriction : populousTemplate.getDataRestrictions()) {
+            Variable v = opplVariableMap.get(populousDataRestriction.getVariableName());
+            if (v == null) {
+                continue;
+            }
+            Object type = v.getType().accept(variableVisitor);
+            if (!type.equals(1) && !type.equals(4)) {
+                continue;
+            }
+
+            int columnIndex = populousDataRestriction.getColumnIndex() - 1;
+            for (String[] row : validRows) {
+                if (StringUtils.isBlank(row[columnIndex])) {
+                    continue;
+                }
+                for (String s : row[columnIndex].split("\\s*\\|\\|\\s*")) {
+                    s = s.trim();
+                    if (s.isEmpty() || !seen.add(type + "|" + s.toLowerCase())) {
+                        continue;
+                    }
+                    if (findEntityForValue(s, (Integer) type, populousDataRestriction) == null
+                            && !ambiguousValues.contains(getAmbiguityKey(s, (Integer) type, populousDataRestriction))) {
+                        if (type.equals(1)) {
+                            newClasses.add(s);
+                        }
+                        else {
+                            newIndividuals.add(s);
+                        }
+                    }
+                }
+            }
+        }
+
+        try {
+            if (!newClasses.isEmpty()) {
+                logger.info("creating " + newClasses.size() + " new owl classes with base URI " + defaultBaseUri.toString());
+                OWLEntitiesCreationSet<OWLClass> ecs = owlEntityFactory.createOWLClasses(newClasses, defaultBaseUri);
+                ontologyManager.applyChanges(ecs.getOntologyChanges());
+                for (Map.Entry<String, OWLClass> created : ecs.getOWLEntities().entrySet()) {
+                    labelIndex.add(created.getValue().getIRI(), EntityType.CLASS, created.getKey(), false);
+                    entityResolutionTable.add(created.getKey(), EntityResolutionTable.CLASS, created.getValue().getIRI());
+                }
+            }
+            if (!newIndividuals.isEmpty()) {
+                logger.info("creating " + newIndividuals.size() + " new individuals with base URI " + defaultBaseUri.toString());
+                OWLEntitiesCreationSet<OWLNamedIndividual> ecs = owlEntityFactory.createOWLIndividuals(newIndividuals, defaultBaseUri);
+                ontologyManager.applyChanges(ecs.getOntologyChanges());
+                for (Map.Entry<String, OWLNamedIndividual> created : ecs.getOWLEntities().entrySet()) {
+                    labelIndex.add(created.getValue().getIRI(), EntityType.NAMED_INDIVIDUAL, created.getKey(), false);
+                    entityResolutionTable.add(created.getKey(), EntityResolutionTable.INDIVIDUAL, created.getValue().getIRI());
+                }
+            }
+        } catch (OWLEntityCreationException e) {
+            // anything that is still missing gets created row by row
+            logger.error("Failed to create new entities in bulk: " + e.getMessage(), e);
+        }
     }
 
 
@@ -356,11 +598,11 @@ public class OpplPatternExecutionService {
                 ecs = owlEntityFactory.createOWLClass(shortForm, defaultBaseUri);
                 if (ecs.getOntologyChanges() != null) {
                     ontologyManager.applyChanges(ecs.getOntologyChanges());
-                    shortFormProvider.add(ecs.getOWLEntity());
+                    labelIndex.add(ecs.getOWLEntity().getIRI(), EntityType.CLASS, shortForm, false);
                     entity = ecs.getOWLEntity();
                 }
             } catch (OWLEntityCreationException e) {
-                e.printStackTrace();
+                logger.error("Failed to create class for " + shortForm + ": " + e.getMessage(), e);
             }
         }
         else if (type == 4) {
@@ -370,13 +612,18 @@ public class OpplPatternExecutionService {
                 if (ecs.getOntologyChanges() != null) {
                     ontologyManager.applyChanges(ecs.getOntologyChanges());
                 }
-                shortFormProvider.add(ecs.getOWLEntity());
+                labelIndex.add(ecs.getOWLEntity().getIRI(), EntityType.NAMED_INDIVIDUAL, shortForm, false);
                 entity = ecs.getOWLEntity();
             } catch (OWLEntityCreationException e) {
-                e.printStackTrace();
+                logger.error("Failed to create individual for " + shortForm + ": " + e.getMessage(), e);
             }
         }
+        if (entity == null) {
+            // fails the row, rather than instantiating it without this value
+            throw new RuntimeException("Failed to create a new term for " + shortForm + " in column " + populousDataRestriction.getRestrictionName());
+        }
         logger.info("new term created with URI " + entity.getIRI());
+        entityResolutionTable.add(shortForm, getResolutionType(type), entity.getIRI());
 
         return entity;
     }
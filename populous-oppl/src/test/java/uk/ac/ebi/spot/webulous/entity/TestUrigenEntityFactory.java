@@ -0,0 +1,182 @@
+package uk.ac.ebi.spot.webulous.entity;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+import org.semanticweb.owlapi.apibinding.OWLManager;
+import org.semanticweb.owlapi.model.*;
+import uk.ac.ebi.spot.webulous.entity.urigen.UrigenUriReservoir;
+import uk.ac.ebi.spot.webulous.exception.OWLEntityCreationException;
+import uk.ac.ebi.spot.webulous.model.OWLEntitiesCreationSet;
+
+import java.io.*;
+import java.net.InetSocketAddress;
+import java.util.*;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author Simon Jupp
+ * @date 18/10/2026
+ * Samples, Phenotypes and Ontologies Team, EMBL-EBI
+ */
+public class TestUrigenEntityFactory {
+
+    private static final String ONTOLOGY = "http://www.ebi.ac.uk/webulous/test.owl";
+    private static final Pattern LABEL = Pattern.compile("\"label\"\\s*:\\s*\"([^\"]*)\"");
+
+    private HttpServer server;
+
+    // the label of every URI the test server has minted, in the order they were asked for
+    private final List<String> minted = Collections.synchronizedList(new ArrayList<String>());
+    private final Set<String> failing = Collections.synchronizedSet(new HashSet<String>());
+
+    private OWLOntologyManager manager;
+    private OWLOntology ontology;
+
+    @Before
+    public void setUp() throws Exception {
+        server = HttpServer.create(new InetSocketAddress("localhost", 0), 0);
+        server.createContext("/api/preferences", new JsonHandler() {
+            String respond(HttpExchange exchange, String body) {
+                return "[{\"preferenceId\":7,\"ontologyUri\":\"" + ONTOLOGY + "\"}]";
+            }
+        });
+        server.createContext("/api/users/query", new JsonHandler() {
+            String respond(HttpExchange exchange, String body) {
+                return "{\"id\":3}";
+            }
+        });
+        server.createContext("/api/uris", new JsonHandler() {
+            String respond(HttpExchange exchange, String body) {
+                Matcher matcher = LABEL.matcher(body);
+                assertTrue(matcher.find());
+                String label = matcher.group(1);
+                if (failing.contains(label)) {
+                    return null;
+                }
+                minted.add(label);
+                return "{\"id\":" + minted.size() + ",\"generatedUri\":\"http://www.ebi.ac.uk/webulous/TEST_" + label + "\"}";
+            }
+        });
+        server.start();
+
+        manager = OWLManager.createOWLOntologyManager();
+        ontology = manager.createOntology(IRI.create(ONTOLOGY));
+    }
+
+    @After
+    public void tearDown() {
+        UrigenUriReservoir.shutdownAll();
+        server.stop(0);
+    }
+
+    @Test
+    public void testCreatesEntitiesInBulk() throws Exception {
+        OWLEntitiesCreationSet<OWLClass> created = createFactory().createOWLClasses(Arrays.asList("a", "b", "a"), null);
+
+        assertEquals(Arrays.asList("a", "b"), new ArrayList<String>(created.getOWLEntities().keySet()));
+        assertEquals(IRI.create("http://www.ebi.ac.uk/webulous/TEST_a"), created.getOWLEntities().get("a").getIRI());
+        assertEquals(Arrays.asList("a", "b"), minted);
+    }
+
+    @Test
+    public void testPrefetchMintsEachLabelOnceUnderItsOwnLabel() throws Exception {
+        UrigenEntityFactory factory = createFactory();
+        factory.enablePrefetch(2, 1);
+
+        List<String> names = Arrays.asList("a", "b", "c", "d", "e");
+        OWLEntitiesCreationSet<OWLClass> created = factory.createOWLClasses(names, null);
+
+        assertEquals(names, new ArrayList<String>(created.getOWLEntities().keySet()));
+        for (String name : names) {
+            assertEquals(IRI.create("http://www.ebi.ac.uk/webulous/TEST_" + name), created.getOWLEntities().get(name).getIRI());
+        }
+        // nothing is minted under a placeholder, or twice
+        List<String> labels = new ArrayList<String>(minted);
+        Collections.sort(labels);
+        assertEquals(names, labels);
+        assertTrue(UrigenUriReservoir.shutdownAll().isEmpty());
+    }
+
+    @Test
+    public void testPrefetchOnlyMintsWhatIsAskedFor() throws Exception {
+        UrigenEntityFactory factory = createFactory();
+        factory.enablePrefetch(10, 5);
+
+        assertEquals(IRI.create("http://www.ebi.ac.uk/webulous/TEST_single"), factory.createOWLClass("single", null).getOWLEntity().getIRI());
+        assertEquals(Collections.singletonList("single"), minted);
+        assertTrue(UrigenUriReservoir.shutdownAll().isEmpty());
+    }
+
+    @Test
+    public void testReturnsWhatWasMintedWhenTheServerFailsPartway() throws Exception {
+        failing.add("c");
+
+        OWLEntitiesCreationSet<OWLClass> created = createFactory().createOWLClasses(Arrays.asList("a", "b", "c", "d"), null);
+
+        // only the names that are still missing are left to be created one at a time
+        assertEquals(Arrays.asList("a", "b"), new ArrayList<String>(created.getOWLEntities().keySet()));
+        assertEquals(Arrays.asList("a", "b"), minted);
+    }
+
+    @Test
+    public void testKeepsPrefetchedURIsWhenTheServerFailsPartway() throws Exception {
+        UrigenEntityFactory factory = createFactory();
+        factory.enablePrefetch(2, 2);
+        failing.add("b");
+
+        OWLEntitiesCreationSet<OWLClass> created = factory.createOWLClasses(Arrays.asList("a", "b", "c", "d", "e"), null);
+
+        // everything minted in the background is used, and nothing is minted twice
+        Set<String> names = created.getOWLEntities().keySet();
+        assertFalse(names.contains("b"));
+        assertTrue(names.contains("a"));
+        List<String> labels = new ArrayList<String>(minted);
+        Collections.sort(labels);
+        assertEquals(new ArrayList<String>(new TreeSet<String>(names)), labels);
+        assertTrue(UrigenUriReservoir.shutdownAll().isEmpty());
+    }
+
+    @Test(expected = OWLEntityCreationException.class)
+    public void testFailsWhenNothingCouldBeMinted() throws Exception {
+        failing.add("a");
+        createFactory().createOWLClasses(Arrays.asList("a", "b"), null);
+    }
+
+    private UrigenEntityFactory createFactory() {
+        return new UrigenEntityFactory(manager, ontology, "http://localhost:" + server.getAddress().getPort(), "key", ONTOLOGY);
+    }
+
+    // answers with JSON, or a server error when there's nothing to answer with
+    private abstract static class JsonHandler implements HttpHandler {
+
+        abstract String respond(HttpExchange exchange, String body);
+
+        public void handle(HttpExchange exchange) throws IOException {
+            ByteArrayOutputStream body = new ByteArrayOutputStream();
+            InputStream in = exchange.getRequestBody();
+            byte[] buffer = new byte[4096];
+            int read;
+            while ((read = in.read(buffer)) != -1) {
+                body.write(buffer, 0, read);
+            }
+            String response = respond(exchange, body.toString("UTF-8"));
+            if (response == null) {
+                exchange.sendResponseHeaders(500, -1);
+            }
+            else {
+                byte[] bytes = response.getBytes("UTF-8");
+                exchange.getResponseHeaders().add("Content-Type", "application/json");
+                exchange.sendResponseHeaders(200, bytes.length);
+                exchange.getResponseBody().write(bytes);
+            }
+            exchange.close();
+        }
+    }
+}
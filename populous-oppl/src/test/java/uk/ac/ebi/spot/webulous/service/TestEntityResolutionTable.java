@@ -0,0 +1,74 @@
+package uk.ac.ebi.spot.webulous.service;
+
+import org.junit.Before;
+import org.junit.Test;
+import org.semanticweb.owlapi.model.IRI;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author Simon Jupp
+ * @date 18/10/2026
+ * Samples, Phenotypes and Ontologies Team, EMBL-EBI
+ */
+public class TestEntityResolutionTable {
+
+    private static final IRI LIVER = IRI.create("http://www.ebi.ac.uk/webulous/test#0001");
+    private static final IRI HEART = IRI.create("http://www.ebi.ac.uk/webulous/test#0002");
+
+    private EntityResolutionTable table;
+
+    @Before
+    public void setUp() {
+        table = new EntityResolutionTable();
+    }
+
+    @Test
+    public void testLookupIgnoresCaseAndWhitespace() {
+        table.preload("liver", EntityResolutionTable.CLASS, LIVER);
+
+        assertEquals(LIVER, table.lookup("Liver", EntityResolutionTable.CLASS));
+        assertEquals(LIVER, table.lookup("  LIVER ", EntityResolutionTable.CLASS));
+        assertNull(table.lookup("liver tissue", EntityResolutionTable.CLASS));
+    }
+
+    @Test
+    public void testInternalWhitespaceIsCollapsed() {
+        table.add("heart  left\tventricle", EntityResolutionTable.CLASS, HEART);
+
+        assertEquals(HEART, table.lookup("heart left ventricle", EntityResolutionTable.CLASS));
+        assertEquals("heart left ventricle", table.getAdded().get(0).getLabel());
+    }
+
+    @Test
+    public void testTypesAreKeptApart() {
+        table.preload("liver", EntityResolutionTable.CLASS, LIVER);
+
+        assertNull(table.lookup("liver", EntityResolutionTable.INDIVIDUAL));
+    }
+
+    @Test
+    public void testPreloadedEntriesAreNotAdded() {
+        table.preload("liver", EntityResolutionTable.CLASS, LIVER);
+        table.add("heart", EntityResolutionTable.CLASS, HEART);
+
+        assertEquals(2, table.size());
+        assertEquals(1, table.getAdded().size());
+        assertEquals(HEART, table.getAdded().get(0).getIri());
+    }
+
+    @Test
+    public void testAddingAKnownValueIsNotAddedAgain() {
+        table.preload("liver", EntityResolutionTable.CLASS, LIVER);
+        table.add("Liver", EntityResolutionTable.CLASS, LIVER);
+        table.add("heart", EntityResolutionTable.CLASS, HEART);
+        table.add("HEART", EntityResolutionTable.CLASS, HEART);
+
+        assertEquals(1, table.getAdded().size());
+    }
+
+    @Test(expected = UnsupportedOperationException.class)
+    public void testAddedIsReadOnly() {
+        table.getAdded().add(new EntityResolutionTable.Entry("liver", EntityResolutionTable.CLASS, LIVER));
+    }
+}
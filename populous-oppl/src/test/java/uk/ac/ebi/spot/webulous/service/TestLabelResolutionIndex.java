@@ -0,0 +1,192 @@
+package uk.ac.ebi.spot.webulous.service;
+
+import org.junit.Before;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+import org.semanticweb.owlapi.apibinding.OWLManager;
+import org.semanticweb.owlapi.model.*;
+import org.semanticweb.owlapi.vocab.OWLRDFVocabulary;
+import uk.ac.ebi.fgpt.LabelIndexFile;
+
+import java.io.File;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Set;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author Simon Jupp
+ * @date 18/10/2026
+ * Samples, Phenotypes and Ontologies Team, EMBL-EBI
+ */
+public class TestLabelResolutionIndex {
+
+    private static final IRI LEUKEMIA = IRI.create("http://www.ebi.ac.uk/webulous/test#0001");
+    private static final IRI LYMPHOMA = IRI.create("http://www.ebi.ac.uk/webulous/test#0002");
+    private static final IRI MELANOMA = IRI.create("http://www.ebi.ac.uk/webulous/test#0003");
+    private static final IRI LIVER = IRI.create("http://www.ebi.ac.uk/webulous/test#0004");
+    private static final IRI PATIENT = IRI.create("http://www.ebi.ac.uk/webulous/test#0005");
+    private static final IRI OTHER_LIVER = IRI.create("http://www.ebi.ac.uk/webulous/test#0006");
+
+    // the values allowed in the restricted column
+    private final Set<IRI> allowed = new HashSet<IRI>(Arrays.asList(LEUKEMIA, LYMPHOMA, LIVER));
+
+    private LabelResolutionIndex index;
+
+    @Rule
+    public TemporaryFolder folder = new TemporaryFolder();
+
+    @Before
+    public void setUp() {
+        index = new LabelResolutionIndex(1, allowed);
+        index.add(LEUKEMIA, EntityType.CLASS, "leukemia", false);
+        index.add(LEUKEMIA, EntityType.CLASS, "leukaemia", true);
+        index.add(LYMPHOMA, EntityType.CLASS, "Lymphoma", false);
+        index.add(MELANOMA, EntityType.CLASS, "melanoma", false);
+        index.add(LIVER, EntityType.CLASS, "liver", false);
+        index.add(OTHER_LIVER, EntityType.CLASS, "liver", false);
+        index.add(PATIENT, EntityType.NAMED_INDIVIDUAL, "patient_one", false);
+    }
+
+    @Test
+    public void testExactLabelIgnoresCaseAndUnderscores() {
+        LabelResolutionIndex.Resolution resolution = index.resolve("  LYMPHOMA ", EntityType.CLASS, null);
+        assertEquals(LabelResolutionIndex.MatchType.LABEL, resolution.getMatchType());
+        assertEquals(LYMPHOMA, resolution.getIri());
+
+        assertEquals(PATIENT, index.resolve("Patient One", EntityType.NAMED_INDIVIDUAL, null).getIri());
+    }
+
+    @Test
+    public void testSynonym() {
+        LabelResolutionIndex.Resolution resolution = index.resolve("Leukaemia", EntityType.CLASS, null);
+        assertEquals(LabelResolutionIndex.MatchType.SYNONYM, resolution.getMatchType());
+        assertEquals(LEUKEMIA, resolution.getIri());
+    }
+
+    @Test
+    public void testLabelBeatsSynonym() {
+        index.add(MELANOMA, EntityType.CLASS, "lymphoma", true);
+        LabelResolutionIndex.Resolution resolution = index.resolve("lymphoma", EntityType.CLASS, null);
+        assertEquals(LabelResolutionIndex.MatchType.LABEL, resolution.getMatchType());
+        assertEquals(LYMPHOMA, resolution.getIri());
+    }
+
+    @Test
+    public void testTypeMustMatch() {
+        assertEquals(LabelResolutionIndex.MatchType.NONE, index.resolve("patient one", EntityType.CLASS, null).getMatchType());
+    }
+
+    @Test
+    public void testSharedNameIsAmbiguousUnlessColumnNarrowsIt() {
+        assertTrue(index.resolve("liver", EntityType.CLASS, null).isAmbiguous());
+        assertEquals(LIVER, index.resolve("liver", EntityType.CLASS, allowed).getIri());
+    }
+
+    @Test
+    public void testCloseMatchAmongAllowedValues() {
+        LabelResolutionIndex.Resolution resolution = index.resolve("lymphona", EntityType.CLASS, allowed);
+        assertEquals(LabelResolutionIndex.MatchType.FUZZY, resolution.getMatchType());
+        assertEquals(LYMPHOMA, resolution.getIri());
+        assertEquals("lymphoma", resolution.getMatchedName());
+
+        // a transposition is one edit
+        assertEquals(LEUKEMIA, index.resolve("luekemia", EntityType.CLASS, allowed).getIri());
+    }
+
+    @Test
+    public void testNoCloseMatchInUnrestrictedColumn() {
+        // a new term in a free text column mustn't be taken for a typo of an existing one
+        LabelResolutionIndex.Resolution resolution = index.resolve("lymphona", EntityType.CLASS, null);
+        assertEquals(LabelResolutionIndex.MatchType.NONE, resolution.getMatchType());
+        assertFalse(resolution.isResolved());
+    }
+
+    @Test
+    public void testNoCloseMatchOutsideAllowedValues() {
+        // melanoma is known but not allowed in the column
+        assertEquals(LabelResolutionIndex.MatchType.NONE, index.resolve("melanona", EntityType.CLASS, allowed).getMatchType());
+        assertEquals(LabelResolutionIndex.MatchType.NONE,
+                index.resolve("melanona", EntityType.CLASS, Collections.singleton(MELANOMA)).getMatchType());
+    }
+
+    @Test
+    public void testTooFarOrTooShortForCloseMatch() {
+        assertEquals(LabelResolutionIndex.MatchType.NONE, index.resolve("lymfona", EntityType.CLASS, allowed).getMatchType());
+        assertEquals(LabelResolutionIndex.MatchType.NONE, index.resolve("livr", EntityType.CLASS, allowed).getMatchType());
+    }
+
+    @Test
+    public void testNoCloseMatchWhenDistanceIsZero() {
+        LabelResolutionIndex exact = new LabelResolutionIndex(0, allowed);
+        exact.add(LYMPHOMA, EntityType.CLASS, "lymphoma", false);
+        assertEquals(LabelResolutionIndex.MatchType.NONE, exact.resolve("lymphona", EntityType.CLASS, allowed).getMatchType());
+        assertEquals(LYMPHOMA, exact.resolve("lymphoma", EntityType.CLASS, allowed).getIri());
+    }
+
+    @Test
+    public void testEquallyCloseMatchesAreAmbiguous() {
+        IRI lymphomas = IRI.create("http://www.ebi.ac.uk/webulous/test#0007");
+        Set<IRI> column = new HashSet<IRI>(Arrays.asList(LYMPHOMA, lymphomas));
+        LabelResolutionIndex ambiguous = new LabelResolutionIndex(1, column);
+        ambiguous.add(LYMPHOMA, EntityType.CLASS, "lymphoma", false);
+        ambiguous.add(lymphomas, EntityType.CLASS, "lymphomas", false);
+
+        assertTrue(ambiguous.resolve("lymphomax", EntityType.CLASS, column).isAmbiguous());
+        // the closer match wins
+        assertEquals(LYMPHOMA, ambiguous.resolve("lymphona", EntityType.CLASS, column).getIri());
+    }
+
+    @Test
+    public void testImportsAreLookedUpInTheLabelIndexFile() throws Exception {
+        IRI synonym = IRI.create("http://www.geneontology.org/formats/oboInOwl#hasExactSynonym");
+        IRI partOf = IRI.create("http://www.ebi.ac.uk/webulous/test#part_of");
+        OWLOntologyManager manager = OWLManager.createOWLOntologyManager();
+        OWLDataFactory df = manager.getOWLDataFactory();
+        OWLOntology imported = manager.createOntology(IRI.create("http://www.ebi.ac.uk/webulous/imported"));
+        OWLOntology active = manager.createOntology(IRI.create("http://www.ebi.ac.uk/webulous/active"));
+        manager.addAxiom(imported, df.getOWLDeclarationAxiom(df.getOWLClass(LEUKEMIA)));
+        manager.addAxiom(imported, df.getOWLDeclarationAxiom(df.getOWLClass(LIVER)));
+        manager.addAxiom(imported, df.getOWLDeclarationAxiom(df.getOWLNamedIndividual(PATIENT)));
+        manager.addAxiom(imported, df.getOWLDeclarationAxiom(df.getOWLObjectProperty(partOf)));
+        manager.addAxiom(active, df.getOWLDeclarationAxiom(df.getOWLClass(MELANOMA)));
+        addName(imported, LEUKEMIA, OWLRDFVocabulary.RDFS_LABEL.getIRI(), "leukemia");
+        addName(imported, LEUKEMIA, synonym, "leukaemia");
+        addName(imported, LIVER, OWLRDFVocabulary.RDFS_LABEL.getIRI(), "liver");
+        addName(imported, PATIENT, OWLRDFVocabulary.RDFS_LABEL.getIRI(), "patient one");
+        addName(imported, partOf, OWLRDFVocabulary.RDFS_LABEL.getIRI(), "part of");
+        addName(active, MELANOMA, OWLRDFVocabulary.RDFS_LABEL.getIRI(), "melanoma");
+
+        File file = new File(folder.getRoot(), "imports.lix");
+        LabelIndexFile.write(file, Collections.singleton(imported), Arrays.asList(OWLRDFVocabulary.RDFS_LABEL.getIRI(), synonym));
+        Set<IRI> allowedLiver = Collections.singleton(LIVER);
+        LabelResolutionIndex fileIndex = LabelResolutionIndex.build(manager.getOntologies(), Collections.singleton(imported), LabelIndexFile.open(file),
+                OWLRDFVocabulary.RDFS_LABEL.getIRI(), Collections.singleton(synonym), 1, allowedLiver);
+
+        LabelResolutionIndex.Resolution resolution = fileIndex.resolve("Leukemia", EntityType.CLASS, null);
+        assertEquals(LabelResolutionIndex.MatchType.LABEL, resolution.getMatchType());
+        assertEquals(LEUKEMIA, resolution.getIri());
+        resolution = fileIndex.resolve("leukaemia", EntityType.CLASS, null);
+        assertEquals(LabelResolutionIndex.MatchType.SYNONYM, resolution.getMatchType());
+        assertEquals(LEUKEMIA, resolution.getIri());
+
+        // entities in the file are only values if the imports say they are classes or individuals
+        assertEquals(PATIENT, fileIndex.resolve("patient one", EntityType.NAMED_INDIVIDUAL, null).getIri());
+        assertEquals(LabelResolutionIndex.MatchType.NONE, fileIndex.resolve("patient one", EntityType.CLASS, null).getMatchType());
+        assertEquals(LabelResolutionIndex.MatchType.NONE, fileIndex.resolve("part of", null, null).getMatchType());
+
+        // the ontology being written to is still on the heap, as are the allowed values for close matches
+        assertEquals(MELANOMA, fileIndex.resolve("melanoma", EntityType.CLASS, null).getIri());
+        resolution = fileIndex.resolve("livers", EntityType.CLASS, allowedLiver);
+        assertEquals(LabelResolutionIndex.MatchType.FUZZY, resolution.getMatchType());
+        assertEquals(LIVER, resolution.getIri());
+    }
+
+    private void addName(OWLOntology ontology, IRI subject, IRI property, String name) {
+        OWLDataFactory df = ontology.getOWLOntologyManager().getOWLDataFactory();
+        ontology.getOWLOntologyManager().addAxiom(ontology, df.getOWLAnnotationAssertionAxiom(df.getOWLAnnotationProperty(property), subject, df.getOWLLiteral(name)));
+    }
+}
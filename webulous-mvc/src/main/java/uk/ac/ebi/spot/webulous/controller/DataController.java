@@ -4,7 +4,9 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
+import org.springframework.data.web.PageableDefault;
 import org.springframework.http.MediaType;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
@@ -12,12 +14,9 @@ import org.springframework.web.bind.annotation.*;
 import org.springframework.web.servlet.mvc.support.RedirectAttributes;
 import uk.ac.ebi.spot.webulous.model.DataSubmission;
 import uk.ac.ebi.spot.webulous.model.DataConversionRunDocument;
-import uk.ac.ebi.spot.webulous.model.RestrictionRunDocument;
 import uk.ac.ebi.spot.webulous.model.Status;
 import uk.ac.ebi.spot.webulous.service.DataConversionService;
 
-import java.util.List;
-
 /**
  * @author Simon Jupp
  * @date 25/03/2015
@@ -39,22 +38,22 @@ public class DataController {
         return  logger;
     }
 
-    @ModelAttribute("all_submission_runs")
-    public List<DataConversionRunDocument> getDataRuns() {
-        return dataConversionService.findAll(new Sort(new Sort.Order(Sort.Direction.DESC, "lastUpdated")));
-    }
-
+    // only the listing needs the runs, and only a page of them without their data
     @RequestMapping(value = "", produces = MediaType.TEXT_HTML_VALUE, method = RequestMethod.GET)
-    public String showDataRuns(Model model) {
+    public String showDataRuns(Model model,
+                               @PageableDefault(size = 50, sort = "lastUpdated", direction = Sort.Direction.DESC) Pageable pageable) {
         model.addAttribute("readonly", readOnly);
+        model.addAttribute("all_submission_runs", dataConversionService.findSummaries(pageable));
         return "submissions";
     }
 
     @RequestMapping(value = "", params="templateId", produces = MediaType.TEXT_HTML_VALUE, method = RequestMethod.GET)
-    public String getRunsByTemplateId(Model model, @RequestParam("templateId") String templateId, final RedirectAttributes redirectAttributes) {
+    public String getRunsByTemplateId(Model model, @RequestParam("templateId") String templateId,
+                                      @PageableDefault(size = 50, sort = "lastUpdated", direction = Sort.Direction.DESC) Pageable pageable,
+                                      final RedirectAttributes redirectAttributes) {
         model.addAttribute("readonly", readOnly);
-        List<DataConversionRunDocument> runs = dataConversionService.findByTemplateId(templateId);
-        model.addAttribute("all_submission_runs", runs);
+        model.addAttribute("templateId", templateId);
+        model.addAttribute("all_submission_runs", dataConversionService.findSummariesByTemplateId(templateId, pageable));
         return "submissions";
     }
 
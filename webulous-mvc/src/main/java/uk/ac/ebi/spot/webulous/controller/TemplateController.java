@@ -1,10 +1,14 @@
 package uk.ac.ebi.spot.webulous.controller;
 
+import com.fasterxml.jackson.core.JsonFactory;
+import com.fasterxml.jackson.core.JsonGenerator;
 import org.apache.commons.lang3.StringUtils;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
+import org.springframework.data.rest.webmvc.ResourceNotFoundException;
+import org.springframework.data.web.PageableDefault;
 import org.springframework.http.MediaType;
 import org.springframework.stereotype.Controller;
 import org.springframework.ui.Model;
@@ -12,13 +16,17 @@ import org.springframework.validation.BindingResult;
 import org.springframework.web.bind.annotation.*;
 import org.springframework.web.servlet.mvc.support.RedirectAttributes;
 import uk.ac.ebi.spot.webulous.model.*;
+import uk.ac.ebi.spot.webulous.service.RestrictionValueService;
 import uk.ac.ebi.spot.webulous.service.WebulousTemplateService;
 
 import javax.servlet.http.HttpServletRequest;
+import javax.servlet.http.HttpServletResponse;
 import javax.validation.Valid;
+import java.io.*;
 import java.util.Collection;
 import java.util.HashSet;
 import java.util.List;
+import java.util.zip.GZIPOutputStream;
 
 /**
  * @author Simon Jupp
@@ -35,22 +43,11 @@ public class TemplateController {
     @Autowired
     private WebulousTemplateService webulousTemplateService;
 
-    @ModelAttribute("all_templates")
-    public List<PopulousTemplateDocument> getTemplates() {
-        return webulousTemplateService.findAll();
-    }
-
-    @ModelAttribute("all_templates")
-    public Page<PopulousTemplateDocument> getTemplates(Pageable pageable) {
-        return webulousTemplateService.findAll(pageable);
-    }
-
-
     @RequestMapping(value = "", produces="application/json", method = RequestMethod.GET)
     public @ResponseBody
     Collection<TemplateSummary> getTemplateSummary(@RequestParam(value = "groupName", required=false) String groupName) {
         Collection<TemplateSummary> templateSummaries = new HashSet<TemplateSummary>();
-        for (PopulousTemplateDocument document : webulousTemplateService.findActive()) {
+        for (PopulousTemplateDocument document : webulousTemplateService.findActiveSummaries()) {
             if (StringUtils.isNoneEmpty(groupName)) {
                 if (document.getTemplateGroupName() != null) {
                     if (document.getTemplateGroupName().toLowerCase().equals(groupName.toLowerCase())) {
@@ -65,16 +62,19 @@ public class TemplateController {
         return templateSummaries;
     }
 
+    // the listing is the only view that needs the templates, and only a page of their summaries
     @RequestMapping("")
-    public String showAllTemplates(Model model) {
+    public String showAllTemplates(Model model, @PageableDefault(size = 50, sort = "description") Pageable pageable) {
         if (readOnly) {
             model.addAttribute("readonly", true);
         }
+        model.addAttribute("all_templates", webulousTemplateService.findSummaries(pageable));
         return "templates";
     }
 
     @RequestMapping(value = "/{templateId}/restrictions/{restrictionIndex}", produces = MediaType.TEXT_HTML_VALUE, method = RequestMethod.GET)
-    public String getRestrictionValuesByIndex(Model model, @PathVariable String templateId, @PathVariable String restrictionIndex) {
+    public String getRestrictionValuesByIndex(Model model, @PathVariable String templateId, @PathVariable String restrictionIndex,
+                                              @PageableDefault(size = 100) Pageable pageable) {
 
         PopulousTemplateDocument populousTemplateDocument= webulousTemplateService.findOne(templateId);
 
@@ -82,9 +82,128 @@ public class TemplateController {
         model.addAttribute("restrictionIndex", restrictionIndex);
         model.addAttribute("populousRestriction", populousDataRestriction);
         model.addAttribute("populousTemplateDocument", populousTemplateDocument);
+        model.addAttribute("restrictionValues", webulousTemplateService.getRestrictionValues(populousTemplateDocument, Integer.parseInt(restrictionIndex), pageable));
         return "restriction_values";
     }
 
+    @RequestMapping(value = "/{templateId}/restrictions/{restrictionIndex}/values", produces = MediaType.APPLICATION_JSON_VALUE, method = RequestMethod.GET)
+    public @ResponseBody
+    Page<String[]> getRestrictionValuesPage(@PathVariable String templateId, @PathVariable int restrictionIndex,
+                                            @PageableDefault(size = 1000) Pageable pageable) {
+
+        PopulousTemplateDocument populousTemplateDocument= webulousTemplateService.findOne(templateId);
+        if (populousTemplateDocument == null || restrictionIndex < 0 || restrictionIndex >= populousTemplateDocument.getDataRestrictions().size()) {
+            throw new ResourceNotFoundException("No restriction " + restrictionIndex + " on template " + templateId);
+        }
+        return webulousTemplateService.getRestrictionValues(populousTemplateDocument, restrictionIndex, pageable);
+    }
+
+    /**
+     * Stream the values of a restriction as CSV or newline delimited JSON, straight from the database. The response is
+     * written as the values are read, so it's sent chunked, and is gzipped if the client accepts it.
+     *
+     * @param limit the most values to send, 0 for all of them
+     */
+    @RequestMapping(value = "/{templateId}/restrictions/{restrictionIndex}/download", method = RequestMethod.GET)
+    public void downloadRestrictionValues(@PathVariable String templateId, @PathVariable int restrictionIndex,
+                                          @RequestParam(value = "format", defaultValue = "csv") String format,
+                                          @RequestParam(value = "offset", defaultValue = "0") int offset,
+                                          @RequestParam(value = "limit", defaultValue = "0") int limit,
+                                          HttpServletRequest request, HttpServletResponse response) throws IOException {
+
+        PopulousTemplateDocument populousTemplateDocument= webulousTemplateService.findOne(templateId);
+        if (populousTemplateDocument == null || restrictionIndex < 0 || restrictionIndex >= populousTemplateDocument.getDataRestrictions().size()) {
+            throw new ResourceNotFoundException("No restriction " + restrictionIndex + " on template " + templateId);
+        }
+        final boolean csv = "csv".equalsIgnoreCase(format);
+        if (!csv && !"ndjson".equalsIgnoreCase(format)) {
+            response.sendError(HttpServletResponse.SC_BAD_REQUEST, "Unknown format " + format + ", expected csv or ndjson");
+            return;
+        }
+
+        response.setContentType(csv ? "text/csv" : "application/x-ndjson");
+        response.setCharacterEncoding("UTF-8");
+        response.setHeader("Content-Disposition", "attachment; filename=\"" + templateId + "-" + restrictionIndex + (csv ? ".csv" : ".ndjson") + "\"");
+        response.setHeader("Vary", "Accept-Encoding");
+
+        OutputStream out = response.getOutputStream();
+        String acceptEncoding = request.getHeader("Accept-Encoding");
+        if (acceptEncoding != null && acceptEncoding.toLowerCase().contains("gzip")) {
+            response.setHeader("Content-Encoding", "gzip");
+            // sync flush so each chunk we flush can be decompressed as it arrives
+            out = new GZIPOutputStream(out, 8192, true);
+        }
+
+        final Writer writer = new BufferedWriter(new OutputStreamWriter(out, "UTF-8"));
+        final JsonGenerator json = new JsonFactory().createGenerator(writer);
+        json.setRootValueSeparator(null);
+        if (csv) {
+            writer.write("label,iri\n");
+        }
+        webulousTemplateService.streamRestrictionValues(populousTemplateDocument, restrictionIndex, Math.max(offset, 0), Math.max(limit, 0),
+                new RestrictionValueService.ValueHandler() {
+                    private int count = 0;
+
+                    public void handle(String label, String iri) throws IOException {
+                        if (csv) {
+                            writer.write(toCsv(label));
+                            writer.write(',');
+                            writer.write(toCsv(iri));
+                            writer.write('\n');
+                        }
+                        else {
+                            json.writeStartObject();
+                            json.writeStringField("label", label);
+                            json.writeStringField("iri", iri);
+                            json.writeEndObject();
+                            json.writeRaw('\n');
+                        }
+                        // send what we have every so often rather than holding it until the end
+                        if (++count % 1000 == 0) {
+                            json.flush();
+                            writer.flush();
+                        }
+                    }
+                });
+        json.close();
+        writer.close();
+    }
+
+    private String toCsv(String value) {
+        if (value == null) {
+            return "";
+        }
+        if (value.indexOf(',') < 0 && value.indexOf('"') < 0 && value.indexOf('\n') < 0 && value.indexOf('\r') < 0) {
+            return value;
+        }
+        return "\"" + value.replace("\"", "\"\"") + "\"";
+    }
+
+    @RequestMapping(value = "/{templateId}/restrictions/{restrictionIndex}/changes", produces = MediaType.APPLICATION_JSON_VALUE, method = RequestMethod.GET)
+    public @ResponseBody
+    RestrictionValueChanges getRestrictionValueChanges(@PathVariable String templateId, @PathVariable int restrictionIndex,
+                                                       @RequestParam(value = "since", defaultValue = "0") long since) {
+
+        PopulousTemplateDocument populousTemplateDocument= webulousTemplateService.findOne(templateId);
+        if (populousTemplateDocument == null || restrictionIndex < 0 || restrictionIndex >= populousTemplateDocument.getDataRestrictions().size()) {
+            throw new ResourceNotFoundException("No restriction " + restrictionIndex + " on template " + templateId);
+        }
+        return webulousTemplateService.getRestrictionValueChanges(populousTemplateDocument, restrictionIndex, since);
+    }
+
+    @RequestMapping(value = "/{templateId}/restrictions/{restrictionIndex}/autocomplete", produces = MediaType.APPLICATION_JSON_VALUE, method = RequestMethod.GET)
+    public @ResponseBody
+    List<String[]> autocompleteRestrictionValue(@PathVariable String templateId, @PathVariable int restrictionIndex,
+                                                @RequestParam(value = "q") String prefix,
+                                                @RequestParam(value = "limit", defaultValue = "10") int limit) {
+
+        PopulousTemplateDocument populousTemplateDocument= webulousTemplateService.findOne(templateId);
+        if (populousTemplateDocument == null || restrictionIndex < 0 || restrictionIndex >= populousTemplateDocument.getDataRestrictions().size()) {
+            throw new ResourceNotFoundException("No restriction " + restrictionIndex + " on template " + templateId);
+        }
+        return webulousTemplateService.autocomplete(populousTemplateDocument, restrictionIndex, prefix, Math.min(limit, 100));
+    }
+
     @RequestMapping(value = "/{templateId}", produces = MediaType.TEXT_HTML_VALUE, method = RequestMethod.GET)
     public String getTemplateById(Model model, @PathVariable String templateId, final RedirectAttributes redirectAttributes) {
         PopulousTemplateDocument populousTemplateDocument= webulousTemplateService.findOne(templateId);
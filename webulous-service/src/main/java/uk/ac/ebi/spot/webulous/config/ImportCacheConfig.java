@@ -0,0 +1,40 @@
+package uk.ac.ebi.spot.webulous.config;
+
+import org.apache.commons.lang3.StringUtils;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Configuration;
+import uk.ac.ebi.fgpt.ImportCache;
+
+import javax.annotation.PostConstruct;
+import java.io.File;
+
+/**
+ * @author Simon Jupp
+ * @date 18/10/2026
+ * Samples, Phenotypes and Ontologies Team, EMBL-EBI
+ */
+@Configuration
+public class ImportCacheConfig {
+
+    private Logger logger = LoggerFactory.getLogger(getClass());
+
+    // directory to cache imported ontologies in, leave empty to fetch and parse them every time
+    @Value("${webulous.imports.cache.dir:}")
+    private String cacheDir;
+
+    // imports with at least this many annotations get their labels indexed in a memory mapped file in the cache, 0 to never index them
+    @Value("${webulous.imports.labelindex.threshold:500000}")
+    private int labelIndexThreshold;
+
+    @PostConstruct
+    public void registerImportCache() {
+        if (StringUtils.isNotBlank(cacheDir)) {
+            logger.info("Caching imported ontologies in " + cacheDir);
+            ImportCache importCache = new ImportCache(new File(cacheDir));
+            importCache.setLabelIndexThreshold(labelIndexThreshold);
+            ImportCache.setDefault(importCache);
+        }
+    }
+}
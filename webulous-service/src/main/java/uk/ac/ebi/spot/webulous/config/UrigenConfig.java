@@ -0,0 +1,25 @@
+package uk.ac.ebi.spot.webulous.config;
+
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.context.annotation.Configuration;
+import uk.ac.ebi.spot.webulous.entity.urigen.UrigenLookupCache;
+
+import javax.annotation.PostConstruct;
+
+/**
+ * @author Simon Jupp
+ * @date 18/10/2026
+ * Samples, Phenotypes and Ontologies Team, EMBL-EBI
+ */
+@Configuration
+public class UrigenConfig {
+
+    // how long urigen preference and user lookups are cached for
+    @Value("${webulous.urigen.cache.ttl:600000}")
+    private long urigenCacheTtl;
+
+    @PostConstruct
+    public void configureLookupCache() {
+        UrigenLookupCache.getInstance().setTtl(urigenCacheTtl);
+    }
+}
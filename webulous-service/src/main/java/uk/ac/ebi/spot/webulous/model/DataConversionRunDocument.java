@@ -2,6 +2,7 @@ package uk.ac.ebi.spot.webulous.model;
 
 import com.fasterxml.jackson.annotation.JsonIgnore;
 import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.Indexed;
 import org.springframework.data.mongodb.core.mapping.Document;
 
 import java.util.Date;
@@ -19,6 +20,8 @@ public class DataConversionRunDocument {
     private String templateId;
     private String templateName;
     private String userEmail;
+    // submissions are listed newest first
+    @Indexed
     private Date lastUpdated;
     private Status status;
     private String message;
@@ -29,6 +29,7 @@ public class PopulousTemplateDocument implements PopulousTemplate {
     private String urigenserver;
     private String activeOntology;
     private Set<String> ontologyImports;
+    private ReasonerType reasonerType = ReasonerType.AUTO;
 
     @NotEmpty(message = "Please enter at least one data restriction")
     private List<PopulousDataRestriction> dataRestrictions;
@@ -117,6 +118,14 @@ public class PopulousTemplateDocument implements PopulousTemplate {
         this.ontologyImports = ontologyImports;
     }
 
+    public ReasonerType getReasonerType() {
+        return reasonerType;
+    }
+
+    public void setReasonerType(ReasonerType reasonerType) {
+        this.reasonerType = reasonerType;
+    }
+
     public List<PopulousDataRestriction> getDataRestrictions() {
         return dataRestrictions;
     }
@@ -0,0 +1,86 @@
+package uk.ac.ebi.spot.webulous.model;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.util.Date;
+
+/**
+ * @author Simon Jupp
+ * @date 18/10/2026
+ * Samples, Phenotypes and Ontologies Team, EMBL-EBI
+ *
+ * A free text value from a data submission and the IRI it was resolved to for a template
+ */
+@Document(collection = "resolvedentities")
+@CompoundIndex(name = "template_type_label", def = "{'templateId': 1, 'type': 1, 'label': 1}", unique = true)
+public class ResolvedEntityDocument {
+
+    @Id
+    private String id;
+    private String templateId;
+    private String label;
+    private String type;
+    private String iri;
+    private Date created;
+
+    public ResolvedEntityDocument() {
+    }
+
+    public ResolvedEntityDocument(String templateId, String label, String type, String iri) {
+        this.templateId = templateId;
+        this.label = label;
+        this.type = type;
+        this.iri = iri;
+        this.created = new Date();
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public void setId(String id) {
+        this.id = id;
+    }
+
+    public String getTemplateId() {
+        return templateId;
+    }
+
+    public void setTemplateId(String templateId) {
+        this.templateId = templateId;
+    }
+
+    public String getLabel() {
+        return label;
+    }
+
+    public void setLabel(String label) {
+        this.label = label;
+    }
+
+    public String getType() {
+        return type;
+    }
+
+    public void setType(String type) {
+        this.type = type;
+    }
+
+    public String getIri() {
+        return iri;
+    }
+
+    public void setIri(String iri) {
+        this.iri = iri;
+    }
+
+    public Date getCreated() {
+        return created;
+    }
+
+    public void setCreated(Date created) {
+        this.created = created;
+    }
+}
@@ -0,0 +1,102 @@
+package uk.ac.ebi.spot.webulous.model;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.Indexed;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.util.Date;
+
+/**
+ * @author Simon Jupp
+ * @date 18/10/2026
+ * Samples, Phenotypes and Ontologies Team, EMBL-EBI
+ *
+ * The rendered values of a restriction query over a particular version of an imports closure, shared by every
+ * template that asks the same question of the same ontologies. The id is derived from the closure fingerprint,
+ * the restriction and reasoner types and the normalised class expression.
+ */
+@Document(collection = "restrictionresults")
+public class RestrictionResultDocument {
+
+    // results are only reused while the closure is unchanged, so old ones can go
+    private static final int EXPIRE_AFTER_SECONDS = 30 * 24 * 60 * 60;
+
+    @Id
+    private String id;
+    private String closureFingerprint;
+    private RestrictionType restrictionType;
+    private ReasonerType reasonerType;
+    private String classExpression;
+    private String[][] values;
+    @Indexed(expireAfterSeconds = EXPIRE_AFTER_SECONDS)
+    private Date created;
+
+    public RestrictionResultDocument() {
+    }
+
+    public RestrictionResultDocument(String id, String closureFingerprint, RestrictionType restrictionType, ReasonerType reasonerType, String classExpression, String[][] values) {
+        this.id = id;
+        this.closureFingerprint = closureFingerprint;
+        this.restrictionType = restrictionType;
+        this.reasonerType = reasonerType;
+        this.classExpression = classExpression;
+        this.values = values;
+        this.created = new Date();
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public void setId(String id) {
+        this.id = id;
+    }
+
+    public String getClosureFingerprint() {
+        return closureFingerprint;
+    }
+
+    public void setClosureFingerprint(String closureFingerprint) {
+        this.closureFingerprint = closureFingerprint;
+    }
+
+    public RestrictionType getRestrictionType() {
+        return restrictionType;
+    }
+
+    public void setRestrictionType(RestrictionType restrictionType) {
+        this.restrictionType = restrictionType;
+    }
+
+    public ReasonerType getReasonerType() {
+        return reasonerType;
+    }
+
+    public void setReasonerType(ReasonerType reasonerType) {
+        this.reasonerType = reasonerType;
+    }
+
+    public String getClassExpression() {
+        return classExpression;
+    }
+
+    public void setClassExpression(String classExpression) {
+        this.classExpression = classExpression;
+    }
+
+    public String[][] getValues() {
+        return values;
+    }
+
+    public void setValues(String[][] values) {
+        this.values = values;
+    }
+
+    public Date getCreated() {
+        return created;
+    }
+
+    public void setCreated(Date created) {
+        this.created = created;
+    }
+}
@@ -4,6 +4,7 @@ import org.springframework.data.annotation.Id;
 import org.springframework.data.mongodb.core.mapping.Document;
 
 import java.util.Date;
+import java.util.List;
 
 /**
  * @author Simon Jupp
@@ -21,6 +22,14 @@ public class RestrictionRunDocument {
     private Status status;
     private String message;
 
+    // what the values were computed from, so an unchanged template can skip the next run
+    private String fingerprint;
+    private List<String> importClosure;
+
+    // what the reasoner is doing while the run is updating, progress is a percentage or -1 if the reasoner can't tell
+    private String phase;
+    private int progress;
+
     public RestrictionRunDocument() {
         this.status = Status.OK;
         this.message = "";
@@ -73,4 +82,36 @@ public class RestrictionRunDocument {
     public void setMessage(String message) {
         this.message = message;
     }
+
+    public String getFingerprint() {
+        return fingerprint;
+    }
+
+    public void setFingerprint(String fingerprint) {
+        this.fingerprint = fingerprint;
+    }
+
+    public List<String> getImportClosure() {
+        return importClosure;
+    }
+
+    public void setImportClosure(List<String> importClosure) {
+        this.importClosure = importClosure;
+    }
+
+    public String getPhase() {
+        return phase;
+    }
+
+    public void setPhase(String phase) {
+        this.phase = phase;
+    }
+
+    public int getProgress() {
+        return progress;
+    }
+
+    public void setProgress(int progress) {
+        this.progress = progress;
+    }
 }
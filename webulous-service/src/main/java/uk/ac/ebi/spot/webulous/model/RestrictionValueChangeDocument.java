@@ -0,0 +1,97 @@
+package uk.ac.ebi.spot.webulous.model;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+import java.util.Date;
+
+/**
+ * @author Simon Jupp
+ * @date 18/10/2026
+ * Samples, Phenotypes and Ontologies Team, EMBL-EBI
+ *
+ * The values added to and removed from a restriction by one refresh. Applying the changes for every version after
+ * the one a client has brings its copy of the values up to date.
+ */
+@Document(collection = "restrictionvaluechanges")
+@CompoundIndex(name = "template_restriction_version", def = "{'templateId': 1, 'restrictionKey': 1, 'version': 1}", unique = true)
+public class RestrictionValueChangeDocument {
+
+    @Id
+    private String id;
+    private String templateId;
+    private String restrictionKey;
+    private long version;
+    private String[][] added;
+    private String[][] removed;
+    private Date created;
+
+    public RestrictionValueChangeDocument() {
+    }
+
+    public RestrictionValueChangeDocument(String templateId, String restrictionKey, long version, String[][] added, String[][] removed) {
+        this.templateId = templateId;
+        this.restrictionKey = restrictionKey;
+        this.version = version;
+        this.added = added;
+        this.removed = removed;
+        this.created = new Date();
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public void setId(String id) {
+        this.id = id;
+    }
+
+    public String getTemplateId() {
+        return templateId;
+    }
+
+    public void setTemplateId(String templateId) {
+        this.templateId = templateId;
+    }
+
+    public String getRestrictionKey() {
+        return restrictionKey;
+    }
+
+    public void setRestrictionKey(String restrictionKey) {
+        this.restrictionKey = restrictionKey;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public void setVersion(long version) {
+        this.version = version;
+    }
+
+    public String[][] getAdded() {
+        return added;
+    }
+
+    public void setAdded(String[][] added) {
+        this.added = added;
+    }
+
+    public String[][] getRemoved() {
+        return removed;
+    }
+
+    public void setRemoved(String[][] removed) {
+        this.removed = removed;
+    }
+
+    public Date getCreated() {
+        return created;
+    }
+
+    public void setCreated(Date created) {
+        this.created = created;
+    }
+}
@@ -0,0 +1,70 @@
+package uk.ac.ebi.spot.webulous.model;
+
+/**
+ * @author Simon Jupp
+ * @date 18/10/2026
+ * Samples, Phenotypes and Ontologies Team, EMBL-EBI
+ *
+ * What a client needs to apply to its copy of a restriction's values to get from one version to the latest.
+ * When reset is true the client's copy can't be brought up to date from the changes that are kept, and should be
+ * replaced by the added values.
+ */
+public class RestrictionValueChanges {
+
+    private long since;
+    private long version;
+    private boolean reset;
+    private String[][] added;
+    private String[][] removed;
+
+    public RestrictionValueChanges() {
+    }
+
+    public RestrictionValueChanges(long since, long version, boolean reset, String[][] added, String[][] removed) {
+        this.since = since;
+        this.version = version;
+        this.reset = reset;
+        this.added = added;
+        this.removed = removed;
+    }
+
+    public long getSince() {
+        return since;
+    }
+
+    public void setSince(long since) {
+        this.since = since;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public void setVersion(long version) {
+        this.version = version;
+    }
+
+    public boolean isReset() {
+        return reset;
+    }
+
+    public void setReset(boolean reset) {
+        this.reset = reset;
+    }
+
+    public String[][] getAdded() {
+        return added;
+    }
+
+    public void setAdded(String[][] added) {
+        this.added = added;
+    }
+
+    public String[][] getRemoved() {
+        return removed;
+    }
+
+    public void setRemoved(String[][] removed) {
+        this.removed = removed;
+    }
+}
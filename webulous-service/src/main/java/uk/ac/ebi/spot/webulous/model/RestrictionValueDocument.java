@@ -0,0 +1,101 @@
+package uk.ac.ebi.spot.webulous.model;
+
+import org.springframework.data.annotation.Id;
+import org.springframework.data.mongodb.core.index.CompoundIndex;
+import org.springframework.data.mongodb.core.index.CompoundIndexes;
+import org.springframework.data.mongodb.core.mapping.Document;
+
+/**
+ * @author Simon Jupp
+ * @date 18/10/2026
+ * Samples, Phenotypes and Ontologies Team, EMBL-EBI
+ *
+ * One value of a computed restriction, kept out of the template so large value lists don't have to be loaded with it.
+ * Values belong to a template and a restriction key, which is derived from the restriction's definition, and are
+ * numbered in the order the restriction query returned them. Each refresh writes its values under a new version and
+ * only the version the template's restriction points to is read, so readers never see a list half replaced.
+ */
+@Document(collection = "restrictionvalues")
+@CompoundIndexes({
+        @CompoundIndex(name = "template_restriction_version_position", def = "{'templateId': 1, 'restrictionKey': 1, 'valuesVersion': 1, 'position': 1}"),
+        @CompoundIndex(name = "template_restriction_version_label", def = "{'templateId': 1, 'restrictionKey': 1, 'valuesVersion': 1, 'label': 1}")
+})
+public class RestrictionValueDocument {
+
+    @Id
+    private String id;
+    private String templateId;
+    private String restrictionKey;
+    private long valuesVersion;
+    private int position;
+    private String label;
+    private String iri;
+
+    public RestrictionValueDocument() {
+    }
+
+    public RestrictionValueDocument(String templateId, String restrictionKey, long valuesVersion, int position, String label, String iri) {
+        this.templateId = templateId;
+        this.restrictionKey = restrictionKey;
+        this.valuesVersion = valuesVersion;
+        this.position = position;
+        this.label = label;
+        this.iri = iri;
+    }
+
+    public String getId() {
+        return id;
+    }
+
+    public void setId(String id) {
+        this.id = id;
+    }
+
+    public String getTemplateId() {
+        return templateId;
+    }
+
+    public void setTemplateId(String templateId) {
+        this.templateId = templateId;
+    }
+
+    public String getRestrictionKey() {
+        return restrictionKey;
+    }
+
+    public void setRestrictionKey(String restrictionKey) {
+        this.restrictionKey = restrictionKey;
+    }
+
+    public long getValuesVersion() {
+        return valuesVersion;
+    }
+
+    public void setValuesVersion(long valuesVersion) {
+        this.valuesVersion = valuesVersion;
+    }
+
+    public int getPosition() {
+        return position;
+    }
+
+    public void setPosition(int position) {
+        this.position = position;
+    }
+
+    public String getLabel() {
+        return label;
+    }
+
+    public void setLabel(String label) {
+        this.label = label;
+    }
+
+    public String getIri() {
+        return iri;
+    }
+
+    public void setIri(String iri) {
+        this.iri = iri;
+    }
+}
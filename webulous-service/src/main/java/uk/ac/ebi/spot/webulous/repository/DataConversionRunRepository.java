@@ -1,6 +1,9 @@
 package uk.ac.ebi.spot.webulous.repository;
 
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.mongodb.repository.MongoRepository;
+import org.springframework.data.mongodb.repository.Query;
 import org.springframework.data.rest.core.annotation.RepositoryRestResource;
 import uk.ac.ebi.spot.webulous.model.DataConversionRunDocument;
 import uk.ac.ebi.spot.webulous.model.RestrictionRunDocument;
@@ -19,4 +22,13 @@ public interface DataConversionRunRepository extends MongoRepository<DataConvers
     List<DataConversionRunDocument> findByStatus(Status status);
 
     List<DataConversionRunDocument> findByTemplateId(String templateId);
+
+    /**
+     * Runs without their submitted data or API key, for listing
+     */
+    @Query(value = "{}", fields = "{'data': 0, 'apiKey': 0}")
+    Page<DataConversionRunDocument> findSummaries(Pageable pageable);
+
+    @Query(value = "{'templateId': ?0}", fields = "{'data': 0, 'apiKey': 0}")
+    Page<DataConversionRunDocument> findSummariesByTemplateId(String templateId, Pageable pageable);
 }
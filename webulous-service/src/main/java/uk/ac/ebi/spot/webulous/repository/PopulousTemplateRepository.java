@@ -3,6 +3,7 @@ package uk.ac.ebi.spot.webulous.repository;
 import org.springframework.data.domain.Page;
 import org.springframework.data.domain.Pageable;
 import org.springframework.data.mongodb.repository.MongoRepository;
+import org.springframework.data.mongodb.repository.Query;
 import org.springframework.data.rest.core.annotation.RepositoryRestResource;
 import uk.ac.ebi.spot.webulous.model.PopulousTemplateDocument;
 
@@ -16,11 +17,20 @@ import java.util.List;
  *
  */
 @RepositoryRestResource(collectionResourceRel = "templates", path = "templates")
-public interface PopulousTemplateRepository extends MongoRepository<PopulousTemplateDocument, String> {
+public interface PopulousTemplateRepository extends MongoRepository<PopulousTemplateDocument, String>, PopulousTemplateRepositoryCustom {
 
     Page<PopulousTemplateDocument> findAll(Pageable pageable);
 
     List<PopulousTemplateDocument> findByActive(boolean active);
 
     List<PopulousTemplateDocument> findByTemplateGroupName(String groupName);
+
+    /**
+     * Templates with only their id, description, group and active flag, for listing
+     */
+    @Query(value = "{}", fields = "{'description': 1, 'templateGroupName': 1, 'active': 1}")
+    Page<PopulousTemplateDocument> findSummaries(Pageable pageable);
+
+    @Query(value = "{'active': true}", fields = "{'description': 1, 'templateGroupName': 1, 'active': 1}")
+    List<PopulousTemplateDocument> findActiveSummaries();
 }
@@ -0,0 +1,22 @@
+package uk.ac.ebi.spot.webulous.repository;
+
+import uk.ac.ebi.spot.webulous.model.PopulousDataRestriction;
+
+/**
+ * @author Simon Jupp
+ * @date 18/10/2026
+ * Samples, Phenotypes and Ontologies Team, EMBL-EBI
+ *
+ * Targeted updates to parts of a template, so writers don't have to save the whole document
+ */
+public interface PopulousTemplateRepositoryCustom {
+
+    /**
+     * Write the value count, values version and embedded values of a restriction to every restriction in the template with
+     * the same definition, as they share their values. The write only happens if the template still has a restriction with
+     * that definition, so edits made since the values were computed aren't overwritten.
+     *
+     * @return true if the template was updated
+     */
+    boolean updateRestrictionValues(String templateId, PopulousDataRestriction restriction);
+}
@@ -0,0 +1,68 @@
+package uk.ac.ebi.spot.webulous.repository;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.mongodb.core.MongoOperations;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import uk.ac.ebi.spot.webulous.model.PopulousDataRestriction;
+import uk.ac.ebi.spot.webulous.model.PopulousTemplateDocument;
+
+import java.util.List;
+
+/**
+ * @author Simon Jupp
+ * @date 18/10/2026
+ * Samples, Phenotypes and Ontologies Team, EMBL-EBI
+ */
+public class PopulousTemplateRepositoryImpl implements PopulousTemplateRepositoryCustom {
+
+    // the restrictions are found and then written, which is tried again if they move in between
+    private static final int ATTEMPTS = 2;
+
+    @Autowired
+    private MongoOperations mongoOperations;
+
+    @Override
+    public boolean updateRestrictionValues(String templateId, PopulousDataRestriction restriction) {
+
+        for (int attempt = 0; attempt < ATTEMPTS; attempt++) {
+            PopulousTemplateDocument template = mongoOperations.findById(templateId, PopulousTemplateDocument.class);
+            if (template == null) {
+                return false;
+            }
+
+            // the restriction's definition is its version, values computed for one definition don't belong to another
+            Criteria criteria = Criteria.where("_id").is(templateId);
+            Update update = new Update();
+            boolean found = false;
+            List<PopulousDataRestriction> restrictions = template.getDataRestrictions();
+            for (int index = 0; index < restrictions.size(); index++) {
+                if (!isSameDefinition(restrictions.get(index), restriction)) {
+                    continue;
+                }
+                found = true;
+                String path = "dataRestrictions." + index;
+                criteria = criteria.and(path + ".restrictionType").is(restriction.getRestrictionType())
+                        .and(path + ".reasonerType").is(restriction.getReasonerType())
+                        .and(path + ".classExpression").is(restriction.getClassExpression());
+                update.set(path + ".valueCount", restriction.getValueCount())
+                        .set(path + ".valuesVersion", restriction.getValuesVersion())
+                        .set(path + ".values", restriction.getValues());
+            }
+            if (!found) {
+                return false;
+            }
+            if (mongoOperations.updateFirst(new Query(criteria), update, PopulousTemplateDocument.class).getN() > 0) {
+                return true;
+            }
+        }
+        return false;
+    }
+
+    private boolean isSameDefinition(PopulousDataRestriction a, PopulousDataRestriction b) {
+        return a.getRestrictionType() == b.getRestrictionType()
+                && a.getReasonerType() == b.getReasonerType()
+                && (a.getClassExpression() == null ? b.getClassExpression() == null : a.getClassExpression().equals(b.getClassExpression()));
+    }
+}
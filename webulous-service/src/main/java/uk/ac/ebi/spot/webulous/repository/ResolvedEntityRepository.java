@@ -0,0 +1,20 @@
+package uk.ac.ebi.spot.webulous.repository;
+
+import org.springframework.data.mongodb.repository.MongoRepository;
+import org.springframework.data.rest.core.annotation.RepositoryRestResource;
+import uk.ac.ebi.spot.webulous.model.ResolvedEntityDocument;
+
+import java.util.List;
+
+/**
+ * @author Simon Jupp
+ * @date 18/10/2026
+ * Samples, Phenotypes and Ontologies Team, EMBL-EBI
+ */
+@RepositoryRestResource(exported = false)
+public interface ResolvedEntityRepository extends MongoRepository<ResolvedEntityDocument, String>, ResolvedEntityRepositoryCustom {
+
+    List<ResolvedEntityDocument> findByTemplateId(String templateId);
+
+    Long deleteByTemplateId(String templateId);
+}
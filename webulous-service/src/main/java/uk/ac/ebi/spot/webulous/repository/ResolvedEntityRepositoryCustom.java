@@ -0,0 +1,18 @@
+package uk.ac.ebi.spot.webulous.repository;
+
+/**
+ * @author Simon Jupp
+ * @date 18/10/2026
+ * Samples, Phenotypes and Ontologies Team, EMBL-EBI
+ */
+public interface ResolvedEntityRepositoryCustom {
+
+    /**
+     * Record that a value resolved to this IRI for the template, unless the value has already been resolved.
+     * The first resolution of a value wins, so concurrent runs that minted the same value don't clash.
+     *
+     * @param label the normalised value
+     * @return true if the resolution was recorded, false if the value was already resolved
+     */
+    boolean saveIfAbsent(String templateId, String label, String type, String iri);
+}
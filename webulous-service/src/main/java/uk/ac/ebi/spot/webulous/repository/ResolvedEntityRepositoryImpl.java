@@ -0,0 +1,36 @@
+package uk.ac.ebi.spot.webulous.repository;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.dao.DuplicateKeyException;
+import org.springframework.data.mongodb.core.MongoOperations;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import uk.ac.ebi.spot.webulous.model.ResolvedEntityDocument;
+
+import java.util.Date;
+
+/**
+ * @author Simon Jupp
+ * @date 18/10/2026
+ * Samples, Phenotypes and Ontologies Team, EMBL-EBI
+ */
+public class ResolvedEntityRepositoryImpl implements ResolvedEntityRepositoryCustom {
+
+    @Autowired
+    private MongoOperations mongoOperations;
+
+    @Override
+    public boolean saveIfAbsent(String templateId, String label, String type, String iri) {
+        Query query = new Query(Criteria.where("templateId").is(templateId).and("type").is(type).and("label").is(label));
+        Update update = new Update()
+                .setOnInsert("iri", iri)
+                .setOnInsert("created", new Date());
+        try {
+            return mongoOperations.upsert(query, update, ResolvedEntityDocument.class).getUpsertedId() != null;
+        } catch (DuplicateKeyException e) {
+            // another run inserted the same value between our query and insert, theirs stands
+            return false;
+        }
+    }
+}
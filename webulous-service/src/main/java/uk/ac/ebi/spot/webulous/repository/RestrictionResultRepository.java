@@ -0,0 +1,15 @@
+package uk.ac.ebi.spot.webulous.repository;
+
+import org.springframework.data.mongodb.repository.MongoRepository;
+import org.springframework.data.rest.core.annotation.RepositoryRestResource;
+import uk.ac.ebi.spot.webulous.model.RestrictionResultDocument;
+
+/**
+ * @author Simon Jupp
+ * @date 18/10/2026
+ * Samples, Phenotypes and Ontologies Team, EMBL-EBI
+ */
+@RepositoryRestResource(exported = false)
+public interface RestrictionResultRepository extends MongoRepository<RestrictionResultDocument, String> {
+
+}
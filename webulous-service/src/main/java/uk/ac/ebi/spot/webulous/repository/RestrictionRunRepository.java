@@ -14,11 +14,13 @@ import java.util.List;
  * Samples, Phenotypes and Ontologies Team, EMBL-EBI
  */
 @RepositoryRestResource(collectionResourceRel = "restrictions", path = "restrictions")
-public interface RestrictionRunRepository extends MongoRepository<RestrictionRunDocument, String> {
+public interface RestrictionRunRepository extends MongoRepository<RestrictionRunDocument, String>, RestrictionRunRepositoryCustom {
 
     List<RestrictionRunDocument> findByStatus(Status status);
 
     List<RestrictionRunDocument> findByTemplateId(String templateId, Sort sort);
 
     RestrictionRunDocument findByTemplateIdAndStatus(String id, Status queued);
+
+    RestrictionRunDocument findFirstByTemplateIdAndStatusOrderByLastUpdateDesc(String templateId, Status status);
 }
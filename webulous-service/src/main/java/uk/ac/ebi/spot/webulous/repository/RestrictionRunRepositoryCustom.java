@@ -0,0 +1,16 @@
+package uk.ac.ebi.spot.webulous.repository;
+
+/**
+ * @author Simon Jupp
+ * @date 18/10/2026
+ * Samples, Phenotypes and Ontologies Team, EMBL-EBI
+ */
+public interface RestrictionRunRepositoryCustom {
+
+    /**
+     * Record how far the run has got, without touching the rest of the document. Only runs that are still updating are changed.
+     *
+     * @return true if the run was updated
+     */
+    boolean updateProgress(String runId, String phase, int progress, String message);
+}
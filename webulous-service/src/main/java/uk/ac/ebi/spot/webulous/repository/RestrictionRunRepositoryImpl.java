@@ -0,0 +1,34 @@
+package uk.ac.ebi.spot.webulous.repository;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.mongodb.core.MongoOperations;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.mongodb.core.query.Update;
+import uk.ac.ebi.spot.webulous.model.RestrictionRunDocument;
+import uk.ac.ebi.spot.webulous.model.Status;
+
+import java.util.Date;
+
+/**
+ * @author Simon Jupp
+ * @date 18/10/2026
+ * Samples, Phenotypes and Ontologies Team, EMBL-EBI
+ */
+public class RestrictionRunRepositoryImpl implements RestrictionRunRepositoryCustom {
+
+    @Autowired
+    private MongoOperations mongoOperations;
+
+    @Override
+    public boolean updateProgress(String runId, String phase, int progress, String message) {
+        // a late report mustn't put a finished run back to looking busy
+        Query query = new Query(Criteria.where("_id").is(runId).and("status").is(Status.UPDATING));
+        Update update = new Update()
+                .set("phase", phase)
+                .set("progress", progress)
+                .set("message", message)
+                .set("lastUpdate", new Date());
+        return mongoOperations.updateFirst(query, update, RestrictionRunDocument.class).getN() > 0;
+    }
+}
@@ -0,0 +1,31 @@
+package uk.ac.ebi.spot.webulous.repository;
+
+import org.springframework.data.mongodb.repository.MongoRepository;
+import org.springframework.data.rest.core.annotation.RepositoryRestResource;
+import uk.ac.ebi.spot.webulous.model.RestrictionValueChangeDocument;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * @author Simon Jupp
+ * @date 18/10/2026
+ * Samples, Phenotypes and Ontologies Team, EMBL-EBI
+ */
+@RepositoryRestResource(exported = false)
+public interface RestrictionValueChangeRepository extends MongoRepository<RestrictionValueChangeDocument, String> {
+
+    List<RestrictionValueChangeDocument> findByTemplateIdAndRestrictionKeyAndVersionGreaterThanOrderByVersionAsc(String templateId, String restrictionKey, long version);
+
+    RestrictionValueChangeDocument findFirstByTemplateIdAndRestrictionKeyOrderByVersionAsc(String templateId, String restrictionKey);
+
+    RestrictionValueChangeDocument findFirstByTemplateIdAndRestrictionKeyOrderByVersionDesc(String templateId, String restrictionKey);
+
+    Long deleteByTemplateIdAndRestrictionKeyAndVersionLessThan(String templateId, String restrictionKey, long version);
+
+    Long deleteByTemplateIdAndRestrictionKeyAndVersionGreaterThan(String templateId, String restrictionKey, long version);
+
+    Long deleteByTemplateIdAndRestrictionKeyNotIn(String templateId, Collection<String> restrictionKeys);
+
+    Long deleteByTemplateId(String templateId);
+}
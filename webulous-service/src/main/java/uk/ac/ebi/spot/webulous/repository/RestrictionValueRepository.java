@@ -0,0 +1,35 @@
+package uk.ac.ebi.spot.webulous.repository;
+
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.mongodb.repository.MongoRepository;
+import org.springframework.data.rest.core.annotation.RepositoryRestResource;
+import uk.ac.ebi.spot.webulous.model.RestrictionValueDocument;
+
+import java.util.Collection;
+import java.util.List;
+
+/**
+ * @author Simon Jupp
+ * @date 18/10/2026
+ * Samples, Phenotypes and Ontologies Team, EMBL-EBI
+ */
+@RepositoryRestResource(exported = false)
+public interface RestrictionValueRepository extends MongoRepository<RestrictionValueDocument, String>, RestrictionValueRepositoryCustom {
+
+    Page<RestrictionValueDocument> findByTemplateIdAndRestrictionKeyAndValuesVersionOrderByPositionAsc(String templateId, String restrictionKey, long valuesVersion, Pageable pageable);
+
+    List<RestrictionValueDocument> findByTemplateIdAndRestrictionKeyAndValuesVersionOrderByPositionAsc(String templateId, String restrictionKey, long valuesVersion);
+
+    List<RestrictionValueDocument> findByTemplateIdAndRestrictionKeyAndValuesVersionAndLabel(String templateId, String restrictionKey, long valuesVersion, String label);
+
+    Long countByTemplateIdAndRestrictionKeyAndValuesVersion(String templateId, String restrictionKey, long valuesVersion);
+
+    Long deleteByTemplateIdAndRestrictionKeyAndValuesVersion(String templateId, String restrictionKey, long valuesVersion);
+
+    Long deleteByTemplateIdAndRestrictionKeyAndValuesVersionNot(String templateId, String restrictionKey, long valuesVersion);
+
+    Long deleteByTemplateIdAndRestrictionKeyNotIn(String templateId, Collection<String> restrictionKeys);
+
+    Long deleteByTemplateId(String templateId);
+}
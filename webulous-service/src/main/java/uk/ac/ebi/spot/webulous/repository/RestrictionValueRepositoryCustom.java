@@ -0,0 +1,23 @@
+package uk.ac.ebi.spot.webulous.repository;
+
+import org.springframework.data.util.CloseableIterator;
+import uk.ac.ebi.spot.webulous.model.RestrictionValueDocument;
+
+/**
+ * @author Simon Jupp
+ * @date 18/10/2026
+ * Samples, Phenotypes and Ontologies Team, EMBL-EBI
+ *
+ * Reads restriction values with a cursor, for callers that want to go through more of them than fit comfortably in memory
+ */
+public interface RestrictionValueRepositoryCustom {
+
+    /**
+     * Read the label and IRI of the values at positions offset to offset + limit in order. The iterator holds a cursor open
+     * on the database until it is closed.
+     *
+     * @param valuesVersion the version of the values the restriction points to
+     * @param limit the most values to read, or 0 for all of them
+     */
+    CloseableIterator<RestrictionValueDocument> streamValues(String templateId, String restrictionKey, long valuesVersion, int offset, int limit);
+}
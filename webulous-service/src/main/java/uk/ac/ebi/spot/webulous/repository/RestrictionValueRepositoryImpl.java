@@ -0,0 +1,36 @@
+package uk.ac.ebi.spot.webulous.repository;
+
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.data.domain.Sort;
+import org.springframework.data.mongodb.core.MongoOperations;
+import org.springframework.data.mongodb.core.query.Criteria;
+import org.springframework.data.mongodb.core.query.Query;
+import org.springframework.data.util.CloseableIterator;
+import uk.ac.ebi.spot.webulous.model.RestrictionValueDocument;
+
+/**
+ * @author Simon Jupp
+ * @date 18/10/2026
+ * Samples, Phenotypes and Ontologies Team, EMBL-EBI
+ */
+public class RestrictionValueRepositoryImpl implements RestrictionValueRepositoryCustom {
+
+    @Autowired
+    private MongoOperations mongoOperations;
+
+    @Override
+    public CloseableIterator<RestrictionValueDocument> streamValues(String templateId, String restrictionKey, long valuesVersion, int offset, int limit) {
+
+        // positions run from 0 with no gaps, so a page is a range on the index rather than a skip over everything before it
+        Criteria criteria = Criteria.where("templateId").is(templateId)
+                .and("restrictionKey").is(restrictionKey)
+                .and("valuesVersion").is(valuesVersion)
+                .and("position").gte(offset);
+        if (limit > 0) {
+            criteria = criteria.lt(offset + limit);
+        }
+        Query query = new Query(criteria).with(new Sort(Sort.Direction.ASC, "position"));
+        query.fields().include("label").include("iri").include("position");
+        return mongoOperations.stream(query, RestrictionValueDocument.class);
+    }
+}
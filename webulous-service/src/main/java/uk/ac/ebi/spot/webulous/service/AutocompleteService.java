@@ -0,0 +1,110 @@
+package uk.ac.ebi.spot.webulous.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.stereotype.Service;
+import uk.ac.ebi.spot.webulous.model.PopulousDataRestriction;
+import uk.ac.ebi.spot.webulous.model.PopulousTemplateDocument;
+import uk.ac.ebi.spot.webulous.model.RestrictionValueChanges;
+
+import java.util.*;
+
+/**
+ * @author Simon Jupp
+ * @date 18/10/2026
+ * Samples, Phenotypes and Ontologies Team, EMBL-EBI
+ *
+ * Answers prefix queries over restriction values from in-memory {@link PrefixIndex}es. An index is built the first
+ * time a restriction is queried and kept while it's in use. When a run changes the values of a restriction that has
+ * an index, the changes since the indexed version are applied to it rather than reading all the values again.
+ */
+@Service
+public class AutocompleteService {
+
+    @Autowired
+    private RestrictionValueService restrictionValueService;
+
+    // how many restriction indexes to keep, the least recently used go first
+    @Value("${webulous.autocomplete.cache.size:100}")
+    private int cacheSize;
+
+    private final Map<String, PrefixIndex> indexes = new LinkedHashMap<String, PrefixIndex>(16, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<String, PrefixIndex> eldest) {
+            return size() > cacheSize;
+        }
+    };
+
+    private Logger logger = LoggerFactory.getLogger(getClass());
+
+    public Logger getLog() {
+        return logger;
+    }
+
+    /**
+     * @return up to limit [label, iri] values of the restriction that match the prefix
+     */
+    public List<String[]> complete(String templateId, PopulousDataRestriction restriction, String prefix, int limit) {
+        return getIndex(templateId, restriction).complete(prefix, limit);
+    }
+
+    private PrefixIndex getIndex(String templateId, PopulousDataRestriction restriction) {
+        String key = getKey(templateId, restriction);
+        PrefixIndex index;
+        synchronized (indexes) {
+            index = indexes.get(key);
+        }
+        if (index == null || index.getVersion() < restriction.getValuesVersion()) {
+            index = update(templateId, restriction, index);
+            synchronized (indexes) {
+                indexes.put(key, index);
+            }
+        }
+        return index;
+    }
+
+    /**
+     * Bring any indexes of these restrictions up to date after their values have changed
+     */
+    public void refresh(PopulousTemplateDocument templateDocument, Collection<Integer> restrictionIndexes) {
+        for (int restrictionIndex : restrictionIndexes) {
+            PopulousDataRestriction restriction = templateDocument.getDataRestrictions().get(restrictionIndex);
+            String key = getKey(templateDocument.getId(), restriction);
+            PrefixIndex index;
+            synchronized (indexes) {
+                index = indexes.get(key);
+            }
+            // only restrictions someone is querying are worth indexing up front
+            if (index != null && index.getVersion() < restriction.getValuesVersion()) {
+                index = update(templateDocument.getId(), restriction, index);
+                synchronized (indexes) {
+                    indexes.put(key, index);
+                }
+            }
+        }
+    }
+
+    private PrefixIndex update(String templateId, PopulousDataRestriction restriction, PrefixIndex index) {
+        long start = System.currentTimeMillis();
+        PrefixIndex updated;
+        if (index == null) {
+            updated = PrefixIndex.build(restriction.getValuesVersion(), restrictionValueService.getAllValues(templateId, restriction));
+        }
+        else {
+            RestrictionValueChanges changes = restrictionValueService.getChanges(templateId, restriction, index.getVersion());
+            updated = changes.isReset() ?
+                    PrefixIndex.build(changes.getVersion(), changes.getAdded()) :
+                    index.withChanges(changes.getVersion(), changes.getAdded(), changes.getRemoved());
+        }
+        getLog().debug("Indexed " + updated.size() + " values of " + restriction.getRestrictionName() + " at version " + updated.getVersion()
+                + " in " + (System.currentTimeMillis() - start) + "ms");
+        return updated;
+    }
+
+    // the values version is per restriction definition, so the index is too
+    private String getKey(String templateId, PopulousDataRestriction restriction) {
+        return templateId + "|" + restrictionValueService.getRestrictionKey(restriction);
+    }
+}
@@ -6,19 +6,25 @@ import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.Pageable;
 import org.springframework.data.domain.Sort;
 import org.springframework.data.rest.webmvc.ResourceNotFoundException;
 import org.springframework.stereotype.Service;
 import uk.ac.ebi.spot.webulous.entity.PseudoRandomAutoIDGenerator;
 import uk.ac.ebi.spot.webulous.entity.SimpleEntityCreation;
 import uk.ac.ebi.spot.webulous.entity.UrigenEntityFactory;
+import uk.ac.ebi.spot.webulous.entity.urigen.UrigenUriReservoir;
 import uk.ac.ebi.spot.webulous.model.DataSubmission;
 import uk.ac.ebi.spot.webulous.model.DataConversionRunDocument;
 import uk.ac.ebi.spot.webulous.model.PopulousTemplateDocument;
+import uk.ac.ebi.spot.webulous.model.ResolvedEntityDocument;
 import uk.ac.ebi.spot.webulous.model.Status;
 import uk.ac.ebi.spot.webulous.repository.DataConversionRunRepository;
 import uk.ac.ebi.spot.webulous.repository.PopulousTemplateRepository;
+import uk.ac.ebi.spot.webulous.repository.ResolvedEntityRepository;
 
+import javax.annotation.PreDestroy;
 import java.io.File;
 import java.io.FileNotFoundException;
 import java.io.FileOutputStream;
@@ -44,6 +50,12 @@ public class DataConversionService {
     @Autowired
     MailService mailService;
 
+    @Autowired
+    ResolvedEntityRepository resolvedEntityRepository;
+
+    @Autowired
+    RestrictionValueService restrictionValueService;
+
     @Value("${webulous.oppl.output:}")
     String defaultOutputPath = "/tmp";
 
@@ -54,6 +66,20 @@ public class DataConversionService {
     @Value("${webulous.sendemail:false}")
     private boolean sendEmail;
 
+    // annotation properties that cell values are matched against as well as rdfs:label
+    @Value("${webulous.resolution.synonyms:http://www.geneontology.org/formats/oboInOwl#hasExactSynonym,http://www.w3.org/2004/02/skos/core#altLabel}")
+    private String resolutionSynonyms;
+
+    // how far a cell can be from one of its column's allowed values and still match it, unrestricted columns only match exactly
+    @Value("${webulous.resolution.maxdistance:1}")
+    private int resolutionMaxDistance;
+
+    @Value("${webulous.urigen.prefetch.size:0}")
+    private int urigenPrefetchSize;
+
+    @Value("${webulous.urigen.prefetch.lowwater:0}")
+    private int urigenPrefetchLowWater;
+
     private Logger logger = LoggerFactory.getLogger(getClass());
     public Logger getLog() {
         return  logger;
@@ -91,9 +117,13 @@ public class DataConversionService {
         dataConversionRunRepository.save(runDocument);
 
         PopulousTemplateDocument templateDocument = populousTemplateRepository.findOne(runDocument.getTemplateId());
-
+        // the pattern execution checks cells against the full value lists
+        restrictionValueService.loadValues(templateDocument);
 
         OpplPatternExecutionService patternExecutionService = new OpplPatternExecutionService();
+        patternExecutionService.setEntityResolutionTable(loadResolutionTable(templateDocument.getId()));
+        patternExecutionService.setSynonymProperties(getSynonymProperties());
+        patternExecutionService.setMaxEditDistance(resolutionMaxDistance);
 
         List<String> errorCollector = new ArrayList<String>();
 
@@ -115,6 +145,7 @@ public class DataConversionService {
                         runDocument.getApiKey(),
                         templateDocument.getActiveOntology()
                 );
+                entityFactory.enablePrefetch(urigenPrefetchSize, urigenPrefetchLowWater > 0 ? urigenPrefetchLowWater : urigenPrefetchSize / 2);
                 ontology = patternExecutionService.executeOPPLPatterns(ontologyIri, runDocument.getData(), templateDocument, entityFactory, errorCollector);
             } else {
                 ontology = patternExecutionService.executeOPPLPatterns(ontologyIri, runDocument.getData(), templateDocument, errorCollector);
@@ -127,6 +158,9 @@ public class DataConversionService {
             errorCollector.add(e.getMessage());
         }
 
+        // anything minted has used up an ID even if other rows failed, so remember it either way
+        saveResolutionTable(templateDocument.getId(), patternExecutionService.getEntityResolutionTable());
+
         if (errorCollector.isEmpty())  {
 
             runDocument.setStatus(Status.COMPLETE);
@@ -160,6 +194,45 @@ public class DataConversionService {
         return dataConversionRunRepository.save(runDocument);
     }
 
+    private List<IRI> getSynonymProperties() {
+        List<IRI> properties = new ArrayList<IRI>();
+        for (String iri : resolutionSynonyms.split(",")) {
+            if (!StringUtils.isBlank(iri)) {
+                properties.add(IRI.create(iri.trim()));
+            }
+        }
+        return properties;
+    }
+
+    private EntityResolutionTable loadResolutionTable(String templateId) {
+        EntityResolutionTable table = new EntityResolutionTable();
+        for (ResolvedEntityDocument resolved : resolvedEntityRepository.findByTemplateId(templateId)) {
+            table.preload(resolved.getLabel(), resolved.getType(), IRI.create(resolved.getIri()));
+        }
+        getLog().debug("Loaded " + table.size() + " previously resolved values for template " + templateId);
+        return table;
+    }
+
+    private void saveResolutionTable(String templateId, EntityResolutionTable table) {
+        int saved = 0;
+        for (EntityResolutionTable.Entry entry : table.getAdded()) {
+            // one at a time, so a value a concurrent run already resolved doesn't lose the rest
+            try {
+                if (resolvedEntityRepository.saveIfAbsent(templateId, entry.getLabel(), entry.getType(), entry.getIri().toString())) {
+                    saved++;
+                }
+            } catch (Exception e) {
+                getLog().error("Failed to save resolution of '" + entry.getLabel() + "' to " + entry.getIri() + " for template " + templateId + ": " + e.getMessage(), e);
+            }
+        }
+        getLog().debug("Saved " + saved + " of " + table.getAdded().size() + " new resolved values for template " + templateId);
+    }
+
+    @PreDestroy
+    public void releaseUrigenReservations() {
+        UrigenUriReservoir.shutdownAll();
+    }
+
     public List<DataConversionRunDocument> findAll(Sort sort) {
         return dataConversionRunRepository.findAll(sort);
     }
@@ -168,6 +241,17 @@ public class DataConversionService {
         return dataConversionRunRepository.findByTemplateId(templateId);
     }
 
+    /**
+     * @return a page of runs without their data, for listing
+     */
+    public Page<DataConversionRunDocument> findSummaries(Pageable pageable) {
+        return dataConversionRunRepository.findSummaries(pageable);
+    }
+
+    public Page<DataConversionRunDocument> findSummariesByTemplateId(String templateId, Pageable pageable) {
+        return dataConversionRunRepository.findSummariesByTemplateId(templateId, pageable);
+    }
+
     public void deleteRun(String runid) {
         dataConversionRunRepository.delete(runid);
     }
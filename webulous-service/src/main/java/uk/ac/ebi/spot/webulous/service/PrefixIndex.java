@@ -0,0 +1,169 @@
+package uk.ac.ebi.spot.webulous.service;
+
+import java.util.*;
+
+/**
+ * @author Simon Jupp
+ * @date 18/10/2026
+ * Samples, Phenotypes and Ontologies Team, EMBL-EBI
+ *
+ * An immutable prefix index over the [label, iri] values of a restriction. Labels are normalised and every word of
+ * a label is a key, so "myel" finds "acute myeloid leukemia". Keys are held in a sorted array and a prefix query is a
+ * pair of binary searches for the first and last keys with the prefix, matches on the start of the label coming
+ * before matches on a later word.
+ */
+public class PrefixIndex {
+
+    // a label with more words than this is only findable by its first few
+    private static final int MAX_WORDS = 8;
+
+    private final long version;
+    private final String[][] values;
+
+    // keys are sorted, entries[x] is the value the key at x came from, firstWord[x] whether it's the start of the label
+    private final String[] keys;
+    private final int[] entries;
+    private final boolean[] firstWord;
+
+    private PrefixIndex(long version, String[][] values, String[] keys, int[] entries, boolean[] firstWord) {
+        this.version = version;
+        this.values = values;
+        this.keys = keys;
+        this.entries = entries;
+        this.firstWord = firstWord;
+    }
+
+    public static PrefixIndex build(long version, String[][] values) {
+        List<Key> keys = new ArrayList<Key>(values.length * 2);
+        for (int x = 0; x < values.length; x++) {
+            String label = normalise(values[x][0]);
+            if (label.isEmpty()) {
+                continue;
+            }
+            keys.add(new Key(label, x, true));
+            int words = 1;
+            for (int c = label.indexOf(' '); c >= 0 && words < MAX_WORDS; c = label.indexOf(' ', c + 1)) {
+                keys.add(new Key(label.substring(c + 1), x, false));
+                words++;
+            }
+        }
+        Collections.sort(keys);
+
+        String[] sortedKeys = new String[keys.size()];
+        int[] entries = new int[keys.size()];
+        boolean[] firstWord = new boolean[keys.size()];
+        for (int x = 0; x < keys.size(); x++) {
+            sortedKeys[x] = keys.get(x).key;
+            entries[x] = keys.get(x).entry;
+            firstWord[x] = keys.get(x).firstWord;
+        }
+        return new PrefixIndex(version, values, sortedKeys, entries, firstWord);
+    }
+
+    /**
+     * @return a new index with these values added and removed
+     */
+    public PrefixIndex withChanges(long version, String[][] added, String[][] removed) {
+        Set<String> removedKeys = new HashSet<String>();
+        for (String[] value : removed) {
+            removedKeys.add(value[1] + "\t" + value[0]);
+        }
+        List<String[]> updated = new ArrayList<String[]>(values.length + added.length);
+        for (String[] value : values) {
+            if (!removedKeys.contains(value[1] + "\t" + value[0])) {
+                updated.add(value);
+            }
+        }
+        updated.addAll(Arrays.asList(added));
+        return build(version, updated.toArray(new String[updated.size()][]));
+    }
+
+    /**
+     * @return up to limit [label, iri] values with a label or a word in the label starting with the prefix
+     */
+    public List<String[]> complete(String prefix, int limit) {
+        String normalised = normalise(prefix);
+        List<String[]> results = new ArrayList<String[]>();
+        if (normalised.isEmpty() || limit <= 0) {
+            return results;
+        }
+
+        // normalised keys never contain \uffff, so every key with the prefix sorts before the prefix followed by it
+        int from = lowerBound(normalised);
+        int to = lowerBound(normalised + '\uffff');
+
+        // labels that start with the prefix first, then labels with a later word that does
+        Set<Integer> seen = new HashSet<Integer>();
+        for (int pass = 0; pass < 2 && results.size() < limit; pass++) {
+            for (int x = from; x < to && results.size() < limit; x++) {
+                if (firstWord[x] == (pass == 0) && seen.add(entries[x])) {
+                    results.add(values[entries[x]]);
+                }
+            }
+        }
+        return results;
+    }
+
+    private int lowerBound(String prefix) {
+        int low = 0;
+        int high = keys.length;
+        while (low < high) {
+            int mid = (low + high) >>> 1;
+            if (keys[mid].compareTo(prefix) < 0) {
+                low = mid + 1;
+            }
+            else {
+                high = mid;
+            }
+        }
+        return low;
+    }
+
+    public long getVersion() {
+        return version;
+    }
+
+    public int size() {
+        return values.length;
+    }
+
+    /**
+     * Lower case, with anything that isn't a letter or a digit treated as a space
+     */
+    public static String normalise(String label) {
+        if (label == null) {
+            return "";
+        }
+        StringBuilder normalised = new StringBuilder(label.length());
+        boolean space = false;
+        for (char c : label.toCharArray()) {
+            if (Character.isLetterOrDigit(c)) {
+                if (space && normalised.length() > 0) {
+                    normalised.append(' ');
+                }
+                normalised.append(Character.toLowerCase(c));
+                space = false;
+            }
+            else {
+                space = true;
+            }
+        }
+        return normalised.toString();
+    }
+
+    private static class Key implements Comparable<Key> {
+        private final String key;
+        private final int entry;
+        private final boolean firstWord;
+
+        Key(String key, int entry, boolean firstWord) {
+            this.key = key;
+            this.entry = entry;
+            this.firstWord = firstWord;
+        }
+
+        public int compareTo(Key o) {
+            return key.compareTo(o.key);
+        }
+    }
+}
@@ -1,9 +1,12 @@
 package uk.ac.ebi.spot.webulous.service;
 
+import org.apache.commons.lang3.StringUtils;
 import org.semanticweb.HermiT.Reasoner;
+import org.semanticweb.owlapi.expression.ParserException;
 import org.semanticweb.owlapi.model.IRI;
 import org.semanticweb.owlapi.model.OWLClass;
 import org.semanticweb.owlapi.model.OWLOntology;
+import org.semanticweb.owlapi.model.OWLOntologyCreationException;
 import org.semanticweb.owlapi.reasoner.OWLReasoner;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
@@ -11,13 +14,22 @@ import org.springframework.beans.factory.annotation.Autowired;
 import org.springframework.beans.factory.annotation.Value;
 import org.springframework.data.domain.Sort;
 import org.springframework.stereotype.Service;
+import uk.ac.ebi.fgpt.ClassificationListener;
+import uk.ac.ebi.fgpt.HierarchyIndex;
+import uk.ac.ebi.fgpt.ImportFingerprint;
 import uk.ac.ebi.fgpt.OntologyDAO;
 import uk.ac.ebi.fgpt.OntologyDAOImpl;
 import uk.ac.ebi.spot.webulous.model.*;
 import uk.ac.ebi.spot.webulous.repository.PopulousTemplateRepository;
+import uk.ac.ebi.spot.webulous.repository.RestrictionResultRepository;
 import uk.ac.ebi.spot.webulous.repository.RestrictionRunRepository;
 
+import javax.annotation.PreDestroy;
+import java.io.File;
+import java.io.IOException;
+import java.security.MessageDigest;
 import java.util.*;
+import java.util.concurrent.*;
 
 /**
  * @author Simon Jupp
@@ -36,11 +48,49 @@ public class RestrictionService {
     @Autowired
     private MailService mailService;
 
+    @Autowired
+    private RestrictionResultRepository restrictionResultRepository;
+
+    @Autowired
+    private RestrictionValueService restrictionValueService;
+
+    @Autowired
+    private AutocompleteService autocompleteService;
+
     private Logger logger = LoggerFactory.getLogger(getClass());
 
     @Value("${webulous.sendemail:false}")
     private boolean sendEmail;
 
+    // restrictions of a template are evaluated concurrently on this many threads
+    @Value("${webulous.restriction.threads:4}")
+    private int restrictionThreads;
+
+    private ExecutorService restrictionExecutor;
+
+    // reuse the values of identical restriction queries over the same version of the imports
+    @Value("${webulous.restriction.resultcache:true}")
+    private boolean useResultCache;
+
+    @Value("${webulous.reasoner:AUTO}")
+    private ReasonerType defaultReasonerType;
+
+    // milliseconds a reasoner gets to classify the imports before it's interrupted, 0 for no limit
+    @Value("${webulous.reasoner.timeout:7200000}")
+    private long reasonerTimeout;
+
+    // the reasoner to fall back to when classification times out, leave empty to fail the run instead
+    @Value("${webulous.reasoner.fallback:STRUCTURAL}")
+    private ReasonerType fallbackReasonerType;
+
+    // how often to save the reasoner's progress on the run, in milliseconds
+    @Value("${webulous.reasoner.progress.interval:10000}")
+    private long progressInterval;
+
+    // directory for told hierarchy indexes, leave empty to always use the reasoner
+    @Value("${webulous.hierarchy.index.dir:}")
+    private String hierarchyIndexDir;
+
     public Logger getLog() {
         return  logger;
     }
@@ -69,87 +119,457 @@ public class RestrictionService {
     public void runAllQueued() {
 
         getLog().trace("Checking for restrictions that are queued");
-        for (RestrictionRunDocument restrictionRunDocument : restrictionRunRepository.findByStatus(Status.QUEUED)) {
-            getLog().info("Starting to run " + restrictionRunDocument.getTemplateName() + " (" + restrictionRunDocument.getId() + ")");
-            run(restrictionRunDocument);
-            getLog().info("Run "+ restrictionRunDocument.getId() + " complete!");
+        List<RestrictionRunDocument> queued = restrictionRunRepository.findByStatus(Status.QUEUED);
+        if (!queued.isEmpty()) {
+            getLog().info("Starting to run " + queued.size() + " queued restriction updates");
+            run(queued);
+            getLog().info("Queued runs complete!");
         }
     }
 
     public RestrictionRunDocument run(RestrictionRunDocument restrictionRunDocument) {
-        // set the status and update
-        restrictionRunDocument.setStatus(Status.UPDATING);
-        restrictionRunDocument.setLastUpdate(new Date());
-        restrictionRunRepository.save(restrictionRunDocument);
+        run(Collections.singletonList(restrictionRunDocument));
+        return restrictionRunDocument;
+    }
 
+    /**
+     * Run a batch of restriction updates. Runs are grouped by the set of ontologies their template imports,
+     * so templates that share the same imports are loaded and classified once and evaluated against the same model.
+     */
+    public List<RestrictionRunDocument> run(List<RestrictionRunDocument> restrictionRunDocuments) {
 
-        String templateId = restrictionRunDocument.getTemplateId();
-        PopulousTemplateDocument populousTemplateDocument = templateRepository.findOne(templateId);
+        Map<String, List<QueuedRun>> runsByImports = new LinkedHashMap<String, List<QueuedRun>>();
 
-        if (populousTemplateDocument == null) {
-            getLog().error("Found a run that reference a missing template with id " + templateId);
-            restrictionRunDocument.setStatus(Status.FAILED);
-            restrictionRunDocument.setMessage("Failed to run as no template found with id " + templateId);
+        for (RestrictionRunDocument restrictionRunDocument : restrictionRunDocuments) {
+            // set the status and update
+            restrictionRunDocument.setStatus(Status.UPDATING);
             restrictionRunDocument.setLastUpdate(new Date());
-        } else {
+            restrictionRunRepository.save(restrictionRunDocument);
 
-            Collection<IRI> importIris = new HashSet<IRI>();
+            String templateId = restrictionRunDocument.getTemplateId();
+            PopulousTemplateDocument populousTemplateDocument = templateRepository.findOne(templateId);
 
-            for (String iri : populousTemplateDocument.getOntologyImports()) {
-                importIris.add(IRI.create(iri));
+            if (populousTemplateDocument == null) {
+                getLog().error("Found a run that reference a missing template with id " + templateId);
+                restrictionRunDocument.setStatus(Status.FAILED);
+                restrictionRunDocument.setMessage("Failed to run as no template found with id " + templateId);
+                restrictionRunDocument.setLastUpdate(new Date());
+                restrictionRunRepository.save(restrictionRunDocument);
+                continue;
             }
 
-            try {
-                OntologyDAO dao = new OntologyDAOImpl(importIris) {
-                    @Override
-                    public OWLReasoner getOWLReasoner(OWLOntology owlOntology) {
-                        return new Reasoner(owlOntology);
-                    }
-                };
+            QueuedRun run = new QueuedRun(restrictionRunDocument, populousTemplateDocument);
+            if (isUnchanged(run)) {
+                continue;
+            }
+
+            String importsKey = getImportsKey(populousTemplateDocument);
+            if (!runsByImports.containsKey(importsKey)) {
+                runsByImports.put(importsKey, new ArrayList<QueuedRun>());
+            }
+            runsByImports.get(importsKey).add(run);
+        }
 
-                for (PopulousDataRestriction restriction : populousTemplateDocument.getDataRestrictions()) {
-                    RestrictionType type = restriction.getRestrictionType();
-                    String[][] values = new String [0][0];
-                    List<OWLClass> classes = new ArrayList<OWLClass>();
-                    if (type.equals(RestrictionType.DESCENDANTS)) {
-                        classes = new ArrayList<OWLClass>(dao.getDescendantClasses(restriction.getClassExpression()));
+        for (Map.Entry<String, List<QueuedRun>> runs : runsByImports.entrySet()) {
+            runWithSharedImports(runs.getKey(), runs.getValue());
+        }
+        return restrictionRunDocuments;
+    }
+
+    private void runWithSharedImports(String importsKey, List<QueuedRun> runs) {
+
+        Collection<IRI> importIris = new HashSet<IRI>();
+        for (String iri : runs.get(0).template.getOntologyImports()) {
+            importIris.add(IRI.create(iri));
+        }
 
+        SharedImports imports = new SharedImports(importIris);
+        imports.progress = new RunProgress();
+        imports.classificationTimeout = reasonerTimeout;
+        imports.fallbackReasonerType = fallbackReasonerType;
+        try {
+            if (runs.size() > 1) {
+                getLog().info("Loading " + importIris + " once for " + runs.size() + " templates");
+            }
+            if (runs.get(0).closureKnown) {
+                imports.knownClosureFingerprint = ImportFingerprint.compute(runs.get(0).importClosure, "");
+            }
+            imports.index = getHierarchyIndex(importsKey, imports);
+
+            for (QueuedRun run : runs) {
+                getLog().info("Starting to run " + run.runDocument.getTemplateName() + " (" + run.runDocument.getId() + ")");
+                imports.progress.run = run;
+                try {
+                    updateRestrictions(run.template, imports);
+                    List<String> loadedClosure = imports.getLoadedClosure();
+                    if (loadedClosure != null) {
+                        if (!new HashSet<String>(loadedClosure).equals(new HashSet<String>(run.importClosure))) {
+                            // the imports have imports we didn't know about, so fingerprint the whole closure
+                            run.importClosure = loadedClosure;
+                            run.fingerprint = ImportFingerprint.compute(loadedClosure, describeRestrictions(run.template));
+                        }
                     }
-                    else if (type.equals(RestrictionType.SUBCLASS)) {
-                        classes = new ArrayList<OWLClass>(dao.getSubclasses(restriction.getClassExpression()));
+                    // a run that fell back to another reasoner shouldn't stop the next one trying again
+                    run.runDocument.setFingerprint(run.timeouts.isEmpty() ? run.fingerprint : null);
+                    run.runDocument.setImportClosure(run.importClosure);
+                    run.runDocument.setStatus(Status.COMPLETE);
+                    if (run.timeouts.isEmpty()) {
+                        run.runDocument.setMessage("Run completed!");
                     }
-                    if (!classes.isEmpty()) {
-                        values = createValuesArray(classes, dao);
-                        restriction.setValues(values);
+                    else {
+                        run.runDocument.setMessage("Run completed, but " + StringUtils.join(run.timeouts, ", "));
                     }
+                } catch (Exception e) {
+                    getLog().error(e.getMessage(), e);
+                    run.runDocument.setStatus(Status.FAILED);
+                    run.runDocument.setMessage(e.getMessage());
                 }
+                finishRun(run);
+            }
+
+        } catch (Exception e) {
+            // couldn't load the imports, so none of the templates can be updated
+            getLog().error(e.getMessage(), e);
+            for (QueuedRun run : runs) {
+                run.runDocument.setStatus(Status.FAILED);
+                run.runDocument.setMessage(e.getMessage());
+                finishRun(run);
+            }
+        } finally {
+            imports.dispose();
+        }
+    }
 
-                templateRepository.save(populousTemplateDocument);
-                restrictionRunDocument.setStatus(Status.COMPLETE);
-                restrictionRunDocument.setMessage("Run completed!");
+    /**
+     * Compute the values of all the template's restrictions. Restrictions answered from the hierarchy index run as
+     * their own tasks, the rest are batched by restriction and reasoner type and spread over the restriction pool.
+     */
+    private void updateRestrictions(PopulousTemplateDocument populousTemplateDocument, SharedImports imports) throws Exception {
 
-            } catch (Exception e) {
-                getLog().error(e.getMessage(), e);
-                restrictionRunDocument.setStatus(Status.FAILED);
-                restrictionRunDocument.setMessage(e.getMessage());
-            } finally {
-                RestrictionRunDocument runDocument = restrictionRunRepository.save(restrictionRunDocument);
-                if (sendEmail) {
-                    try {
-                        String subject = "Webulous template update for " + runDocument.getTemplateName() + ":" + runDocument.getStatus();
-                        String message = "The restriction upates on template " + runDocument.getTemplateName() + " has completed with status : " + runDocument.getStatus() + "\n\n";
-                        mailService.sendEmailNotification(
-                                populousTemplateDocument.getAdminEmailAddresses().split(","),
-                                subject,
-                                message);
-                    } catch (Exception e) {
-                        getLog().error("Failed to send e-mail", e);
-                        runDocument.setMessage("Finished but failed to e-mail notification");
-                    }
+        List<Callable<Void>> queries = new ArrayList<Callable<Void>>();
+        Map<String, List<PopulousDataRestriction>> reasonerBatches = new LinkedHashMap<String, List<PopulousDataRestriction>>();
+        Map<String, ReasonerType> batchReasonerTypes = new HashMap<String, ReasonerType>();
+
+        for (PopulousDataRestriction restriction : populousTemplateDocument.getDataRestrictions()) {
+            RestrictionType type = restriction.getRestrictionType();
+            if (!type.equals(RestrictionType.DESCENDANTS) && !type.equals(RestrictionType.SUBCLASS)) {
+                continue;
+            }
+
+            ReasonerType reasonerType = getReasonerType(populousTemplateDocument, restriction);
+            int classId = imports.getIndexedClass(restriction.getClassExpression(), reasonerType);
+            if (classId >= 0) {
+                queries.add(new IndexQuery(restriction, imports.index, classId));
+            }
+            else if (!readCachedResult(restriction, reasonerType, imports)) {
+                String key = type + "|" + reasonerType;
+                if (!reasonerBatches.containsKey(key)) {
+                    reasonerBatches.put(key, new ArrayList<PopulousDataRestriction>());
+                    batchReasonerTypes.put(key, reasonerType);
                 }
+                reasonerBatches.get(key).add(restriction);
             }
         }
-        return restrictionRunDocument;
+
+        List<ReasonerQuery> reasonerQueries = new ArrayList<ReasonerQuery>();
+        if (!reasonerBatches.isEmpty()) {
+            // load the imports up front rather than have every pool thread wait on the first one to do it
+            OntologyDAO dao = imports.getDao();
+            for (Map.Entry<String, List<PopulousDataRestriction>> batch : reasonerBatches.entrySet()) {
+                // the ontologies can't be read from several threads, so names are looked up and reasoners classified before the pool starts
+                dao.prepare(getClassExpressions(batch.getValue()), batchReasonerTypes.get(batch.getKey()));
+                for (List<PopulousDataRestriction> restrictions : partition(batch.getValue(), restrictionThreads)) {
+                    reasonerQueries.add(new ReasonerQuery(restrictions, dao, batchReasonerTypes.get(batch.getKey())));
+                }
+            }
+            queries.addAll(reasonerQueries);
+        }
+
+        for (Future<Void> result : getRestrictionExecutor().invokeAll(queries)) {
+            try {
+                result.get();
+            } catch (ExecutionException e) {
+                if (e.getCause() instanceof Exception) {
+                    throw (Exception) e.getCause();
+                }
+                throw e;
+            }
+        }
+
+        // the results are rendered here, on one thread, for the same reason
+        for (ReasonerQuery query : reasonerQueries) {
+            query.render();
+        }
+
+        // values from a fallback reasoner aren't what was asked for, so don't let later runs reuse them
+        QueuedRun run = imports.progress.run;
+        if (run == null || run.timeouts.isEmpty()) {
+            for (ReasonerQuery query : reasonerQueries) {
+                for (Map.Entry<PopulousDataRestriction, String[][]> computed : query.values.entrySet()) {
+                    writeCachedResult(computed.getKey(), query.reasonerType, computed.getValue(), imports);
+                }
+            }
+        }
+
+        // the values go in their own collection, the template only keeps the counts and versions, which are written one
+        // restriction at a time so edits made to the template while the run was going aren't overwritten
+        List<Integer> changed = restrictionValueService.storeValues(populousTemplateDocument);
+        autocompleteService.refresh(populousTemplateDocument, changed);
+    }
+
+    private List<List<PopulousDataRestriction>> partition(List<PopulousDataRestriction> restrictions, int parts) {
+        List<List<PopulousDataRestriction>> partitions = new ArrayList<List<PopulousDataRestriction>>();
+        int size = (int) Math.ceil(restrictions.size() / (double) Math.max(1, parts));
+        for (int x = 0; x < restrictions.size(); x += size) {
+            partitions.add(restrictions.subList(x, Math.min(x + size, restrictions.size())));
+        }
+        return partitions;
+    }
+
+    private synchronized ExecutorService getRestrictionExecutor() {
+        if (restrictionExecutor == null) {
+            restrictionExecutor = Executors.newFixedThreadPool(Math.max(1, restrictionThreads), new ThreadFactory() {
+                private int count = 0;
+
+                public synchronized Thread newThread(Runnable r) {
+                    Thread thread = new Thread(r, "restriction-query-" + (++count));
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        }
+        return restrictionExecutor;
+    }
+
+    @PreDestroy
+    public synchronized void shutdownRestrictionExecutor() {
+        if (restrictionExecutor != null) {
+            restrictionExecutor.shutdownNow();
+            restrictionExecutor = null;
+        }
+    }
+
+    // fill the restriction from the result cache, if the same query has already been answered for this version of the imports
+    private boolean readCachedResult(PopulousDataRestriction restriction, ReasonerType reasonerType, SharedImports imports) {
+        String closureFingerprint = imports.getClosureFingerprint();
+        if (!useResultCache || closureFingerprint == null) {
+            return false;
+        }
+        try {
+            RestrictionResultDocument result = restrictionResultRepository.findOne(getResultKey(closureFingerprint, restriction, reasonerType));
+            if (result != null) {
+                getLog().debug("Using cached values for " + restriction.getClassExpression());
+                if (result.getValues().length > 0) {
+                    restriction.setValues(result.getValues());
+                }
+                return true;
+            }
+        } catch (Exception e) {
+            getLog().warn("Couldn't read cached restriction values: " + e.getMessage());
+        }
+        return false;
+    }
+
+    private void writeCachedResult(PopulousDataRestriction restriction, ReasonerType reasonerType, String[][] values, SharedImports imports) {
+        String closureFingerprint = imports.getClosureFingerprint();
+        if (!useResultCache || closureFingerprint == null) {
+            return;
+        }
+        try {
+            restrictionResultRepository.save(new RestrictionResultDocument(
+                    getResultKey(closureFingerprint, restriction, reasonerType),
+                    closureFingerprint,
+                    restriction.getRestrictionType(),
+                    reasonerType,
+                    normaliseExpression(restriction.getClassExpression()),
+                    values));
+        } catch (Exception e) {
+            getLog().warn("Couldn't cache restriction values: " + e.getMessage());
+        }
+    }
+
+    private String getResultKey(String closureFingerprint, PopulousDataRestriction restriction, ReasonerType reasonerType) {
+        return fingerprint(closureFingerprint + "\n" + restriction.getRestrictionType() + "\n" + reasonerType + "\n" + normaliseExpression(restriction.getClassExpression()));
+    }
+
+    // collapse whitespace outside of quoted names, so the same expression typed differently shares a result
+    private String normaliseExpression(String classExpression) {
+        StringBuilder normalised = new StringBuilder();
+        boolean quoted = false;
+        boolean space = false;
+        for (char c : classExpression.trim().toCharArray()) {
+            if (c == '\'') {
+                quoted = !quoted;
+            }
+            if (!quoted && Character.isWhitespace(c)) {
+                space = true;
+                continue;
+            }
+            if (space) {
+                normalised.append(' ');
+                space = false;
+            }
+            normalised.append(c);
+        }
+        return normalised.toString();
+    }
+
+    // a reasoner set on the restriction wins over the template's, which wins over the configured default
+    private ReasonerType getReasonerType(PopulousTemplateDocument templateDocument, PopulousDataRestriction restriction) {
+        if (restriction.getReasonerType() != null && restriction.getReasonerType() != ReasonerType.AUTO) {
+            return restriction.getReasonerType();
+        }
+        if (templateDocument.getReasonerType() != null && templateDocument.getReasonerType() != ReasonerType.AUTO) {
+            return templateDocument.getReasonerType();
+        }
+        return defaultReasonerType;
+    }
+
+    /**
+     * Get the told hierarchy index for this set of imports. Indexes are saved under a fingerprint of the content of the
+     * imports closure, so a saved index is only read back while none of the imports have changed, otherwise the imports
+     * are loaded and a new one is built. Returns null if the index is disabled.
+     */
+    private HierarchyIndex getHierarchyIndex(String importsKey, SharedImports imports) throws OWLOntologyCreationException {
+        if (StringUtils.isBlank(hierarchyIndexDir)) {
+            return null;
+        }
+
+        // each set of imports has its own directory, holding the index for the latest version of the imports
+        File indexDirectory = new File(hierarchyIndexDir, fingerprint(importsKey));
+        if (imports.knownClosureFingerprint != null) {
+            try {
+                HierarchyIndex index = HierarchyIndex.find(indexDirectory, imports.knownClosureFingerprint);
+                if (index != null) {
+                    return index;
+                }
+            } catch (IOException e) {
+                getLog().warn("Couldn't read hierarchy index from " + indexDirectory + ", rebuilding: " + e.getMessage());
+            }
+        }
+
+        HierarchyIndex index = HierarchyIndex.build(imports.getDao().getOntologies());
+        getLog().info("Built hierarchy index of " + index.size() + " classes for " + importsKey.replace("\n", ", ") + (index.isComplete() ? "" : ", the imports need a reasoner so it will only be used for structural restrictions"));
+
+        // named after what was loaded, if an import can't be fingerprinted the index is only good for this run
+        String closureFingerprint = imports.getClosureFingerprint();
+        if (closureFingerprint != null) {
+            try {
+                index.save(indexDirectory, closureFingerprint);
+            } catch (IOException e) {
+                getLog().warn("Couldn't save hierarchy index to " + indexDirectory + ": " + e.getMessage());
+            }
+        }
+        return index;
+    }
+
+    private String fingerprint(String value) {
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-1").digest(value.getBytes("UTF-8"));
+            StringBuilder hex = new StringBuilder();
+            for (byte b : digest) {
+                hex.append(String.format("%02x", b));
+            }
+            return hex.toString();
+        } catch (Exception e) {
+            throw new IllegalStateException("Couldn't compute fingerprint", e);
+        }
+    }
+
+    private void finishRun(QueuedRun run) {
+        run.runDocument.setLastUpdate(new Date());
+        RestrictionRunDocument runDocument = restrictionRunRepository.save(run.runDocument);
+        if (sendEmail) {
+            try {
+                String subject = "Webulous template update for " + runDocument.getTemplateName() + ":" + runDocument.getStatus();
+                String message = "The restriction upates on template " + runDocument.getTemplateName() + " has completed with status : " + runDocument.getStatus() + "\n\n";
+                mailService.sendEmailNotification(
+                        run.template.getAdminEmailAddresses().split(","),
+                        subject,
+                        message);
+            } catch (Exception e) {
+                getLog().error("Failed to send e-mail", e);
+                runDocument.setMessage("Finished but failed to e-mail notification");
+            }
+        }
+    }
+
+    /**
+     * Check whether the imports and restrictions are the same as they were for the last completed run, and if so
+     * complete this run straight away. Sets the fingerprint and the known imports closure on the run either way.
+     */
+    private boolean isUnchanged(QueuedRun run) {
+        RestrictionRunDocument lastComplete = restrictionRunRepository.findFirstByTemplateIdAndStatusOrderByLastUpdateDesc(run.template.getId(), Status.COMPLETE);
+
+        // the closure can only be known from a previous load, the template only lists the direct imports
+        run.importClosure = new ArrayList<String>();
+        if (run.template.getOntologyImports() != null) {
+            for (String iri : run.template.getOntologyImports()) {
+                run.importClosure.add(iri.trim());
+            }
+        }
+        if (lastComplete != null && lastComplete.getImportClosure() != null
+                && lastComplete.getImportClosure().containsAll(run.importClosure)) {
+            run.importClosure = new ArrayList<String>(lastComplete.getImportClosure());
+            run.closureKnown = true;
+        }
+        run.fingerprint = ImportFingerprint.compute(run.importClosure, describeRestrictions(run.template));
+
+        if (lastComplete == null || run.fingerprint == null || !run.fingerprint.equals(lastComplete.getFingerprint())) {
+            return false;
+        }
+
+        getLog().info("Imports and restrictions for " + run.template.getDescription() + " are unchanged, skipping run");
+        run.runDocument.setStatus(Status.COMPLETE);
+        run.runDocument.setMessage("Imports and restrictions unchanged since the run on " + lastComplete.getLastUpdate() + ", nothing to update");
+        run.runDocument.setFingerprint(run.fingerprint);
+        run.runDocument.setImportClosure(run.importClosure);
+        run.runDocument.setLastUpdate(new Date());
+        restrictionRunRepository.save(run.runDocument);
+        return true;
+    }
+
+    /**
+     * Everything about the template that the restriction values depend on, apart from the content of the imports
+     */
+    public String describeRestrictions(PopulousTemplateDocument templateDocument) {
+        StringBuilder description = new StringBuilder(getImportsKey(templateDocument));
+        description.append("\n").append(defaultReasonerType).append("|").append(templateDocument.getReasonerType());
+        for (PopulousDataRestriction restriction : templateDocument.getDataRestrictions()) {
+            description.append("\n").append(describeRestriction(restriction));
+        }
+        return description.toString();
+    }
+
+    public String describeRestriction(PopulousDataRestriction restriction) {
+        return restriction.getRestrictionType() + "|" + restriction.getReasonerType() + "|" + restriction.getClassExpression();
+    }
+
+    public boolean hasCompletedRun(String templateId) {
+        return restrictionRunRepository.findFirstByTemplateIdAndStatusOrderByLastUpdateDesc(templateId, Status.COMPLETE) != null;
+    }
+
+    // templates with the same imports share a key, regardless of the order they were entered in
+    private String getImportsKey(PopulousTemplateDocument templateDocument) {
+        List<String> imports = new ArrayList<String>();
+        if (templateDocument.getOntologyImports() != null) {
+            for (String iri : templateDocument.getOntologyImports()) {
+                imports.add(iri.trim());
+            }
+        }
+        Collections.sort(imports);
+        return StringUtils.join(imports, "\n");
+    }
+
+    private String[][] createValuesArray(BitSet classes, HierarchyIndex index) {
+        String [][] values = new String[classes.cardinality()][2];
+        int x = 0;
+        for (int id = classes.nextSetBit(0); id >= 0; id = classes.nextSetBit(id + 1)) {
+            values[x][0] = index.getRendering(id);
+            values[x][1] = index.getIri(id);
+            x++;
+        }
+        return values;
     }
 
     private String[][] createValuesArray(List<OWLClass> classes, OntologyDAO dao) {
@@ -191,6 +611,204 @@ public class RestrictionService {
         return restrictionRunDocument;
     }
 
+    private class IndexQuery implements Callable<Void> {
+        private final PopulousDataRestriction restriction;
+        private final HierarchyIndex index;
+        private final int classId;
+
+        IndexQuery(PopulousDataRestriction restriction, HierarchyIndex index, int classId) {
+            this.restriction = restriction;
+            this.index = index;
+            this.classId = classId;
+        }
+
+        public Void call() {
+            BitSet classes = restriction.getRestrictionType().equals(RestrictionType.DESCENDANTS) ?
+                    index.getDescendants(classId) : index.getChildren(classId);
+            String[][] values = createValuesArray(classes, index);
+            if (values.length > 0) {
+                restriction.setValues(values);
+            }
+            return null;
+        }
+    }
+
+    private Set<String> getClassExpressions(List<PopulousDataRestriction> restrictions) {
+        Set<String> expressions = new LinkedHashSet<String>();
+        for (PopulousDataRestriction restriction : restrictions) {
+            expressions.add(restriction.getClassExpression());
+        }
+        return expressions;
+    }
+
+    // every restriction in the batch has the same restriction type and reasoner type
+    private class ReasonerQuery implements Callable<Void> {
+        private final List<PopulousDataRestriction> restrictions;
+        private final OntologyDAO dao;
+        private final ReasonerType reasonerType;
+        private Map<String, Set<OWLClass>> results;
+        private final Map<PopulousDataRestriction, String[][]> values = new IdentityHashMap<PopulousDataRestriction, String[][]>();
+
+        ReasonerQuery(List<PopulousDataRestriction> restrictions, OntologyDAO dao, ReasonerType reasonerType) {
+            this.restrictions = restrictions;
+            this.dao = dao;
+            this.reasonerType = reasonerType;
+        }
+
+        public Void call() throws ParserException {
+            Set<String> expressions = getClassExpressions(restrictions);
+            if (restrictions.get(0).getRestrictionType().equals(RestrictionType.DESCENDANTS)) {
+                results = dao.getDescendantClasses(expressions, reasonerType);
+            }
+            else {
+                results = dao.getSubclasses(expressions, reasonerType);
+            }
+            return null;
+        }
+
+        // rendering reads labels from the ontologies, so it's done once the pool has finished
+        void render() {
+            for (PopulousDataRestriction restriction : restrictions) {
+                String[][] restrictionValues = createValuesArray(new ArrayList<OWLClass>(results.get(restriction.getClassExpression())), dao);
+                values.put(restriction, restrictionValues);
+                if (restrictionValues.length > 0) {
+                    restriction.setValues(restrictionValues);
+                }
+            }
+        }
+    }
+
+    /**
+     * Saves the reasoner's progress on the run it's currently working for, no more often than the progress interval
+     */
+    private class RunProgress implements ClassificationListener {
+        private volatile QueuedRun run;
+        private long lastSaved = 0;
+
+        public synchronized void progress(String reasoner, String phase, int percent) {
+            QueuedRun current = run;
+            long now = System.currentTimeMillis();
+            if (current == null || (now - lastSaved < progressInterval && percent < 100)) {
+                return;
+            }
+            lastSaved = now;
+            String message = "Classifying with " + reasoner + ": " + phase + (percent >= 0 ? " " + percent + "%" : "");
+            current.runDocument.setPhase(phase);
+            current.runDocument.setProgress(percent);
+            current.runDocument.setMessage(message);
+            try {
+                restrictionRunRepository.updateProgress(current.runDocument.getId(), phase, percent, message);
+            } catch (Exception e) {
+                getLog().warn("Couldn't save progress of run " + current.runDocument.getId() + ": " + e.getMessage());
+            }
+        }
+
+        public void timedOut(String reasoner, long timeout, String fallback) {
+            QueuedRun current = run;
+            if (current != null) {
+                current.timeouts.add("the " + reasoner + " reasoner timed out after " + (timeout / 1000) + "s"
+                        + (fallback == null ? "" : " so values were computed with the " + fallback + " reasoner instead"));
+            }
+        }
+    }
+
+    /**
+     * The ontologies shared by a group of runs. The ontologies are only loaded and classified if a restriction
+     * can't be answered from the hierarchy index.
+     */
+    private static class SharedImports {
+        private final Collection<IRI> importIris;
+        private HierarchyIndex index;
+        private OntologyDAO dao;
+        private String knownClosureFingerprint;
+        private List<String> loadedClosure;
+        private String loadedClosureFingerprint;
+        private RunProgress progress;
+        private long classificationTimeout;
+        private ReasonerType fallbackReasonerType;
+
+        SharedImports(Collection<IRI> importIris) {
+            this.importIris = importIris;
+        }
+
+        // the index can stand in for the reasoner when only told subclasses are wanted, or when the told hierarchy is all there is to know
+        int getIndexedClass(String classExpression, ReasonerType reasonerType) {
+            if (index == null) {
+                return -1;
+            }
+            boolean structural = reasonerType == ReasonerType.STRUCTURAL
+                    || (reasonerType == ReasonerType.AUTO && index.isComplete());
+            if (!structural) {
+                return -1;
+            }
+            String name = HierarchyIndex.getAtomicName(classExpression);
+            return name == null ? -1 : index.getId(name);
+        }
+
+        synchronized OntologyDAO getDao() throws OWLOntologyCreationException {
+            if (dao == null) {
+                OntologyDAOImpl ontologyDAO = new OntologyDAOImpl(importIris) {
+                    @Override
+                    public OWLReasoner getOWLReasoner(OWLOntology owlOntology) {
+                        return new Reasoner(owlOntology);
+                    }
+                };
+                ontologyDAO.setClassificationTimeout(classificationTimeout);
+                ontologyDAO.setFallbackReasonerType(fallbackReasonerType);
+                ontologyDAO.setClassificationListener(progress);
+                dao = ontologyDAO;
+            }
+            return dao;
+        }
+
+        /**
+         * @return the documents in the imports closure, or null if the ontologies haven't been loaded
+         */
+        synchronized List<String> getLoadedClosure() {
+            if (loadedClosure == null && dao != null) {
+                loadedClosure = new ArrayList<String>();
+                for (IRI documentIri : dao.getDocumentIris()) {
+                    loadedClosure.add(documentIri.toString());
+                }
+            }
+            return loadedClosure;
+        }
+
+        /**
+         * @return a fingerprint of the imports closure, or null if the closure isn't known
+         */
+        synchronized String getClosureFingerprint() {
+            if (getLoadedClosure() != null) {
+                if (loadedClosureFingerprint == null) {
+                    loadedClosureFingerprint = ImportFingerprint.compute(loadedClosure, "");
+                }
+                return loadedClosureFingerprint;
+            }
+            return knownClosureFingerprint;
+        }
+
+        void dispose() {
+            if (dao != null) {
+                dao.dispose();
+            }
+        }
+    }
+
+    private static class QueuedRun {
+        private final RestrictionRunDocument runDocument;
+        private final PopulousTemplateDocument template;
+        private List<String> importClosure;
+        private boolean closureKnown = false;
+        private String fingerprint;
+        // reasoners that timed out while computing this run's values
+        private final Set<String> timeouts = Collections.synchronizedSet(new LinkedHashSet<String>());
+
+        QueuedRun(RestrictionRunDocument runDocument, PopulousTemplateDocument template) {
+            this.runDocument = runDocument;
+            this.template = template;
+        }
+    }
+
     private boolean hasRestrictionsToUpdate(PopulousTemplateDocument templateDocument) {
 
         for (PopulousDataRestriction dataRestriction : templateDocument.getDataRestrictions()) {
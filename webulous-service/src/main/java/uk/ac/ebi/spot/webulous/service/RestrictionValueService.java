@@ -0,0 +1,372 @@
+package uk.ac.ebi.spot.webulous.service;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.beans.factory.annotation.Autowired;
+import org.springframework.beans.factory.annotation.Value;
+import org.springframework.data.domain.Page;
+import org.springframework.data.domain.PageImpl;
+import org.springframework.data.domain.Pageable;
+import org.springframework.data.util.CloseableIterator;
+import org.springframework.stereotype.Service;
+import uk.ac.ebi.spot.webulous.model.*;
+import uk.ac.ebi.spot.webulous.repository.PopulousTemplateRepository;
+import uk.ac.ebi.spot.webulous.repository.RestrictionValueChangeRepository;
+import uk.ac.ebi.spot.webulous.repository.RestrictionValueRepository;
+
+import java.io.IOException;
+import java.security.MessageDigest;
+import java.util.*;
+
+/**
+ * @author Simon Jupp
+ * @date 18/10/2026
+ * Samples, Phenotypes and Ontologies Team, EMBL-EBI
+ *
+ * Stores the values of computed restrictions in their own collection and reads them back a page at a time.
+ * Templates only keep a count of their values, restrictions saved before values were stored separately,
+ * and supplied restrictions, still carry their values in the template and are read from there.
+ *
+ * Each refresh that changes a restriction's values gets a new version, and the values it added and removed are kept
+ * so clients can catch up from the version they have without downloading the whole list again. The new values are
+ * written alongside the old ones under their version with the changes that lead to it, the restriction in the template
+ * is then pointed at it, and only then are the old values deleted, so readers always see one complete list and can
+ * always catch up to it.
+ */
+@Service
+public class RestrictionValueService {
+
+    @Autowired
+    private RestrictionValueRepository restrictionValueRepository;
+
+    @Autowired
+    private RestrictionValueChangeRepository restrictionValueChangeRepository;
+
+    @Autowired
+    private PopulousTemplateRepository templateRepository;
+
+    @Value("${webulous.restriction.values.batch:1000}")
+    private int batchSize;
+
+    // how many versions of changes to keep for each restriction, clients further behind get the full list
+    @Value("${webulous.restriction.values.history:50}")
+    private int historySize;
+
+    private Logger logger = LoggerFactory.getLogger(getClass());
+
+    public Logger getLog() {
+        return logger;
+    }
+
+    /**
+     * Values are stored against the restriction's definition rather than its position in the template, so they
+     * follow the restriction when columns are moved and are never read for a different query. Restrictions with the
+     * same definition in a template share one list of values and one version.
+     */
+    public String getRestrictionKey(PopulousDataRestriction restriction) {
+        String definition = restriction.getRestrictionType() + "|" + restriction.getReasonerType() + "|" + restriction.getClassExpression();
+        try {
+            byte[] digest = MessageDigest.getInstance("SHA-1").digest(definition.getBytes("UTF-8"));
+            StringBuilder hex = new StringBuilder();
+            for (byte b : digest) {
+                hex.append(String.format("%02x", b));
+            }
+            return hex.toString();
+        } catch (Exception e) {
+            throw new IllegalStateException("Couldn't compute restriction key", e);
+        }
+    }
+
+    public boolean isComputed(PopulousDataRestriction restriction) {
+        return restriction.getRestrictionType() == RestrictionType.DESCENDANTS || restriction.getRestrictionType() == RestrictionType.SUBCLASS;
+    }
+
+    /**
+     * Move the values held on the template's computed restrictions into the values collection, replacing what was
+     * there if they have changed, and drop values for restrictions the template no longer has, going by the template as
+     * it is now rather than as it was when the run read it. Each restriction's
+     * count and version are written to the template as its values are stored, and the template is left with just those.
+     *
+     * @return the indexes of the restrictions whose values were written to the template
+     */
+    public List<Integer> storeValues(PopulousTemplateDocument templateDocument) {
+        // identical restrictions compute the same values, which are stored once for all of them
+        Map<String, List<Integer>> indexesByKey = new LinkedHashMap<String, List<Integer>>();
+        for (int index = 0; index < templateDocument.getDataRestrictions().size(); index++) {
+            PopulousDataRestriction restriction = templateDocument.getDataRestrictions().get(index);
+            if (!isComputed(restriction)) {
+                continue;
+            }
+            String key = getRestrictionKey(restriction);
+            if (!indexesByKey.containsKey(key)) {
+                indexesByKey.put(key, new ArrayList<Integer>());
+            }
+            indexesByKey.get(key).add(index);
+        }
+
+        List<Integer> stored = new ArrayList<Integer>();
+        for (Map.Entry<String, List<Integer>> restrictions : indexesByKey.entrySet()) {
+            String[][] values = templateDocument.getDataRestrictions().get(restrictions.getValue().get(0)).getValues();
+            if (values != null && values.length > 0 && replaceValues(templateDocument, restrictions.getValue(), restrictions.getKey(), values)) {
+                stored.addAll(restrictions.getValue());
+            }
+        }
+        Collections.sort(stored);
+
+        // restrictions may have been added while the run was going, their values mustn't be taken for leftovers
+        PopulousTemplateDocument current = templateRepository.findOne(templateDocument.getId());
+        if (current != null) {
+            Set<String> keys = new HashSet<String>();
+            for (PopulousDataRestriction restriction : current.getDataRestrictions()) {
+                if (isComputed(restriction)) {
+                    keys.add(getRestrictionKey(restriction));
+                }
+            }
+            restrictionValueRepository.deleteByTemplateIdAndRestrictionKeyNotIn(templateDocument.getId(), keys);
+            restrictionValueChangeRepository.deleteByTemplateIdAndRestrictionKeyNotIn(templateDocument.getId(), keys);
+        }
+        return stored;
+    }
+
+    /**
+     * Replace the stored values if they differ from these, recording what changed. The values are written under a new
+     * version, the restrictions are pointed at it in the template, and only then are the values they replaced deleted.
+     *
+     * @param indexes the restrictions in the template with this key
+     * @return true if the restrictions' count or version were written to the template
+     */
+    private boolean replaceValues(PopulousTemplateDocument templateDocument, List<Integer> indexes, String key, String[][] values) {
+        long start = System.currentTimeMillis();
+        String templateId = templateDocument.getId();
+        // a restriction added since the last run hasn't got any values yet, the others say which version is current
+        PopulousDataRestriction restriction = templateDocument.getDataRestrictions().get(indexes.get(0));
+        for (int index : indexes) {
+            if (templateDocument.getDataRestrictions().get(index).getValuesVersion() > restriction.getValuesVersion()) {
+                restriction = templateDocument.getDataRestrictions().get(index);
+            }
+        }
+        long currentVersion = restriction.getValuesVersion();
+
+        // restrictions stored before they shared their values may point at different versions, which are brought together
+        boolean shared = true;
+        for (int index : indexes) {
+            PopulousDataRestriction identical = templateDocument.getDataRestrictions().get(index);
+            shared &= identical.getValueCount() == restriction.getValueCount() && identical.getValuesVersion() == currentVersion;
+        }
+
+        Map<String, String[]> previous = new LinkedHashMap<String, String[]>();
+        if (restriction.getValueCount() > 0) {
+            for (RestrictionValueDocument value : restrictionValueRepository.findByTemplateIdAndRestrictionKeyAndValuesVersionOrderByPositionAsc(templateId, key, currentVersion)) {
+                previous.put(toKey(value.getLabel(), value.getIri()), new String[] {value.getLabel(), value.getIri()});
+            }
+        }
+        Map<String, String[]> current = new LinkedHashMap<String, String[]>();
+        for (String[] value : values) {
+            current.put(toKey(value[0], value[1]), value);
+        }
+
+        if (shared && restriction.getValueCount() > 0 && previous.keySet().equals(current.keySet())) {
+            getLog().debug("Values for template " + templateId + " unchanged at version " + currentVersion);
+            for (int index : indexes) {
+                templateDocument.getDataRestrictions().get(index).setValues(new String[0][0]);
+            }
+            return false;
+        }
+
+        List<String[]> added = new ArrayList<String[]>();
+        for (Map.Entry<String, String[]> value : current.entrySet()) {
+            if (!previous.containsKey(value.getKey())) {
+                added.add(value.getValue());
+            }
+        }
+        List<String[]> removed = new ArrayList<String[]>();
+        for (Map.Entry<String, String[]> value : previous.entrySet()) {
+            if (!current.containsKey(value.getKey())) {
+                removed.add(value.getValue());
+            }
+        }
+
+        // clear out anything left from earlier attempts that never got as far as the template
+        restrictionValueChangeRepository.deleteByTemplateIdAndRestrictionKeyAndVersionGreaterThan(templateId, key, currentVersion);
+        RestrictionValueChangeDocument latest = restrictionValueChangeRepository.findFirstByTemplateIdAndRestrictionKeyOrderByVersionDesc(templateId, key);
+        long version = Math.max(latest == null ? 0 : latest.getVersion(), currentVersion) + 1;
+        restrictionValueRepository.deleteByTemplateIdAndRestrictionKeyAndValuesVersion(templateId, key, version);
+        List<RestrictionValueDocument> batch = new ArrayList<RestrictionValueDocument>(Math.min(values.length, batchSize));
+        for (int x = 0; x < values.length; x++) {
+            batch.add(new RestrictionValueDocument(templateId, key, version, x, values[x][0], values[x][1]));
+            if (batch.size() == batchSize) {
+                restrictionValueRepository.insert(batch);
+                batch.clear();
+            }
+        }
+        if (!batch.isEmpty()) {
+            restrictionValueRepository.insert(batch);
+        }
+
+        // the changes are in place before the template points at the version, so a client that sees it can catch up to it
+        RestrictionValueChangeDocument change = restrictionValueChangeRepository.save(new RestrictionValueChangeDocument(templateId, key, version,
+                added.toArray(new String[added.size()][]), removed.toArray(new String[removed.size()][])));
+
+        for (int index : indexes) {
+            PopulousDataRestriction identical = templateDocument.getDataRestrictions().get(index);
+            identical.setValueCount(values.length);
+            identical.setValuesVersion(version);
+            identical.setValues(new String[0][0]);
+        }
+        if (!templateRepository.updateRestrictionValues(templateId, restriction)) {
+            getLog().warn("Restriction " + restriction.getRestrictionName() + " on " + templateDocument.getDescription()
+                    + " was changed while its values were computed, leaving the template as it is");
+            restrictionValueChangeRepository.delete(change);
+            restrictionValueRepository.deleteByTemplateIdAndRestrictionKeyAndValuesVersion(templateId, key, version);
+            return false;
+        }
+
+        // readers have moved on to the new version, so the old values can go
+        restrictionValueRepository.deleteByTemplateIdAndRestrictionKeyAndValuesVersionNot(templateId, key, version);
+        restrictionValueChangeRepository.deleteByTemplateIdAndRestrictionKeyAndVersionLessThan(templateId, key, version - historySize + 1);
+
+        getLog().debug("Stored " + values.length + " values for template " + templateId + " as version " + version + " (+"
+                + added.size() + " -" + removed.size() + ") in " + (System.currentTimeMillis() - start) + "ms");
+        return true;
+    }
+
+    private String toKey(String label, String iri) {
+        return iri + "\t" + label;
+    }
+
+    /**
+     * @param since the version of the values the client has, 0 if it has none
+     * @return the values added and removed since that version, or all the values if the client is too far behind
+     */
+    public RestrictionValueChanges getChanges(String templateId, PopulousDataRestriction restriction, long since) {
+        String[][] none = new String[0][0];
+        if (restriction.getValueCount() == 0) {
+            // the values are only in the template so there is no history
+            return new RestrictionValueChanges(since, restriction.getValuesVersion(), true, getAllValues(templateId, restriction), none);
+        }
+
+        // the template says which version readers see, the changes for a newer one are written before it is pointed at it
+        String key = getRestrictionKey(restriction);
+        long version = restriction.getValuesVersion();
+        if (since == version) {
+            return new RestrictionValueChanges(since, version, false, none, none);
+        }
+
+        RestrictionValueChangeDocument oldest = restrictionValueChangeRepository.findFirstByTemplateIdAndRestrictionKeyOrderByVersionAsc(templateId, key);
+        if (since <= 0 || since > version || oldest == null || since < oldest.getVersion() - 1) {
+            return new RestrictionValueChanges(since, version, true, getAllValues(templateId, restriction), none);
+        }
+
+        // fold the changes together, a value added then removed again cancels out
+        Map<String, String[]> added = new LinkedHashMap<String, String[]>();
+        Map<String, String[]> removed = new LinkedHashMap<String, String[]>();
+        for (RestrictionValueChangeDocument change : restrictionValueChangeRepository.findByTemplateIdAndRestrictionKeyAndVersionGreaterThanOrderByVersionAsc(templateId, key, since)) {
+            if (change.getVersion() > version) {
+                break;
+            }
+            for (String[] value : change.getRemoved()) {
+                String valueKey = toKey(value[0], value[1]);
+                if (added.remove(valueKey) == null) {
+                    removed.put(valueKey, value);
+                }
+            }
+            for (String[] value : change.getAdded()) {
+                String valueKey = toKey(value[0], value[1]);
+                if (removed.remove(valueKey) == null) {
+                    added.put(valueKey, value);
+                }
+            }
+        }
+        return new RestrictionValueChanges(since, version, false,
+                added.values().toArray(new String[added.size()][]), removed.values().toArray(new String[removed.size()][]));
+    }
+
+    /**
+     * @return a page of [label, iri] pairs for the restriction
+     */
+    public Page<String[]> getValues(String templateId, PopulousDataRestriction restriction, Pageable pageable) {
+        if (restriction.getValueCount() > 0) {
+            Page<RestrictionValueDocument> page = restrictionValueRepository.findByTemplateIdAndRestrictionKeyAndValuesVersionOrderByPositionAsc(templateId, getRestrictionKey(restriction), restriction.getValuesVersion(), pageable);
+            List<String[]> values = new ArrayList<String[]>(page.getNumberOfElements());
+            for (RestrictionValueDocument value : page.getContent()) {
+                values.add(new String[] {value.getLabel(), value.getIri()});
+            }
+            return new PageImpl<String[]>(values, pageable, page.getTotalElements());
+        }
+
+        String[][] embedded = restriction.getValues() == null ? new String[0][0] : restriction.getValues();
+        int from = Math.min(pageable.getOffset(), embedded.length);
+        int to = Math.min(from + pageable.getPageSize(), embedded.length);
+        return new PageImpl<String[]>(Arrays.asList(embedded).subList(from, to), pageable, embedded.length);
+    }
+
+    /**
+     * @return all the values of the restriction as [label, iri] pairs
+     */
+    public String[][] getAllValues(String templateId, PopulousDataRestriction restriction) {
+        if (restriction.getValueCount() > 0) {
+            List<RestrictionValueDocument> stored = restrictionValueRepository.findByTemplateIdAndRestrictionKeyAndValuesVersionOrderByPositionAsc(templateId, getRestrictionKey(restriction), restriction.getValuesVersion());
+            String[][] values = new String[stored.size()][2];
+            for (int x = 0; x < stored.size(); x++) {
+                values[x][0] = stored.get(x).getLabel();
+                values[x][1] = stored.get(x).getIri();
+            }
+            return values;
+        }
+        return restriction.getValues() == null ? new String[0][0] : restriction.getValues();
+    }
+
+    /**
+     * Pass the values of the restriction at positions offset to offset + limit to the handler in order, reading them
+     * from a cursor so they are never all held in memory
+     *
+     * @param limit the most values to pass, or 0 for all of them
+     * @return the number of values passed to the handler
+     */
+    public int streamValues(String templateId, PopulousDataRestriction restriction, int offset, int limit, ValueHandler handler) throws IOException {
+        int count = 0;
+        if (restriction.getValueCount() > 0) {
+            CloseableIterator<RestrictionValueDocument> values = restrictionValueRepository.streamValues(templateId, getRestrictionKey(restriction), restriction.getValuesVersion(), offset, limit);
+            try {
+                while (values.hasNext()) {
+                    RestrictionValueDocument value = values.next();
+                    handler.handle(value.getLabel(), value.getIri());
+                    count++;
+                }
+            } finally {
+                values.close();
+            }
+            return count;
+        }
+
+        String[][] embedded = restriction.getValues() == null ? new String[0][0] : restriction.getValues();
+        int to = limit > 0 ? Math.min(offset + limit, embedded.length) : embedded.length;
+        for (int x = Math.max(offset, 0); x < to; x++) {
+            handler.handle(embedded[x][0], embedded[x][1]);
+            count++;
+        }
+        return count;
+    }
+
+    public interface ValueHandler {
+        void handle(String label, String iri) throws IOException;
+    }
+
+    /**
+     * Put the stored values back on the template's restrictions, for code that needs the complete lists in memory.
+     * The template shouldn't be saved afterwards.
+     */
+    public PopulousTemplateDocument loadValues(PopulousTemplateDocument templateDocument) {
+        for (PopulousDataRestriction restriction : templateDocument.getDataRestrictions()) {
+            if (restriction.getValueCount() > 0) {
+                restriction.setValues(getAllValues(templateDocument.getId(), restriction));
+            }
+        }
+        return templateDocument;
+    }
+
+    public void deleteValues(String templateId) {
+        restrictionValueRepository.deleteByTemplateId(templateId);
+        restrictionValueChangeRepository.deleteByTemplateId(templateId);
+    }
+}
@@ -8,8 +8,10 @@ import org.springframework.data.rest.webmvc.ResourceNotFoundException;
 import org.springframework.stereotype.Service;
 import uk.ac.ebi.spot.webulous.model.*;
 import uk.ac.ebi.spot.webulous.repository.PopulousTemplateRepository;
+import uk.ac.ebi.spot.webulous.repository.ResolvedEntityRepository;
 import uk.ac.ebi.spot.webulous.repository.RestrictionRunRepository;
 
+import java.io.IOException;
 import java.util.*;
 
 /**
@@ -28,6 +30,16 @@ public class WebulousTemplateService implements TemplateService<PopulousTemplate
 
     @Autowired
     RestrictionService service;
+
+    @Autowired
+    private ResolvedEntityRepository resolvedEntityRepository;
+
+    @Autowired
+    private RestrictionValueService restrictionValueService;
+
+    @Autowired
+    private AutocompleteService autocompleteService;
+
     public WebulousTemplateService() {
     }
 
@@ -43,6 +55,20 @@ public class WebulousTemplateService implements TemplateService<PopulousTemplate
         return this.templateRepository.findAll(pageable);
     }
 
+    /**
+     * @return a page of templates with only their id, description, group and active flag filled in, they mustn't be saved
+     */
+    public Page<PopulousTemplateDocument> findSummaries(Pageable pageable) {
+        return this.templateRepository.findSummaries(pageable);
+    }
+
+    /**
+     * @return the active templates with only their id, description, group and active flag filled in, they mustn't be saved
+     */
+    public List<PopulousTemplateDocument> findActiveSummaries() {
+        return this.templateRepository.findActiveSummaries();
+    }
+
     @Override
     public PopulousTemplateDocument findOne(String templateId) {
         return this.templateRepository.findOne(templateId);
@@ -71,22 +97,97 @@ public class WebulousTemplateService implements TemplateService<PopulousTemplate
 
         List<RestrictionRunDocument> runs = new ArrayList<RestrictionRunDocument>();
         for (PopulousTemplateDocument doc : findByTemplateGroupName(groupName)) {
-            runs.add(refresh(doc.getId(), force));
+            RestrictionRunDocument runDocument = refresh(doc.getId(), false);
+            if (runDocument != null) {
+                runs.add(runDocument);
+            }
+        }
+        if (force && !runs.isEmpty()) {
+            // run the group together so templates that share imports only load and classify them once
+            service.run(runs);
         }
         return runs;
     }
 
     public PopulousTemplateDocument save(PopulousTemplateDocument template) {
+        PopulousTemplateDocument existing = template.getId() == null ? null : templateRepository.findOne(template.getId());
+        boolean restrictionsChanged = true;
+        if (existing != null) {
+            restrictionsChanged = !restrictionService.describeRestrictions(existing).equals(restrictionService.describeRestrictions(template));
+            keepValues(existing, template);
+        }
+
         PopulousTemplateDocument templateDocument =  templateRepository.save(template);
-        // queue it up for running if it has restrictions
-        restrictionService.queueTemplate(templateDocument);
+        // queue it up for running if it has restrictions, unless they are the same as the last time they were computed
+        if (restrictionsChanged || !restrictionService.hasCompletedRun(templateDocument.getId())) {
+            restrictionService.queueTemplate(templateDocument);
+        }
         return templateDocument;
     }
 
+    // the template form doesn't post the restriction values, so carry them over for restrictions that haven't changed.
+    // Identical computed restrictions share their stored values, so they take the latest version of any of them, while
+    // supplied values belong to their own column
+    private void keepValues(PopulousTemplateDocument existing, PopulousTemplateDocument template) {
+        Map<String, PopulousDataRestriction> existingRestrictions = new HashMap<String, PopulousDataRestriction>();
+        for (PopulousDataRestriction restriction : existing.getDataRestrictions()) {
+            String key = getValuesKey(restriction);
+            PopulousDataRestriction kept = existingRestrictions.get(key);
+            if (kept == null || restriction.getValuesVersion() > kept.getValuesVersion()) {
+                existingRestrictions.put(key, restriction);
+            }
+        }
+        for (PopulousDataRestriction restriction : template.getDataRestrictions()) {
+            PopulousDataRestriction previous = existingRestrictions.get(getValuesKey(restriction));
+            if (previous != null && (restriction.getValues() == null || restriction.getValues().length == 0)) {
+                restriction.setValues(previous.getValues());
+                restriction.setValueCount(previous.getValueCount());
+                restriction.setValuesVersion(previous.getValuesVersion());
+            }
+        }
+    }
+
+    private String getValuesKey(PopulousDataRestriction restriction) {
+        String description = restrictionService.describeRestriction(restriction);
+        return restrictionValueService.isComputed(restriction) ? description : description + "|" + restriction.getColumnIndex();
+    }
+
+    /**
+     * @return a page of [label, iri] pairs for the restriction at this index in the template
+     */
+    public Page<String[]> getRestrictionValues(PopulousTemplateDocument template, int restrictionIndex, Pageable pageable) {
+        return restrictionValueService.getValues(template.getId(), template.getDataRestrictions().get(restrictionIndex), pageable);
+    }
+
+    /**
+     * Pass values of the restriction at this index to the handler without loading them all
+     * @return the number of values passed
+     */
+    public int streamRestrictionValues(PopulousTemplateDocument template, int restrictionIndex, int offset, int limit,
+                                       RestrictionValueService.ValueHandler handler) throws IOException {
+        return restrictionValueService.streamValues(template.getId(), template.getDataRestrictions().get(restrictionIndex), offset, limit, handler);
+    }
+
+    /**
+     * @return the changes to the values of the restriction at this index since the client's version
+     */
+    public RestrictionValueChanges getRestrictionValueChanges(PopulousTemplateDocument template, int restrictionIndex, long since) {
+        return restrictionValueService.getChanges(template.getId(), template.getDataRestrictions().get(restrictionIndex), since);
+    }
+
+    /**
+     * @return up to limit values of the restriction at this index whose label, or a word in it, starts with the prefix
+     */
+    public List<String[]> autocomplete(PopulousTemplateDocument template, int restrictionIndex, String prefix, int limit) {
+        return autocompleteService.complete(template.getId(), template.getDataRestrictions().get(restrictionIndex), prefix, limit);
+    }
+
 
 
     public void remove(PopulousTemplateDocument populousTemplateDocument) {
         templateRepository.delete(populousTemplateDocument.getId());
+        resolvedEntityRepository.deleteByTemplateId(populousTemplateDocument.getId());
+        restrictionValueService.deleteValues(populousTemplateDocument.getId());
     }
 
     public List<PopulousTemplateDocument> findByTemplateGroupName(String groupName) {
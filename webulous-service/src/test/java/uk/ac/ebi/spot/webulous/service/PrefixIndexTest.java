@@ -0,0 +1,120 @@
+package uk.ac.ebi.spot.webulous.service;
+
+import org.junit.Before;
+import org.junit.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author Simon Jupp
+ * @date 18/10/2026
+ * Samples, Phenotypes and Ontologies Team, EMBL-EBI
+ */
+public class PrefixIndexTest {
+
+    private static final String[] AML = {"acute myeloid leukemia", "http://www.ebi.ac.uk/efo/EFO_0000222"};
+    private static final String[] MYELOMA = {"Myeloma", "http://www.ebi.ac.uk/efo/EFO_0001378"};
+    private static final String[] LIVER = {"liver", "http://purl.obolibrary.org/obo/UBERON_0002107"};
+    private static final String[] CML = {"chronic myeloid-leukemia", "http://www.ebi.ac.uk/efo/EFO_0000339"};
+
+    private PrefixIndex index;
+
+    @Before
+    public void setUp() {
+        index = PrefixIndex.build(3, new String[][] {AML, MYELOMA, LIVER, CML});
+    }
+
+    @Test
+    public void testNormalise() {
+        assertEquals("chronic myeloid leukemia", PrefixIndex.normalise("  Chronic  Myeloid-Leukemia! "));
+        assertEquals("", PrefixIndex.normalise(null));
+        assertEquals("", PrefixIndex.normalise("--"));
+    }
+
+    @Test
+    public void testMatchesStartOfLabel() {
+        assertEquals(labels(LIVER), labels(index.complete("Liv", 10)));
+    }
+
+    @Test
+    public void testMatchesLaterWords() {
+        assertEquals(labels(AML, CML), labels(index.complete("leuk", 10)));
+    }
+
+    @Test
+    public void testStartOfLabelComesFirst() {
+        List<String> labels = labels(index.complete("myel", 10));
+        assertEquals(3, labels.size());
+        assertEquals(MYELOMA[0], labels.get(0));
+        assertTrue(labels.contains(AML[0]));
+        assertTrue(labels.contains(CML[0]));
+    }
+
+    @Test
+    public void testPrefixCanSpanWords() {
+        assertEquals(labels(AML), labels(index.complete("acute mye", 10)));
+        assertEquals(labels(AML), labels(index.complete("myeloid leuk", 1)));
+    }
+
+    @Test
+    public void testEachValueOnlyOnce() {
+        PrefixIndex repeated = PrefixIndex.build(1, new String[][] {{"heart heart", "http://example.org/heart"}});
+        assertEquals(1, repeated.complete("heart", 10).size());
+    }
+
+    @Test
+    public void testLimit() {
+        assertEquals(2, index.complete("m", 2).size());
+        assertTrue(index.complete("m", 0).isEmpty());
+    }
+
+    @Test
+    public void testNoMatch() {
+        assertTrue(index.complete("kidney", 10).isEmpty());
+        assertTrue(index.complete("  ", 10).isEmpty());
+        assertTrue(index.complete("zzz", 10).isEmpty());
+    }
+
+    @Test
+    public void testEmptyLabelsAreSkipped() {
+        PrefixIndex withBlank = PrefixIndex.build(1, new String[][] {{"", "http://example.org/blank"}, LIVER});
+        assertEquals(2, withBlank.size());
+        assertEquals(labels(LIVER), labels(withBlank.complete("l", 10)));
+    }
+
+    @Test
+    public void testWithChanges() {
+        String[] kidney = {"kidney", "http://purl.obolibrary.org/obo/UBERON_0002113"};
+        PrefixIndex changed = index.withChanges(4, new String[][] {kidney}, new String[][] {LIVER});
+
+        assertEquals(4, changed.getVersion());
+        assertEquals(4, changed.size());
+        assertEquals(labels(kidney), labels(changed.complete("kid", 10)));
+        assertTrue(changed.complete("liver", 10).isEmpty());
+
+        // the original is left as it was
+        assertEquals(3, index.getVersion());
+        assertEquals(labels(LIVER), labels(index.complete("liver", 10)));
+    }
+
+    @Test
+    public void testRemovalNeedsLabelAndIri() {
+        PrefixIndex changed = index.withChanges(4, new String[0][], new String[][] {{"liver", "http://example.org/other"}});
+        assertEquals(labels(LIVER), labels(changed.complete("liver", 10)));
+    }
+
+    private List<String> labels(String[]... values) {
+        List<String> labels = new ArrayList<String>();
+        for (String[] value : values) {
+            labels.add(value[0]);
+        }
+        return labels;
+    }
+
+    private List<String> labels(List<String[]> values) {
+        return labels(values.toArray(new String[values.size()][]));
+    }
+}
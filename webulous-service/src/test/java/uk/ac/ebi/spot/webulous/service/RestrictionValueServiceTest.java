@@ -0,0 +1,373 @@
+package uk.ac.ebi.spot.webulous.service;
+
+import org.junit.Before;
+import org.junit.Test;
+import uk.ac.ebi.spot.webulous.model.*;
+import uk.ac.ebi.spot.webulous.repository.PopulousTemplateRepository;
+import uk.ac.ebi.spot.webulous.repository.RestrictionValueChangeRepository;
+import uk.ac.ebi.spot.webulous.repository.RestrictionValueRepository;
+
+import java.lang.reflect.Field;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.util.*;
+
+import static org.junit.Assert.*;
+
+/**
+ * @author Simon Jupp
+ * @date 18/10/2026
+ * Samples, Phenotypes and Ontologies Team, EMBL-EBI
+ */
+public class RestrictionValueServiceTest {
+
+    private static final String TEMPLATE_ID = "template";
+
+    private static final String[] LIVER = {"liver", "http://purl.obolibrary.org/obo/UBERON_0002107"};
+    private static final String[] HEART = {"heart", "http://purl.obolibrary.org/obo/UBERON_0000948"};
+    private static final String[] KIDNEY = {"kidney", "http://purl.obolibrary.org/obo/UBERON_0002113"};
+
+    private RestrictionValueService service;
+
+    // what the repositories hold, standing in for the database
+    private PopulousTemplateDocument stored;
+    private final List<RestrictionValueDocument> values = new ArrayList<RestrictionValueDocument>();
+    private final List<RestrictionValueChangeDocument> changes = new ArrayList<RestrictionValueChangeDocument>();
+
+    // when set, the template is changed by someone else before the values are written to it
+    private boolean templateEdited = false;
+
+    @Before
+    public void setUp() throws Exception {
+        service = new RestrictionValueService();
+        set(service, "restrictionValueRepository", fake(RestrictionValueRepository.class, new ValueRepository()));
+        set(service, "restrictionValueChangeRepository", fake(RestrictionValueChangeRepository.class, new ChangeRepository()));
+        set(service, "templateRepository", fake(PopulousTemplateRepository.class, new TemplateRepository()));
+        set(service, "batchSize", 2);
+        set(service, "historySize", 50);
+    }
+
+    @Test
+    public void testIdenticalRestrictionsShareTheirValues() {
+        stored = template(restriction(1, "organ"), restriction(2, "organ"));
+
+        assertEquals(Arrays.asList(0, 1), service.storeValues(run(LIVER, HEART)));
+        assertEquals(Arrays.asList(0, 1), service.storeValues(run(LIVER, KIDNEY)));
+
+        // the second restriction didn't take the first one's values away
+        for (PopulousDataRestriction restriction : stored.getDataRestrictions()) {
+            assertEquals(2, restriction.getValuesVersion());
+            assertEquals(2, restriction.getValueCount());
+            assertArrayEquals(new String[][] {LIVER, KIDNEY}, service.getAllValues(TEMPLATE_ID, restriction));
+        }
+        assertEquals(2, values.size());
+        assertEquals(2, changes.size());
+
+        // unchanged values leave both alone
+        assertTrue(service.storeValues(run(LIVER, KIDNEY)).isEmpty());
+        assertEquals(2, stored.getDataRestrictions().get(1).getValuesVersion());
+    }
+
+    @Test
+    public void testUnusedValuesAreDropped() {
+        stored = template(restriction(1, "organ"), restriction(2, "tissue"));
+        service.storeValues(run(LIVER));
+        stored.getDataRestrictions().remove(1);
+
+        service.storeValues(run(HEART));
+        assertEquals(1, values.size());
+        assertEquals(HEART[1], values.get(0).getIri());
+    }
+
+    @Test
+    public void testChangesAreStoredWithTheValues() {
+        stored = template(restriction(1, "organ"));
+        service.storeValues(run(LIVER, HEART));
+        service.storeValues(run(LIVER, KIDNEY));
+
+        PopulousDataRestriction restriction = stored.getDataRestrictions().get(0);
+        assertEquals(2, restriction.getValuesVersion());
+        assertArrayEquals(new String[][] {LIVER, KIDNEY}, service.getAllValues(TEMPLATE_ID, restriction));
+        RestrictionValueChangeDocument change = changes.get(changes.size() - 1);
+        assertEquals(2, change.getVersion());
+        assertArrayEquals(new String[][] {KIDNEY}, change.getAdded());
+        assertArrayEquals(new String[][] {HEART}, change.getRemoved());
+    }
+
+    @Test
+    public void testNothingIsLeftWhenTheTemplateChangesMeanwhile() {
+        stored = template(restriction(1, "organ"));
+        service.storeValues(run(LIVER));
+
+        templateEdited = true;
+        assertTrue(service.storeValues(run(HEART)).isEmpty());
+        assertEquals(1, stored.getDataRestrictions().get(0).getValuesVersion());
+        assertEquals(1, values.size());
+        assertEquals(1, changes.size());
+    }
+
+    @Test
+    public void testLeftoversFromAnEarlierAttemptAreReplaced() {
+        stored = template(restriction(1, "organ"));
+        service.storeValues(run(LIVER));
+        String key = service.getRestrictionKey(stored.getDataRestrictions().get(0));
+        changes.add(new RestrictionValueChangeDocument(TEMPLATE_ID, key, 2, new String[][] {KIDNEY}, new String[0][0]));
+        values.add(new RestrictionValueDocument(TEMPLATE_ID, key, 2, 0, KIDNEY[0], KIDNEY[1]));
+
+        service.storeValues(run(LIVER, HEART));
+        PopulousDataRestriction restriction = stored.getDataRestrictions().get(0);
+        assertEquals(2, restriction.getValuesVersion());
+        assertArrayEquals(new String[][] {LIVER, HEART}, service.getAllValues(TEMPLATE_ID, restriction));
+        RestrictionValueChanges since = service.getChanges(TEMPLATE_ID, restriction, 1);
+        assertArrayEquals(new String[][] {HEART}, since.getAdded());
+        assertEquals(0, since.getRemoved().length);
+    }
+
+    @Test
+    public void testChangesAreFoldedTogether() {
+        PopulousDataRestriction restriction = storeVersions();
+
+        // heart is removed then added back again, so it cancels out
+        RestrictionValueChanges since = service.getChanges(TEMPLATE_ID, restriction, 1);
+        assertEquals(3, since.getVersion());
+        assertFalse(since.isReset());
+        assertArrayEquals(new String[][] {KIDNEY}, since.getAdded());
+        assertArrayEquals(new String[][] {LIVER}, since.getRemoved());
+
+        since = service.getChanges(TEMPLATE_ID, restriction, 2);
+        assertArrayEquals(new String[][] {HEART}, since.getAdded());
+        assertArrayEquals(new String[][] {LIVER}, since.getRemoved());
+
+        since = service.getChanges(TEMPLATE_ID, restriction, 3);
+        assertFalse(since.isReset());
+        assertEquals(0, since.getAdded().length);
+        assertEquals(0, since.getRemoved().length);
+    }
+
+    @Test
+    public void testClientsWithoutHistoryGetEverything() throws Exception {
+        set(service, "historySize", 1);
+        PopulousDataRestriction restriction = storeVersions();
+
+        // no version, a version from the future, and a version whose changes are no longer kept
+        for (long since : new long[] {0, 4, 1}) {
+            RestrictionValueChanges all = service.getChanges(TEMPLATE_ID, restriction, since);
+            assertTrue(all.isReset());
+            assertEquals(3, all.getVersion());
+            assertArrayEquals(new String[][] {KIDNEY, HEART}, all.getAdded());
+        }
+        assertFalse(service.getChanges(TEMPLATE_ID, restriction, 2).isReset());
+    }
+
+    @Test
+    public void testVersionComesFromTheTemplate() {
+        PopulousDataRestriction restriction = storeVersions();
+        // changes for the next version are written before the template is pointed at it
+        changes.add(new RestrictionValueChangeDocument(TEMPLATE_ID, service.getRestrictionKey(restriction), 4, new String[][] {LIVER}, new String[0][0]));
+
+        RestrictionValueChanges since = service.getChanges(TEMPLATE_ID, restriction, 2);
+        assertEquals(3, since.getVersion());
+        assertArrayEquals(new String[][] {HEART}, since.getAdded());
+        assertEquals(0, service.getChanges(TEMPLATE_ID, restriction, 3).getAdded().length);
+    }
+
+    // versions 1 [liver, heart], 2 [liver, kidney] and 3 [kidney, heart]
+    private PopulousDataRestriction storeVersions() {
+        stored = template(restriction(1, "organ"));
+        service.storeValues(run(LIVER, HEART));
+        service.storeValues(run(LIVER, KIDNEY));
+        service.storeValues(run(KIDNEY, HEART));
+        return stored.getDataRestrictions().get(0);
+    }
+
+    private PopulousTemplateDocument template(PopulousDataRestriction... restrictions) {
+        PopulousTemplateDocument template = new PopulousTemplateDocument();
+        template.setId(TEMPLATE_ID);
+        template.setDataRestrictions(new ArrayList<PopulousDataRestriction>(Arrays.asList(restrictions)));
+        return template;
+    }
+
+    // a copy of the stored template as a restriction run would have it, every restriction having computed these values
+    private PopulousTemplateDocument run(String[]... computed) {
+        List<PopulousDataRestriction> restrictions = new ArrayList<PopulousDataRestriction>();
+        for (PopulousDataRestriction restriction : stored.getDataRestrictions()) {
+            PopulousDataRestriction copy = copy(restriction);
+            copy.setValues(computed);
+            restrictions.add(copy);
+        }
+        return template(restrictions.toArray(new PopulousDataRestriction[restrictions.size()]));
+    }
+
+    private PopulousDataRestriction restriction(int column, String classExpression) {
+        PopulousDataRestriction restriction = new PopulousDataRestriction(column, "column " + column);
+        restriction.setRestrictionType(RestrictionType.DESCENDANTS);
+        restriction.setReasonerType(ReasonerType.EL);
+        restriction.setClassExpression(classExpression);
+        return restriction;
+    }
+
+    private PopulousDataRestriction copy(PopulousDataRestriction restriction) {
+        PopulousDataRestriction copy = restriction(restriction.getColumnIndex(), restriction.getClassExpression());
+        copy.setRestrictionType(restriction.getRestrictionType());
+        copy.setReasonerType(restriction.getReasonerType());
+        copy.setValues(restriction.getValues());
+        copy.setValueCount(restriction.getValueCount());
+        copy.setValuesVersion(restriction.getValuesVersion());
+        return copy;
+    }
+
+    private class ValueRepository implements InvocationHandler {
+        public Object invoke(Object proxy, Method method, Object[] args) {
+            String name = method.getName();
+            if (name.equals("findByTemplateIdAndRestrictionKeyAndValuesVersionOrderByPositionAsc") && args.length == 3) {
+                List<RestrictionValueDocument> found = new ArrayList<RestrictionValueDocument>();
+                for (RestrictionValueDocument value : values) {
+                    if (matches(value, args) && value.getValuesVersion() == (Long) args[2]) {
+                        found.add(value);
+                    }
+                }
+                Collections.sort(found, new Comparator<RestrictionValueDocument>() {
+                    public int compare(RestrictionValueDocument a, RestrictionValueDocument b) {
+                        return a.getPosition() - b.getPosition();
+                    }
+                });
+                return found;
+            }
+            if (name.equals("insert")) {
+                for (Object value : (Iterable<?>) args[0]) {
+                    values.add((RestrictionValueDocument) value);
+                }
+                return args[0];
+            }
+            if (name.equals("deleteByTemplateIdAndRestrictionKeyAndValuesVersion") || name.equals("deleteByTemplateIdAndRestrictionKeyAndValuesVersionNot")) {
+                boolean same = name.endsWith("Version");
+                long deleted = 0;
+                for (Iterator<RestrictionValueDocument> it = values.iterator(); it.hasNext(); ) {
+                    RestrictionValueDocument value = it.next();
+                    if (matches(value, args) && (value.getValuesVersion() == (Long) args[2]) == same) {
+                        it.remove();
+                        deleted++;
+                    }
+                }
+                return deleted;
+            }
+            if (name.equals("deleteByTemplateIdAndRestrictionKeyNotIn")) {
+                long deleted = 0;
+                for (Iterator<RestrictionValueDocument> it = values.iterator(); it.hasNext(); ) {
+                    RestrictionValueDocument value = it.next();
+                    if (value.getTemplateId().equals(args[0]) && !((Collection<?>) args[1]).contains(value.getRestrictionKey())) {
+                        it.remove();
+                        deleted++;
+                    }
+                }
+                return deleted;
+            }
+            throw new UnsupportedOperationException(name);
+        }
+
+        private boolean matches(RestrictionValueDocument value, Object[] args) {
+            return value.getTemplateId().equals(args[0]) && value.getRestrictionKey().equals(args[1]);
+        }
+    }
+
+    private class ChangeRepository implements InvocationHandler {
+        public Object invoke(Object proxy, Method method, Object[] args) {
+            String name = method.getName();
+            List<RestrictionValueChangeDocument> found = new ArrayList<RestrictionValueChangeDocument>();
+            if (name.equals("save")) {
+                changes.add((RestrictionValueChangeDocument) args[0]);
+                return args[0];
+            }
+            if (name.equals("delete")) {
+                changes.remove(args[0]);
+                return null;
+            }
+            if (name.equals("deleteByTemplateIdAndRestrictionKeyNotIn")) {
+                long deleted = 0;
+                for (Iterator<RestrictionValueChangeDocument> it = changes.iterator(); it.hasNext(); ) {
+                    RestrictionValueChangeDocument change = it.next();
+                    if (change.getTemplateId().equals(args[0]) && !((Collection<?>) args[1]).contains(change.getRestrictionKey())) {
+                        it.remove();
+                        deleted++;
+                    }
+                }
+                return deleted;
+            }
+            for (RestrictionValueChangeDocument change : changes) {
+                if (change.getTemplateId().equals(args[0]) && change.getRestrictionKey().equals(args[1])) {
+                    found.add(change);
+                }
+            }
+            Collections.sort(found, new Comparator<RestrictionValueChangeDocument>() {
+                public int compare(RestrictionValueChangeDocument a, RestrictionValueChangeDocument b) {
+                    return Long.valueOf(a.getVersion()).compareTo(b.getVersion());
+                }
+            });
+            if (name.equals("findFirstByTemplateIdAndRestrictionKeyOrderByVersionAsc")) {
+                return found.isEmpty() ? null : found.get(0);
+            }
+            if (name.equals("findFirstByTemplateIdAndRestrictionKeyOrderByVersionDesc")) {
+                return found.isEmpty() ? null : found.get(found.size() - 1);
+            }
+            if (name.equals("findByTemplateIdAndRestrictionKeyAndVersionGreaterThanOrderByVersionAsc")) {
+                List<RestrictionValueChangeDocument> newer = new ArrayList<RestrictionValueChangeDocument>();
+                for (RestrictionValueChangeDocument change : found) {
+                    if (change.getVersion() > (Long) args[2]) {
+                        newer.add(change);
+                    }
+                }
+                return newer;
+            }
+            if (name.startsWith("deleteByTemplateIdAndRestrictionKeyAndVersion")) {
+                boolean less = name.endsWith("LessThan");
+                long deleted = 0;
+                for (RestrictionValueChangeDocument change : found) {
+                    if (less ? change.getVersion() < (Long) args[2] : change.getVersion() > (Long) args[2]) {
+                        changes.remove(change);
+                        deleted++;
+                    }
+                }
+                return deleted;
+            }
+            throw new UnsupportedOperationException(name);
+        }
+    }
+
+    private class TemplateRepository implements InvocationHandler {
+        public Object invoke(Object proxy, Method method, Object[] args) {
+            String name = method.getName();
+            if (name.equals("findOne")) {
+                return stored;
+            }
+            if (name.equals("updateRestrictionValues")) {
+                if (templateEdited) {
+                    return false;
+                }
+                PopulousDataRestriction restriction = (PopulousDataRestriction) args[1];
+                boolean found = false;
+                for (PopulousDataRestriction identical : stored.getDataRestrictions()) {
+                    if (identical.getClassExpression().equals(restriction.getClassExpression())) {
+                        identical.setValueCount(restriction.getValueCount());
+                        identical.setValuesVersion(restriction.getValuesVersion());
+                        identical.setValues(restriction.getValues());
+                        found = true;
+                    }
+                }
+                return found;
+            }
+            throw new UnsupportedOperationException(name);
+        }
+    }
+
+    @SuppressWarnings("unchecked")
+    private <T> T fake(Class<T> type, InvocationHandler handler) {
+        return (T) Proxy.newProxyInstance(getClass().getClassLoader(), new Class<?>[] {type}, handler);
+    }
+
+    private void set(Object target, String field, Object value) throws Exception {
+        Field f = target.getClass().getDeclaredField(field);
+        f.setAccessible(true);
+        f.set(target, value);
+    }
+}